@@ -0,0 +1,93 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and game status checks through the public {@link ChessGame}
+ * API. Each operation covers every position of one phase of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChessGameBenchmark {
+
+    @Param
+    public Positions phase;
+
+    private ChessGame[] games;
+    private List<List<ChessPosition>> pieces;
+    private ChessMove[] firstMoves;
+
+    @Setup
+    public void setUp() {
+        games = phase.games();
+        pieces = new ArrayList<>();
+        firstMoves = new ChessMove[games.length];
+        for (int i = 0; i < games.length; i++) {
+            List<ChessPosition> toMove = Positions.piecesToMove(games[i]);
+            pieces.add(toMove);
+            for (ChessPosition position : toMove) {
+                var moves = games[i].validMoves(position);
+                if (!moves.isEmpty()) {
+                    firstMoves[i] = moves.iterator().next();
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (int i = 0; i < games.length; i++) {
+            for (ChessPosition position : pieces.get(i)) {
+                blackhole.consume(games[i].validMoves(position));
+            }
+        }
+    }
+
+    /**
+     * Validates and plays one move per position, then takes it back through
+     * the board so the next operation starts from the same position
+     */
+    @Benchmark
+    public void makeMove() throws InvalidMoveException {
+        for (int i = 0; i < games.length; i++) {
+            ChessGame game = games[i];
+            ChessMove move = firstMoves[i];
+            ChessBoard board = game.getBoard();
+            ChessGame.TeamColor turn = game.getTeamTurn();
+            ChessPiece captured = board.getPiece(move.getEndPosition());
+            game.makeMove(move);
+            board.unmakeMove(move, captured);
+            game.setTeamTurn(turn);
+        }
+    }
+
+    @Benchmark
+    public void isInCheckmate(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(game.isInCheckmate(game.getTeamTurn()));
+        }
+    }
+
+    @Benchmark
+    public void isInStalemate(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(game.isInStalemate(game.getTeamTurn()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChessPiece#pieceMoves} for one piece type at a time, over every
+ * piece of that type in one phase of the corpus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceMovesBenchmark {
+
+    @Param
+    public Positions phase;
+
+    @Param
+    public ChessPiece.PieceType type;
+
+    private final List<ChessGame> games = new ArrayList<>();
+    private final List<ChessPosition> positions = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (ChessGame game : phase.games()) {
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    ChessPosition position = ChessPosition.of(row, col);
+                    ChessPiece piece = game.getBoard().getPiece(position);
+                    if (piece != null && piece.getPieceType() == type) {
+                        games.add(game);
+                        positions.add(position);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void pieceMoves(Blackhole blackhole) {
+        for (int i = 0; i < positions.size(); i++) {
+            ChessPosition position = positions.get(i);
+            ChessGame game = games.get(i);
+            blackhole.consume(game.getBoard().getPiece(position).pieceMoves(game.getBoard(), position));
+        }
+    }
+}
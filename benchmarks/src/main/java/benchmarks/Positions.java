@@ -0,0 +1,68 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.perft.Perft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fixed corpus every benchmark runs over, grouped by game phase so a
+ * change that only helps crowded or only helps empty boards shows up
+ */
+public enum Positions {
+    OPENING(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w",
+            "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w",
+            "rnbqkb1r/ppp2ppp/4pn2/3p4/2PP4/2N5/PP2PPPP/R1BQKBNR b"
+    ),
+    MIDDLEGAME(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w"
+    ),
+    ENDGAME(
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w",
+            "8/8/4k3/8/2p5/8/B2K4/8 w",
+            "8/5pk1/6p1/8/3Q4/6P1/5PK1/3q4 b"
+    );
+
+    private final String[] fens;
+
+    Positions(String... fens) {
+        this.fens = fens;
+    }
+
+    /**
+     * @return fresh copies of this phase's positions
+     */
+    public ChessGame[] games() {
+        ChessGame[] games = new ChessGame[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            games[i] = Perft.fromFen(fens[i]);
+        }
+        return games;
+    }
+
+    /**
+     * @return the squares holding a piece of the team to move, in board order
+     */
+    static List<ChessPosition> piecesToMove(ChessGame game) {
+        List<ChessPosition> positions = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                ChessPiece piece = game.getBoard().getPiece(position);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    positions.add(position);
+                }
+            }
+        }
+        return positions;
+    }
+}
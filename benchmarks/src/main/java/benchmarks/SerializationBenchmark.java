@@ -0,0 +1,64 @@
+package benchmarks;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import serialization.Codecs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson round trips of {@link ChessGame}, the way games are stored in the
+ * database and sent over the websocket, with the shared streaming adapters
+ * and with Gson's default reflection for comparison
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param
+    public Positions phase;
+
+    @Param({"codecs", "reflection"})
+    public String binding;
+
+    private Gson gson;
+    private ChessGame[] games;
+    private String[] json;
+
+    @Setup
+    public void setUp() {
+        gson = binding.equals("codecs") ? Codecs.GSON : new Gson();
+        games = phase.games();
+        json = new String[games.length];
+        for (int i = 0; i < games.length; i++) {
+            json[i] = gson.toJson(games[i]);
+        }
+    }
+
+    @Benchmark
+    public void toJson(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(gson.toJson(game));
+        }
+    }
+
+    @Benchmark
+    public void fromJson(Blackhole blackhole) {
+        for (String game : json) {
+            blackhole.consume(gson.fromJson(game, ChessGame.class));
+        }
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) {
+        for (ChessGame game : games) {
+            blackhole.consume(gson.fromJson(gson.toJson(game), ChessGame.class));
+        }
+    }
+}
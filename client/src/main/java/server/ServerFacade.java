@@ -1,6 +1,5 @@
 package server;
 
-import com.google.gson.Gson;
 import model.GameData;
 import requests.CreateGameRequest;
 import requests.JoinGameRequest;
@@ -10,6 +9,7 @@ import responses.CreateGameResponse;
 import responses.ListGamesResponse;
 import responses.LoginResponse;
 import responses.RegisterResponse;
+import serialization.Codecs;
 import websocket.NotificationHandler;
 import websocket.WebSocketConnection;
 
@@ -30,7 +30,7 @@ public class ServerFacade {
     }
 
     public WebSocketConnection initWebSocket(NotificationHandler handler) {
-        return new WebSocketConnection(serverUrl, handler);
+        return new WebSocketConnection(serverUrl, handler, true);
     }
 
     public void clear() throws Exception {
@@ -95,7 +95,7 @@ public class ServerFacade {
 
     private BodyPublisher makeRequestBody(Object request) {
         if (request != null) {
-            return BodyPublishers.ofString(new Gson().toJson(request));
+            return BodyPublishers.ofString(Codecs.GSON.toJson(request));
         } else {
             return BodyPublishers.noBody();
         }
@@ -116,7 +116,7 @@ public class ServerFacade {
         }
 
         if (responseClass != null) {
-            return new Gson().fromJson(response.body(), responseClass);
+            return Codecs.GSON.fromJson(response.body(), responseClass);
         }
 
         return null;
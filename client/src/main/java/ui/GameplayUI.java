@@ -4,16 +4,19 @@ import chess.*;
 import model.GameData;
 import websocket.NotificationHandler;
 import websocket.WebSocketConnection;
+import websocket.commands.Connect;
 import websocket.commands.MakeMove;
 import websocket.commands.UserGameCommand;
 import websocket.messages.Error;
 import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
 import websocket.messages.Notification;
 import websocket.messages.ServerMessage;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 import static ui.EscapeSequences.*;
 
@@ -25,7 +28,14 @@ public class GameplayUI implements NotificationHandler {
     private boolean isPlaying = true;
     private final String authToken;
     private final GameData gameData;
+    private String whiteUsername;
+    private String blackUsername;
+    private int lastSequence;
+    // Where this client is in the server's numbering of the game's messages, for resuming after a dropped socket
+    private Integer replayEpoch;
+    private Integer lastReplaySequence;
     private WebSocketConnection webSocketConnection;
+    private Supplier<WebSocketConnection> reconnect;
     private final static Scanner SCANNER = new Scanner(System.in);
     private Collection<ChessMove> highlightedMoves = new ArrayList<>();
     private Collection<ChessMove> validMoves = null;
@@ -41,13 +51,16 @@ public class GameplayUI implements NotificationHandler {
         this.isObserver = isObserver;
         this.authToken = authToken;
         this.gameData = gameData;
+        this.whiteUsername = gameData.whiteUsername();
+        this.blackUsername = gameData.blackUsername();
+        this.lastSequence = gameData.game().getMoveCount();
         this.webSocketConnection = webSocketConnection;
     }
 
     public void run() {
         try {
             System.out.print(ERASE_SCREEN);
-            sendCommand(UserGameCommand.CommandType.CONNECT);
+            webSocketConnection.sendCommand(new Connect(authToken, gameData.gameID(), true));
             Thread.sleep(1000);
             help();
 
@@ -226,7 +239,7 @@ public class GameplayUI implements NotificationHandler {
             }
         }
         MakeMove makeMove = new MakeMove(authToken, gameData.gameID(), move);
-        webSocketConnection.sendCommand(makeMove);
+        send(makeMove);
         justMadeMove = true;
         this.highlightedMoves.clear();
         this.highlightedPosition = null;
@@ -377,21 +390,24 @@ public class GameplayUI implements NotificationHandler {
 
     @Override
     public void notify(ServerMessage serverMessage) {
+        if (serverMessage instanceof LoadGame loadGame && loadGame.getReplayEpoch() != null) {
+            replayEpoch = loadGame.getReplayEpoch();
+            lastReplaySequence = loadGame.getReplaySequence();
+        } else if (serverMessage.getReplaySequence() != null && lastReplaySequence != null) {
+            lastReplaySequence = Math.max(lastReplaySequence, serverMessage.getReplaySequence());
+        }
         switch (serverMessage.getServerMessageType()) {
             case LOAD_GAME:
                 LoadGame loadGame = (LoadGame) serverMessage;
                 applyServerGameState(loadGame);
                 break;
+            case MOVE_MADE:
+                MoveMade moveMade = (MoveMade) serverMessage;
+                applyMove(moveMade);
+                break;
             case NOTIFICATION:
                 Notification notification = (Notification) serverMessage;
-                System.out.println();
-                System.out.print(SET_TEXT_ITALIC);
-                System.out.print(SET_TEXT_COLOR_BLUE);
-                System.out.print("NOTIFICATION: ");
-                System.out.print(RESET_TEXT_ITALIC);
-                System.out.print(RESET_TEXT_COLOR);
-                System.out.print(notification.getMessage());
-                System.out.println();
+                printNotification(notification.getMessage());
                 printPrompt();
                 break;
             case ERROR:
@@ -405,8 +421,73 @@ public class GameplayUI implements NotificationHandler {
         }
     }
 
+    private void printNotification(String message) {
+        System.out.println();
+        System.out.print(SET_TEXT_ITALIC);
+        System.out.print(SET_TEXT_COLOR_BLUE);
+        System.out.print("NOTIFICATION: ");
+        System.out.print(RESET_TEXT_ITALIC);
+        System.out.print(RESET_TEXT_COLOR);
+        System.out.print(message);
+        System.out.println();
+    }
+
+    private void applyMove(MoveMade moveMade) {
+        if (moveMade.getSequence() <= lastSequence) {
+            // Already applied, from before a resume
+            return;
+        }
+        if (moveMade.getSequence() != lastSequence + 1) {
+            // Missed a move somewhere, so the local game can't be trusted anymore
+            sendCommand(UserGameCommand.CommandType.RESYNC);
+            return;
+        }
+        ChessMove move = moveMade.getMove();
+        try {
+            game.makeMove(move);
+        } catch (InvalidMoveException e) {
+            sendCommand(UserGameCommand.CommandType.RESYNC);
+            return;
+        }
+        this.lastSequence = moveMade.getSequence();
+        this.currentTurn = game.getTeamTurn();
+        this.highlightedPosition = null;
+        this.validMoves = null;
+        this.highlightedMoves.clear();
+
+        displayBoard();
+        String playerToMove = currentTurn == ChessGame.TeamColor.WHITE ? whiteUsername : blackUsername;
+        String otherPlayer = currentTurn == ChessGame.TeamColor.WHITE ? blackUsername : whiteUsername;
+        ChessPiece piece = board.getPiece(move.getEndPosition());
+        // A player isn't told about their own move, just as the server leaves them out of the notification
+        boolean ownMove = !isObserver
+                && piece.getTeamColor() == (isWhitePlayer ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+        if (!ownMove) {
+            printNotification(String.format("%s moved their %s from %s to %s", moveMade.getUsername(),
+                    piece.getPieceType().toString().toLowerCase(), formatPosition(move.getStartPosition()),
+                    formatPosition(move.getEndPosition())));
+        }
+        if (moveMade.isCheckmate()) {
+            game.endGame();
+            printNotification(String.format("%s is in checkmate. %s has won the game!", playerToMove, otherPlayer));
+        } else if (moveMade.isStalemate()) {
+            game.endGame();
+            printNotification(String.format("%s has no remaining moves. The game has ended in a stalemate.", playerToMove));
+        } else if (moveMade.isCheck()) {
+            printNotification(String.format("%s is in check", playerToMove));
+        }
+        printPrompt();
+    }
+
+    private String formatPosition(ChessPosition position) {
+        return String.valueOf((char) ('a' + position.getColumn() - 1)) + position.getRow();
+    }
+
     private void applyServerGameState(LoadGame loadGame) {
         this.game = loadGame.getGame().game();
+        this.whiteUsername = loadGame.getGame().whiteUsername();
+        this.blackUsername = loadGame.getGame().blackUsername();
+        this.lastSequence = game.getMoveCount();
 
         this.board = game.getBoard();
         this.currentTurn = game.getTeamTurn();
@@ -421,6 +502,19 @@ public class GameplayUI implements NotificationHandler {
 
     private void sendCommand(UserGameCommand.CommandType type) {
         UserGameCommand command = new UserGameCommand(type, authToken, gameData.gameID());
+        send(command);
+    }
+
+    /**
+     * Sends a command, first reconnecting if the socket has dropped. The
+     * server is asked to resume, so only what was missed is sent again.
+     */
+    private void send(UserGameCommand command) {
+        if (!webSocketConnection.isOpen() && reconnect != null) {
+            webSocketConnection = reconnect.get();
+            webSocketConnection.sendCommand(new Connect(authToken, gameData.gameID(), true, replayEpoch,
+                    lastReplaySequence));
+        }
         webSocketConnection.sendCommand(command);
     }
 
@@ -428,6 +522,13 @@ public class GameplayUI implements NotificationHandler {
         this.webSocketConnection = webSocketConnection;
     }
 
+    /**
+     * @param reconnect opens a new socket to the server, for when the current one drops
+     */
+    public void setReconnect(Supplier<WebSocketConnection> reconnect) {
+        this.reconnect = reconnect;
+    }
+
     private void printPrompt() {
         System.out.print(SET_TEXT_ITALIC + "[GAMEPLAY] >>> ");
         System.out.print(RESET_TEXT_ITALIC);
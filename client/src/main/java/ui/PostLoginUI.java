@@ -103,6 +103,7 @@ public class PostLoginUI {
             GameplayUI gameplayUI = new GameplayUI(gameData, whiteView, isObserver, authToken, null);
             WebSocketConnection webSocketConnection = facade.initWebSocket(gameplayUI);
             gameplayUI.setWebSocketConnection(webSocketConnection);
+            gameplayUI.setReconnect(() -> facade.initWebSocket(gameplayUI));
             gameplayUI.run();
         } catch (Exception e) {
             System.out.print(SET_TEXT_COLOR_RED);
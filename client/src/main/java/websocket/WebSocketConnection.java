@@ -1,22 +1,30 @@
 package websocket;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import jakarta.websocket.*;
+import serialization.Codecs;
 import websocket.commands.UserGameCommand;
-import websocket.messages.Error;
-import websocket.messages.LoadGame;
-import websocket.messages.Notification;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 public class WebSocketConnection extends Endpoint {
 
     Session session;
     NotificationHandler notificationHandler;
+    private final boolean binary;
 
     public WebSocketConnection(String url, NotificationHandler notificationHandler) {
+        this(url, notificationHandler, false);
+    }
+
+    /**
+     * @param binary whether to speak the compact binary protocol instead of JSON; the server answers in kind
+     */
+    public WebSocketConnection(String url, NotificationHandler notificationHandler, boolean binary) {
+        this.binary = binary;
         try {
             url = url.replace("http", "ws");
             URI socketURI = new URI(url + "/ws");
@@ -28,23 +36,25 @@ public class WebSocketConnection extends Endpoint {
             this.session.addMessageHandler(new MessageHandler.Whole<String>() {
                 @Override
                 public void onMessage(String message) {
-                    ServerMessage serverMessage = new Gson().fromJson(message, ServerMessage.class);
-                    ServerMessage.ServerMessageType serverMessageType = serverMessage.getServerMessageType();
-                    switch (serverMessageType) {
-                        case NOTIFICATION:
-                            Notification notification = new Gson().fromJson(message, Notification.class);
-                            notificationHandler.notify(notification);
-                            break;
-                        case ERROR:
-                            Error error = new Gson().fromJson(message, Error.class);
-                            notificationHandler.notify(error);
-                            break;
-                        case LOAD_GAME:
-                            LoadGame loadGame = new Gson().fromJson(message, LoadGame.class);
-                            notificationHandler.notify(loadGame);
-                            break;
-                        default:
-                            break;
+                    ServerMessage serverMessage;
+                    try {
+                        serverMessage = Codecs.GSON.fromJson(message, ServerMessage.class);
+                    } catch (JsonParseException e) {
+                        System.err.println("Error handling server message: " + e.getMessage());
+                        return;
+                    }
+                    if (serverMessage.getServerMessageType() != null) {
+                        notificationHandler.notify(serverMessage);
+                    }
+                }
+            });
+            this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+                @Override
+                public void onMessage(ByteBuffer message) {
+                    try {
+                        notificationHandler.notify(BinaryCodec.decodeMessage(message));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Error handling server message: " + e.getMessage());
                     }
                 }
             });
@@ -68,11 +78,23 @@ public class WebSocketConnection extends Endpoint {
         System.err.println("Error: " + throwable.getMessage());
     }
 
+    /**
+     * @return whether the socket is connected, which it stops being if the server or network drops it
+     */
+    public boolean isOpen() {
+        Session current = session;
+        return current != null && current.isOpen();
+    }
+
     public void sendCommand(UserGameCommand command) {
         try {
-            if (session.isOpen() && session != null) {
-                String commandJSON = new Gson().toJson(command);
-                session.getBasicRemote().sendText(commandJSON);
+            if (isOpen()) {
+                if (binary) {
+                    session.getBasicRemote().sendBinary(ByteBuffer.wrap(BinaryCodec.encode(command)));
+                } else {
+                    String commandJSON = Codecs.GSON.toJson(command);
+                    session.getBasicRemote().sendText(commandJSON);
+                }
             }
         } catch (IOException e) {
             System.err.println("Error sending command: " + e.getMessage());
@@ -1,11 +1,52 @@
 import chess.*;
 import server.Server;
+import server.events.GameEventBus;
+import server.events.InProcessGameEventBus;
+import server.events.TcpGameEventBus;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
-        Server server = new Server();
-        server.run(8080);
+    private static final String SECRET_VARIABLE = "CHESS_EVENT_BUS_SECRET";
+
+    /**
+     * Usage: {@code [--virtual-threads] [port [[eventBusHost:]eventBusPort [peerHost:peerPort ...]]]}. Give an event
+     * bus port to run as one of several servers, along with the event bus address of every server already running.
+     * The event bus host is the name other servers reach this one by, localhost if not given, and the bus listens
+     * only on its address. Every server on the bus must be given the same secret in {@value #SECRET_VARIABLE}. With
+     * {@code --virtual-threads}, requests and their database calls are handled on virtual threads instead of
+     * fixed pools.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean virtualThreads = args.length > 0 && args[0].equals("--virtual-threads");
+        if (virtualThreads) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        GameEventBus eventBus = new InProcessGameEventBus();
+        if (args.length > 1) {
+            String secret = System.getenv(SECRET_VARIABLE);
+            if (secret == null || secret.isEmpty()) {
+                System.out.printf("Set %s to the secret the servers on the event bus share%n", SECRET_VARIABLE);
+                return;
+            }
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                String[] hostAndPort = args[i].split(":");
+                peers.add(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+            }
+            String[] busHostAndPort = args[1].split(":");
+            String busHost = busHostAndPort.length > 1 ? busHostAndPort[0] : "localhost";
+            int busPort = Integer.parseInt(busHostAndPort[busHostAndPort.length - 1]);
+            eventBus = new TcpGameEventBus(busHost, busPort, secret, peers);
+        }
+        Server server = new Server(eventBus, virtualThreads);
+        server.run(port);
 
         System.out.println("♕ 240 Chess Server");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AuthDAO} with each call returning at once and completing later, so
+ * independent calls can be in progress together. A call that fails completes
+ * exceptionally with what the synchronous call would have thrown.
+ */
+public interface AsyncAuthDAO {
+    CompletableFuture<AuthData> createAuth(String username);
+
+    CompletableFuture<AuthData> getAuth(String authToken);
+
+    CompletableFuture<Void> deleteAuth(String authToken);
+
+    CompletableFuture<Void> deleteAuths();
+}
@@ -0,0 +1,23 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link GameDAO} with each call returning at once and completing later, so
+ * independent calls can be in progress together. A call that fails completes
+ * exceptionally with what the synchronous call would have thrown.
+ */
+public interface AsyncGameDAO {
+    CompletableFuture<Void> createGame(GameData gameData);
+
+    CompletableFuture<GameData> getGame(int gameID);
+
+    CompletableFuture<Void> updateGame(GameData updatedGameData);
+
+    CompletableFuture<Collection<GameData>> listGames();
+
+    CompletableFuture<Void> deleteGames();
+}
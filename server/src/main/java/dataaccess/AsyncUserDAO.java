@@ -0,0 +1,18 @@
+package dataaccess;
+
+import model.UserData;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link UserDAO} with each call returning at once and completing later, so
+ * independent calls can be in progress together. A call that fails completes
+ * exceptionally with what the synchronous call would have thrown.
+ */
+public interface AsyncUserDAO {
+    CompletableFuture<UserData> createUser(UserData userData);
+
+    CompletableFuture<UserData> getUser(String username);
+
+    CompletableFuture<Void> deleteUsers();
+}
@@ -0,0 +1,132 @@
+package dataaccess;
+
+import exceptions.UnauthorizedException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DAO calls for the asynchronous DAOs, and waits for them
+ */
+public final class DataAccessExecutor {
+    /**
+     * Runs each call on the thread making it, for DAOs that never block
+     */
+    public static final Executor DIRECT = Runnable::run;
+
+    private DataAccessExecutor() {
+    }
+
+    interface Call<T> {
+        T call() throws Exception;
+    }
+
+    interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * @param virtualThreads whether to run each call on a virtual thread of its own
+     * @return an executor for calls to the database, as
+     * {@link #forDatabase(boolean, int)} with as many connections as
+     * {@link DatabaseManager} allows open at once
+     */
+    public static ExecutorService forDatabase(boolean virtualThreads) {
+        return forDatabase(virtualThreads, virtualThreads ? 0 : DatabaseManager.maxConnections());
+    }
+
+    /**
+     * With virtual threads, every call gets a thread of its own and only the
+     * connection limit decides how many reach the database at once, so a call
+     * over the limit fails once it has waited too long for a connection rather
+     * than queueing here. Otherwise calls share a pool with a thread for each
+     * connection, so no call waits for a thread while a connection is free.
+     * Either way its owner must shut it down.
+     *
+     * @param virtualThreads whether to run each call on a virtual thread of its own
+     * @param maxConnections how many connections the database allows open at once; unused with virtual threads
+     */
+    public static ExecutorService forDatabase(boolean virtualThreads, int maxConnections) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("database-io-", 1).factory());
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxConnections, runnable -> {
+            Thread thread = new Thread(runnable, "database-io-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static <T> CompletableFuture<T> supply(Call<T> call, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new DataAccessException("Error: database unavailable", e));
+        }
+        return future;
+    }
+
+    static CompletableFuture<Void> run(Action action, Executor executor) {
+        return supply(() -> {
+            action.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Waits for a DAO call to complete
+     *
+     * @return the call's result
+     * @throws DataAccessException   if the call threw one, or any other checked exception
+     * @throws UnauthorizedException if the call threw one
+     */
+    public static <T> T await(CompletableFuture<T> future) throws DataAccessException, UnauthorizedException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof DataAccessException dataAccessException) {
+                throw dataAccessException;
+            }
+            if (cause instanceof UnauthorizedException unauthorizedException) {
+                throw unauthorizedException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new DataAccessException("Error: database error", cause);
+        }
+    }
+
+    /**
+     * Waits for every one of several DAO calls to complete
+     *
+     * @throws DataAccessException if any of them failed
+     */
+    public static void awaitAll(CompletableFuture<?>... futures) throws DataAccessException {
+        for (CompletableFuture<?> future : futures) {
+            try {
+                await(future);
+            } catch (UnauthorizedException e) {
+                throw new DataAccessException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package dataaccess;
 
 import chess.ChessGame;
-import com.google.gson.Gson;
 import model.GameData;
+import serialization.Codecs;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -33,7 +33,7 @@ public class DatabaseGameDAO implements GameDAO {
                 preparedStatement.setString(2, gameData.whiteUsername());
                 preparedStatement.setString(3, gameData.blackUsername());
                 preparedStatement.setString(4, gameData.gameName());
-                var json = new Gson().toJson(gameData.game());
+                var json = Codecs.GSON.toJson(gameData.game());
                 preparedStatement.setString(5, json);
                 preparedStatement.executeUpdate();
             }
@@ -54,7 +54,7 @@ public class DatabaseGameDAO implements GameDAO {
                         String blackUsername = resultSet.getString("blackUsername");
                         String gameName = resultSet.getString("gameName");
                         var json = resultSet.getString("chessGame");
-                        var chessGame = new Gson().fromJson(json, ChessGame.class);
+                        var chessGame = Codecs.GSON.fromJson(json, ChessGame.class);
                         return new GameData(gameID, whiteUsername, blackUsername, gameName, chessGame);
                     }
                 }
@@ -73,7 +73,7 @@ public class DatabaseGameDAO implements GameDAO {
                 preparedStatement.setString(1, updatedGameData.whiteUsername());
                 preparedStatement.setString(2, updatedGameData.blackUsername());
                 preparedStatement.setString(3, updatedGameData.gameName());
-                preparedStatement.setString(4, new Gson().toJson(updatedGameData.game()));
+                preparedStatement.setString(4, Codecs.GSON.toJson(updatedGameData.game()));
                 preparedStatement.setInt(5, updatedGameData.gameID());
                 preparedStatement.executeUpdate();
             }
@@ -95,7 +95,7 @@ public class DatabaseGameDAO implements GameDAO {
                         var blackUsername = resultSet.getString("blackUsername");
                         var gameName = resultSet.getString("gameName");
                         var json = resultSet.getString("chessGame");
-                        var chessGame = new Gson().fromJson(json, ChessGame.class);
+                        var chessGame = Codecs.GSON.fromJson(json, ChessGame.class);
 
                         games.add(new GameData(gameID, whiteUsername, blackUsername, gameName, chessGame));
                     }
@@ -1,13 +1,24 @@
 package dataaccess;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DatabaseManager {
     private static String databaseName;
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    // Callers past this many open connections wait for one to close, rather than each
+    // virtual thread opening its own and running the database out of connections
+    private static Semaphore connectionPermits;
+    private static int maxConnections;
+    private static final int DEFAULT_MAX_CONNECTIONS = 100;
+    private static final long CONNECTION_WAIT_SECONDS = 10;
 
     /*
      * Load the database information for the db.properties file.
@@ -40,18 +51,53 @@ public class DatabaseManager {
      * // execute SQL statements.
      * }
      * </code>
+     * At most {@code db.maxConnections} connections are open at once; past that,
+     * callers wait for one to be closed.
      */
     static Connection getConnection() throws DataAccessException {
+        try {
+            if (!connectionPermits.tryAcquire(CONNECTION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new DataAccessException("failed to get connection: too many open connections");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("failed to get connection", ex);
+        }
         try {
             //do not wrap the following line with a try-with-resources
             var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
             conn.setCatalog(databaseName);
-            return conn;
+            return releasingPermitOnClose(conn);
         } catch (SQLException ex) {
+            connectionPermits.release();
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * @return how many connections may be open at once
+     */
+    static int maxConnections() {
+        return maxConnections;
+    }
+
+    private static Connection releasingPermitOnClose(Connection conn) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    boolean closing = method.getName().equals("close") && method.getParameterCount() == 0;
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    } finally {
+                        if (closing && closed.compareAndSet(false, true)) {
+                            connectionPermits.release();
+                        }
+                    }
+                });
+    }
+
     public static void initializeTable(String createStatement) throws DataAccessException {
         createDatabase();
         try (var conn = getConnection()) {
@@ -84,5 +130,8 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        var configuredMaxConnections = props.getProperty("db.maxConnections");
+        maxConnections = configuredMaxConnections == null ? DEFAULT_MAX_CONNECTIONS : Integer.parseInt(configuredMaxConnections);
+        connectionPermits = new Semaphore(maxConnections);
     }
 }
@@ -0,0 +1,42 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes an {@link AuthDAO} asynchronous by running its calls on an executor:
+ * {@link DataAccessExecutor#forDatabase(boolean)} for a database DAO, or
+ * {@link DataAccessExecutor#DIRECT} for a memory DAO, whose calls then
+ * complete before they return.
+ */
+public class ExecutorAuthDAO implements AsyncAuthDAO {
+    private final AuthDAO authDAO;
+    private final Executor executor;
+
+    public ExecutorAuthDAO(AuthDAO authDAO, Executor executor) {
+        this.authDAO = authDAO;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<AuthData> createAuth(String username) {
+        return DataAccessExecutor.supply(() -> authDAO.createAuth(username), executor);
+    }
+
+    @Override
+    public CompletableFuture<AuthData> getAuth(String authToken) {
+        return DataAccessExecutor.supply(() -> authDAO.getAuth(authToken), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAuth(String authToken) {
+        return DataAccessExecutor.run(() -> authDAO.deleteAuth(authToken), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAuths() {
+        return DataAccessExecutor.run(authDAO::deleteAuths, executor);
+    }
+}
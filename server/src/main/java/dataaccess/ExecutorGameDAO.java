@@ -0,0 +1,48 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes a {@link GameDAO} asynchronous by running its calls on an executor:
+ * {@link DataAccessExecutor#forDatabase(boolean)} for a database DAO, or
+ * {@link DataAccessExecutor#DIRECT} for a memory DAO, whose calls then
+ * complete before they return.
+ */
+public class ExecutorGameDAO implements AsyncGameDAO {
+    private final GameDAO gameDAO;
+    private final Executor executor;
+
+    public ExecutorGameDAO(GameDAO gameDAO, Executor executor) {
+        this.gameDAO = gameDAO;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createGame(GameData gameData) {
+        return DataAccessExecutor.run(() -> gameDAO.createGame(gameData), executor);
+    }
+
+    @Override
+    public CompletableFuture<GameData> getGame(int gameID) {
+        return DataAccessExecutor.supply(() -> gameDAO.getGame(gameID), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateGame(GameData updatedGameData) {
+        return DataAccessExecutor.run(() -> gameDAO.updateGame(updatedGameData), executor);
+    }
+
+    @Override
+    public CompletableFuture<Collection<GameData>> listGames() {
+        return DataAccessExecutor.supply(gameDAO::listGames, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteGames() {
+        return DataAccessExecutor.run(gameDAO::deleteGames, executor);
+    }
+}
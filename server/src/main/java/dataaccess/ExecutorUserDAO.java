@@ -0,0 +1,37 @@
+package dataaccess;
+
+import model.UserData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes a {@link UserDAO} asynchronous by running its calls on an executor:
+ * {@link DataAccessExecutor#forDatabase(boolean)} for a database DAO, or
+ * {@link DataAccessExecutor#DIRECT} for a memory DAO, whose calls then
+ * complete before they return.
+ */
+public class ExecutorUserDAO implements AsyncUserDAO {
+    private final UserDAO userDAO;
+    private final Executor executor;
+
+    public ExecutorUserDAO(UserDAO userDAO, Executor executor) {
+        this.userDAO = userDAO;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<UserData> createUser(UserData userData) {
+        return DataAccessExecutor.supply(() -> userDAO.createUser(userData), executor);
+    }
+
+    @Override
+    public CompletableFuture<UserData> getUser(String username) {
+        return DataAccessExecutor.supply(() -> userDAO.getUser(username), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteUsers() {
+        return DataAccessExecutor.run(userDAO::deleteUsers, executor);
+    }
+}
@@ -0,0 +1,274 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * The authoritative in-memory copy of every game that has been used since the
+ * server started, kept in front of a slower {@link GameDAO}.
+ * <p>
+ * Reads are served from memory after the first load. Updates are applied to
+ * memory right away and written to the underlying DAO in the background: each
+ * update leaves a snapshot of the game as pending, a newer update for the same
+ * game replaces the older snapshot, and a flusher thread writes whatever is
+ * pending every flush interval. Several moves in quick succession therefore
+ * cost one database write. {@link #flush(int)} and {@link #close()} write
+ * synchronously for when a game must be durable right away.
+ * <p>
+ * What the registry holds is a published snapshot: every game it stores is a
+ * copy of the one it was given, and the games it hands out are shared with
+ * every other reader, on any thread. Callers must not change them; to change
+ * a game, change a copy and pass that to {@link #updateGame(GameData)}.
+ * <p>
+ * When several servers share the database, each game is kept in memory by the
+ * one server that owns it. Games this server does not own are read from the
+ * database every time and their updates are written straight through, after
+ * which the listener set with {@link #onUnownedUpdate(Consumer)} is told so
+ * the owner can catch up. {@link #release(int)} hands a game back when this
+ * server stops owning it.
+ */
+public class LiveGameRegistry implements GameDAO, AutoCloseable {
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(200);
+
+    private final GameDAO delegate;
+    private final Map<Integer, GameData> games = new ConcurrentHashMap<>();
+    private final Map<Integer, GameData> pending = new ConcurrentHashMap<>();
+    // A lock rather than a monitor, since it is held across database writes that would pin a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final IntPredicate ownsGame;
+    private volatile Consumer<GameData> unownedUpdateListener = gameData -> { };
+
+    public LiveGameRegistry(GameDAO delegate) {
+        this(delegate, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    public LiveGameRegistry(GameDAO delegate, Duration flushInterval) {
+        this(delegate, flushInterval, gameID -> true);
+    }
+
+    /**
+     * @param ownsGame whether this server owns a game and so may keep it in memory
+     */
+    public LiveGameRegistry(GameDAO delegate, IntPredicate ownsGame) {
+        this(delegate, DEFAULT_FLUSH_INTERVAL, ownsGame);
+    }
+
+    public LiveGameRegistry(GameDAO delegate, Duration flushInterval, IntPredicate ownsGame) {
+        this.delegate = delegate;
+        this.ownsGame = ownsGame;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushPending, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void createGame(GameData gameData) throws DataAccessException {
+        delegate.createGame(gameData);
+        if (ownsGame.test(gameData.gameID())) {
+            games.put(gameData.gameID(), snapshot(gameData));
+        }
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        GameData gameData = games.get(gameID);
+        if (gameData != null) {
+            return gameData;
+        }
+        GameData loaded = delegate.getGame(gameID);
+        if (loaded == null || !ownsGame.test(gameID)) {
+            return loaded;
+        }
+        GameData snapshot = snapshot(loaded);
+        GameData raced = games.putIfAbsent(gameID, snapshot);
+        return raced == null ? snapshot : raced;
+    }
+
+    @Override
+    public void updateGame(GameData updatedGameData) throws DataAccessException {
+        int gameID = updatedGameData.gameID();
+        // A game still in memory is this server's to write until it has been released
+        if (!ownsGame.test(gameID) && !games.containsKey(gameID)) {
+            delegate.updateGame(updatedGameData);
+            unownedUpdateListener.accept(snapshot(updatedGameData));
+            return;
+        }
+        // Never changed once stored, so one copy serves readers and the flusher alike
+        GameData snapshot = snapshot(updatedGameData);
+        games.put(gameID, snapshot);
+        pending.put(gameID, snapshot);
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        Map<Integer, GameData> merged = new LinkedHashMap<>();
+        for (GameData gameData : delegate.listGames()) {
+            merged.put(gameData.gameID(), gameData);
+        }
+        merged.putAll(games);
+        return new ArrayList<>(merged.values());
+    }
+
+    @Override
+    public void deleteGames() throws DataAccessException {
+        flushLock.lock();
+        try {
+            pending.clear();
+            games.clear();
+            delegate.deleteGames();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the in-memory copy of a game with one changed elsewhere, such as
+     * by the server that owned it before, without writing it. Does nothing for
+     * a game this server does not own, or when the copy in memory is further
+     * along, as it is when a handoff from an earlier owner arrives late.
+     */
+    public void refresh(GameData gameData) {
+        if (ownsGame.test(gameData.gameID())) {
+            games.compute(gameData.gameID(),
+                    (gameID, held) -> held != null && isLater(held, gameData) ? held : snapshot(gameData));
+        }
+    }
+
+    /**
+     * Writes a game's pending update and forgets it, for when another server
+     * has become its owner
+     *
+     * @return the game as it was last held in memory, or null if it was not
+     * @throws DataAccessException if the write fails; the game stays in memory and pending
+     */
+    public GameData release(int gameID) throws DataAccessException {
+        flushLock.lock();
+        try {
+            flush(gameID);
+            return games.remove(gameID);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return the IDs of the games held in memory
+     */
+    public Set<Integer> cachedGameIDs() {
+        return new TreeSet<>(games.keySet());
+    }
+
+    /**
+     * @param listener told about each update to a game this server does not own, after it has been written
+     */
+    public void onUnownedUpdate(Consumer<GameData> listener) {
+        unownedUpdateListener = listener;
+    }
+
+    /**
+     * Writes a game's pending update, if it has one, before returning
+     *
+     * @param gameID the game to make durable
+     * @throws DataAccessException if the write fails; the update stays pending
+     */
+    public void flush(int gameID) throws DataAccessException {
+        flushLock.lock();
+        try {
+            GameData snapshot = pending.remove(gameID);
+            if (snapshot != null) {
+                write(snapshot);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return how many games have updates that have not been written yet
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the background flusher and writes every pending update
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPending();
+    }
+
+    private void flushPending() {
+        flushLock.lock();
+        try {
+            for (Integer gameID : new ArrayList<>(pending.keySet())) {
+                GameData snapshot = pending.remove(gameID);
+                if (snapshot == null) {
+                    continue;
+                }
+                try {
+                    write(snapshot);
+                } catch (DataAccessException | RuntimeException e) {
+                    System.out.printf("Failed to save game %d: %s%n", gameID, e.getMessage());
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(GameData snapshot) throws DataAccessException {
+        try {
+            delegate.updateGame(snapshot);
+        } catch (DataAccessException | RuntimeException e) {
+            // Keep it for the next flush unless a newer update has replaced it since
+            pending.putIfAbsent(snapshot.gameID(), snapshot);
+            throw e;
+        }
+    }
+
+    // Moves are only ever added and games only ever end, so the copy with more moves, or over, is the later one
+    private static boolean isLater(GameData held, GameData other) {
+        if (held.game() == null || other.game() == null) {
+            return false;
+        }
+        int heldMoves = held.game().getMoveCount();
+        int otherMoves = other.game().getMoveCount();
+        if (heldMoves != otherMoves) {
+            return heldMoves > otherMoves;
+        }
+        return held.game().isGameOver() && !other.game().isGameOver();
+    }
+
+    private static GameData snapshot(GameData gameData) {
+        ChessGame game = gameData.game() == null ? null : new ChessGame(gameData.game());
+        return new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(),
+                gameData.gameName(), game);
+    }
+}
@@ -1,7 +1,7 @@
 package handler;
 
-import com.google.gson.Gson;
 import responses.ErrorResponse;
+import serialization.Codecs;
 import service.ClearService;
 import io.javalin.http.Context;
 
@@ -12,7 +12,7 @@ public class ClearHandler {
             clearService.clear();
             cxt.status(200).result("{}");
         } catch (Exception e) {
-            cxt.status(500).result(new Gson().toJson(new ErrorResponse("Error: something went wrong")));
+            cxt.status(500).result(Codecs.GSON.toJson(new ErrorResponse("Error: something went wrong")));
         }
     }
 }
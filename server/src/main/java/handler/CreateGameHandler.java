@@ -1,12 +1,12 @@
 package handler;
 
-import com.google.gson.Gson;
 import exceptions.BadRequestException;
 import exceptions.UnauthorizedException;
 import io.javalin.http.Context;
 import requests.CreateGameRequest;
 import responses.CreateGameResponse;
 import responses.ErrorResponse;
+import serialization.Codecs;
 import service.GameService;
 
 public class CreateGameHandler {
@@ -17,17 +17,16 @@ public class CreateGameHandler {
             if (authToken == null || authToken.isEmpty()) {
                 throw new UnauthorizedException("Error: unauthorized");
             }
-            Gson gson = new Gson();
-            CreateGameRequest request = gson.fromJson(cxt.body(), CreateGameRequest.class);
+            CreateGameRequest request = Codecs.GSON.fromJson(cxt.body(), CreateGameRequest.class);
             CreateGameResponse response = gameService.createGame(request, authToken);
             cxt.status(200);
-            cxt.result(gson.toJson(response));
+            cxt.result(Codecs.GSON.toJson(response));
         } catch (BadRequestException e) {
-            cxt.status(400).result(new Gson().toJson(new ErrorResponse("Error: bad request")));
+            cxt.status(400).result(Codecs.GSON.toJson(new ErrorResponse("Error: bad request")));
         } catch (UnauthorizedException e) {
-            cxt.status(401).result(new Gson().toJson(new ErrorResponse("Error: unauthorized")));
+            cxt.status(401).result(Codecs.GSON.toJson(new ErrorResponse("Error: unauthorized")));
         } catch (Exception e) {
-            cxt.status(500).result(new Gson().toJson(new ErrorResponse("Error: something went wrong")));
+            cxt.status(500).result(Codecs.GSON.toJson(new ErrorResponse("Error: something went wrong")));
         }
     }
 }
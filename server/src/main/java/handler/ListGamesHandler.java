@@ -1,11 +1,11 @@
 package handler;
 
-import com.google.gson.Gson;
 import exceptions.UnauthorizedException;
 import io.javalin.http.Context;
 import model.GameData;
 import responses.ErrorResponse;
 import responses.ListGamesResponse;
+import serialization.Codecs;
 import service.GameService;
 
 import java.util.Collection;
@@ -13,14 +13,13 @@ import java.util.Collection;
 public class ListGamesHandler {
     public static void handle(Context cxt, GameService gameService) {
         try {
-            Gson gson = new Gson();
             String authToken = cxt.header("authorization");
             Collection<GameData> games = gameService.listGames(authToken);
-            cxt.status(200).result(gson.toJson(new ListGamesResponse(games)));
+            cxt.status(200).result(Codecs.GSON.toJson(new ListGamesResponse(games)));
         } catch (UnauthorizedException e) {
-            cxt.status(401).result(new Gson().toJson(new ErrorResponse("Error: unauthorized")));
+            cxt.status(401).result(Codecs.GSON.toJson(new ErrorResponse("Error: unauthorized")));
         } catch (Exception e) {
-            cxt.status(500).result(new Gson().toJson(new ErrorResponse("Error: something went wrong")));
+            cxt.status(500).result(Codecs.GSON.toJson(new ErrorResponse("Error: something went wrong")));
         }
     }
 }
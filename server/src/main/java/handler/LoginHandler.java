@@ -1,28 +1,27 @@
 package handler;
 
-import com.google.gson.Gson;
 import exceptions.BadRequestException;
 import exceptions.UnauthorizedException;
 import io.javalin.http.Context;
 import requests.LoginRequest;
 import responses.ErrorResponse;
 import responses.LoginResponse;
+import serialization.Codecs;
 import service.UserService;
 
 public class LoginHandler {
     public static void handle(Context cxt, UserService userService) {
         try {
-            Gson gson = new Gson();
-            LoginRequest request = gson.fromJson(cxt.body(), LoginRequest.class);
+            LoginRequest request = Codecs.GSON.fromJson(cxt.body(), LoginRequest.class);
             LoginResponse response = userService.login(request);
             cxt.status(200);
-            cxt.result(gson.toJson(response));
+            cxt.result(Codecs.GSON.toJson(response));
         } catch (BadRequestException e) {
-            cxt.status(400).result(new Gson().toJson(new ErrorResponse("Error: bad request")));
+            cxt.status(400).result(Codecs.GSON.toJson(new ErrorResponse("Error: bad request")));
         } catch (UnauthorizedException e) {
-            cxt.status(401).result(new Gson().toJson(new ErrorResponse("Error: unauthorized")));
+            cxt.status(401).result(Codecs.GSON.toJson(new ErrorResponse("Error: unauthorized")));
         } catch (Exception e) {
-            cxt.status(500).result(new Gson().toJson(new ErrorResponse("Error: something went wrong")));
+            cxt.status(500).result(Codecs.GSON.toJson(new ErrorResponse("Error: something went wrong")));
         }
     }
 }
@@ -1,9 +1,9 @@
 package handler;
 
-import com.google.gson.Gson;
 import exceptions.UnauthorizedException;
 import io.javalin.http.Context;
 import responses.ErrorResponse;
+import serialization.Codecs;
 import service.UserService;
 
 public class LogoutHandler {
@@ -16,9 +16,9 @@ public class LogoutHandler {
             userService.logout(authToken);
             cxt.status(200).result("{}");
         } catch (UnauthorizedException e) {
-            cxt.status(401).result(new Gson().toJson(new ErrorResponse("Error: unauthorized")));
+            cxt.status(401).result(Codecs.GSON.toJson(new ErrorResponse("Error: unauthorized")));
         } catch (Exception e) {
-            cxt.status(500).result(new Gson().toJson(new ErrorResponse("Error: something went wrong")));
+            cxt.status(500).result(Codecs.GSON.toJson(new ErrorResponse("Error: something went wrong")));
         }
     }
 }
@@ -2,10 +2,31 @@ package server;
 
 import io.javalin.*;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
 import handler.*;
+import responses.ErrorResponse;
+import serialization.Codecs;
+import server.cluster.GameOwnership;
+import server.events.GameEventBus;
+import server.events.InProcessGameEventBus;
+import server.metrics.Counter;
+import server.metrics.LatencyHistogram;
+import server.metrics.MetricsRegistry;
+import server.metrics.TimedAuthDAO;
+import server.metrics.TimedGameDAO;
+import server.metrics.TimedUserDAO;
+import server.ratelimit.TokenBucketLimiter;
 import server.websocket.WebSocketHandler;
 import service.*;
 import dataaccess.*;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class Server {
 
@@ -14,16 +35,52 @@ public class Server {
     private GameService gameService;
     private UserService userService;
     private WebSocketHandler webSocketHandler;
+    private LiveGameRegistry liveGames;
+    private ExecutorService databaseExecutor;
+    private final GameEventBus eventBus;
+    private final boolean virtualThreads;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    // Requests allowed per second, and at once, from one address and with one auth token
+    private final TokenBucketLimiter requestsByAddress = new TokenBucketLimiter(100, 200, false);
+    private final TokenBucketLimiter requestsByToken = new TokenBucketLimiter(20, 50, true);
+    // Registering and logging in hash a password, which costs far more than any other request
+    private final TokenBucketLimiter signInsByAddress = new TokenBucketLimiter(10, 100, false);
 
     public Server() {
-        javalin = Javalin.create(config -> config.staticFiles.add("web"))
-                .post("/user", this::register)
-                .post("/session", this::login)
-                .delete("/session", this::logout)
-                .get("/game", this::listGames)
-                .post("/game", this::createGame)
-                .put("/game", this::joinGame)
-                .delete("/db", this::clear);
+        this(new InProcessGameEventBus());
+    }
+
+    /**
+     * @param eventBus connects this server's games to the other servers running them; closed by {@link #stop()}
+     */
+    public Server(GameEventBus eventBus) {
+        this(eventBus, false);
+    }
+
+    /**
+     * @param eventBus       connects this server's games to the other servers running them; closed by {@link #stop()}
+     * @param virtualThreads whether to handle requests, websocket messages and database calls on virtual threads
+     *                       instead of bounded pools of platform threads, so requests blocked on the database do
+     *                       not limit how many can be in progress
+     */
+    public Server(GameEventBus eventBus, boolean virtualThreads) {
+        this.eventBus = eventBus;
+        this.virtualThreads = virtualThreads;
+        javalin = Javalin.create(config -> {
+                    config.staticFiles.add("web");
+                    if (virtualThreads) {
+                        config.jetty.threadPool = virtualThreadPool();
+                    }
+                })
+                .before(this::limitRate)
+                .post("/user", timed("POST /user", this::register))
+                .post("/session", timed("POST /session", this::login))
+                .delete("/session", timed("DELETE /session", this::logout))
+                .get("/game", timed("GET /game", this::listGames))
+                .post("/game", timed("POST /game", this::createGame))
+                .put("/game", timed("PUT /game", this::joinGame))
+                .delete("/db", timed("DELETE /db", this::clear))
+                .get("/metrics", timed("GET /metrics", this::scrapeMetrics));
     }
 
     public int run(int desiredPort) {
@@ -31,27 +88,168 @@ public class Server {
             AuthDAO authDAO = new DatabaseAuthDAO();
             GameDAO gameDAO = new DatabaseGameDAO();
             UserDAO userDAO = new DatabaseUserDAO();
-
-            this.clearService = new ClearService(authDAO, gameDAO, userDAO);
-            this.gameService = new GameService(authDAO, gameDAO);
-            this.userService = new UserService(authDAO, userDAO);
-            this.webSocketHandler = new WebSocketHandler(authDAO, gameDAO);
-
-            javalin.ws("/ws", ws -> {
-                ws.onConnect(webSocketHandler);
-                ws.onMessage(webSocketHandler);
-                ws.onClose(webSocketHandler);
-            });
-            javalin.start(desiredPort);
-            return javalin.port();
+            return run(desiredPort, authDAO, gameDAO, userDAO, DataAccessExecutor.forDatabase(virtualThreads));
         } catch (DataAccessException e) {
             stop();
             return -1;
         }
     }
 
+    /**
+     * Runs on the given data access instead of the database, such as in-memory DAOs slowed down to stand in for
+     * a loaded database in a load test
+     *
+     * @param dataAccessExecutor runs the DAO calls of HTTP requests, such as one from
+     *                           {@link DataAccessExecutor#forDatabase(boolean, int)}; shut down by {@link #stop()}
+     */
+    public int run(int desiredPort, AuthDAO storedAuths, GameDAO storedGames, UserDAO storedUsers,
+                   ExecutorService dataAccessExecutor) {
+        databaseExecutor = dataAccessExecutor;
+        AuthDAO authDAO = new TimedAuthDAO(storedAuths, metrics);
+        GameOwnership ownership = new GameOwnership(eventBus.nodeID(), eventBus.nodes());
+        liveGames = new LiveGameRegistry(new TimedGameDAO(storedGames, metrics), ownership::ownsGame);
+        GameDAO gameDAO = liveGames;
+        UserDAO userDAO = new TimedUserDAO(storedUsers, metrics);
+
+        AsyncAuthDAO asyncAuthDAO = new ExecutorAuthDAO(authDAO, dataAccessExecutor);
+        AsyncGameDAO asyncGameDAO = new ExecutorGameDAO(gameDAO, dataAccessExecutor);
+        AsyncUserDAO asyncUserDAO = new ExecutorUserDAO(userDAO, dataAccessExecutor);
+
+        this.clearService = new ClearService(asyncAuthDAO, asyncGameDAO, asyncUserDAO);
+        this.gameService = new GameService(asyncAuthDAO, asyncGameDAO);
+        this.userService = new UserService(asyncAuthDAO, asyncUserDAO);
+        this.webSocketHandler = new WebSocketHandler(authDAO, liveGames, eventBus, ownership, metrics);
+        registerGauges();
+
+        javalin.ws("/ws", ws -> {
+            ws.onConnect(webSocketHandler);
+            ws.onMessage(webSocketHandler);
+            ws.onBinaryMessage(webSocketHandler);
+            ws.onClose(webSocketHandler);
+            ws.onError(webSocketHandler);
+        });
+        javalin.start(desiredPort);
+        return javalin.port();
+    }
+
     public void stop() {
         javalin.stop();
+        if (databaseExecutor != null) {
+            databaseExecutor.shutdown();
+        }
+        if (webSocketHandler != null) {
+            webSocketHandler.close();
+        }
+        if (liveGames != null) {
+            liveGames.close();
+        }
+        // Leave only once every game is saved, so the servers taking them over load the latest state
+        eventBus.close();
+    }
+
+    /**
+     * Jetty's own pool of platform threads, which it keeps for accepting and
+     * selecting on connections, handing each request and websocket message to
+     * a new virtual thread instead. Javalin's {@code useVirtualThreads} would run
+     * the selectors on virtual threads too, where they hold on to their carrier
+     * threads and starve the handlers of them.
+     */
+    private static ThreadPool virtualThreadPool() {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("JettyServerThreadPool");
+        threadPool.setVirtualThreadsExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        return threadPool;
+    }
+
+    /**
+     * @return the metrics served at {@code /metrics}
+     */
+    public MetricsRegistry metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the limits on requests and websocket messages, by name
+     */
+    public Map<String, TokenBucketLimiter> rateLimiters() {
+        Map<String, TokenBucketLimiter> limiters = new LinkedHashMap<>();
+        limiters.put("http-address", requestsByAddress);
+        limiters.put("http-token", requestsByToken);
+        limiters.put("sign-in-address", signInsByAddress);
+        if (webSocketHandler != null) {
+            limiters.putAll(webSocketHandler.rateLimiters());
+        }
+        return limiters;
+    }
+
+    /**
+     * Turns away a request over its address's or auth token's limit with a 429
+     * before it reaches a handler, so it costs no database or password work
+     */
+    private void limitRate(Context cxt) {
+        String address = cxt.ip();
+        String authToken = cxt.header("authorization");
+        long wait = requestsByAddress.tryAcquire(address);
+        if (wait == 0 && authToken != null) {
+            wait = requestsByToken.tryAcquire(authToken);
+        }
+        if (wait == 0 && isSignIn(cxt)) {
+            wait = signInsByAddress.tryAcquire(address);
+        }
+        if (wait > 0) {
+            cxt.header("Retry-After", Long.toString(TimeUnit.NANOSECONDS.toSeconds(wait) + 1));
+            cxt.status(429).result(Codecs.GSON.toJson(new ErrorResponse("Error: too many requests")));
+            cxt.skipRemainingHandlers();
+        }
+    }
+
+    /**
+     * Wraps a route's handler to record how long it takes and the class of status it responds with
+     */
+    private Handler timed(String route, Handler handler) {
+        LatencyHistogram latency = metrics.latency("chess_http_request_seconds",
+                "How long each route took to handle a request", "route", route);
+        Counter[] responses = new Counter[6];
+        for (int statusClass = 2; statusClass < responses.length; statusClass++) {
+            responses[statusClass] = metrics.counter("chess_http_responses_total",
+                    "Responses sent by each route, by status class", "route", route, "status", statusClass + "xx");
+        }
+        return cxt -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(cxt);
+            } finally {
+                latency.record(System.nanoTime() - start);
+                int statusClass = cxt.statusCode() / 100;
+                if (statusClass >= 2 && statusClass < responses.length) {
+                    responses[statusClass].increment();
+                }
+            }
+        };
+    }
+
+    private void registerGauges() {
+        metrics.gauge("chess_games_cached", "Games held in memory by this server",
+                () -> liveGames.cachedGameIDs().size());
+        metrics.gauge("chess_games_pending_writes", "Games with updates not yet written to the database",
+                liveGames::pendingCount);
+        metrics.gauge("chess_cluster_servers", "Servers sharing games with this one, itself included",
+                () -> eventBus.nodes().size());
+        String help = "Requests and websocket messages seen by each rate limiter, by whether they were allowed";
+        rateLimiters().forEach((name, limiter) -> {
+            metrics.counter("chess_rate_limiter_requests_total", help, () -> limiter.totals().allowed(),
+                    "limiter", name, "outcome", "allowed");
+            metrics.counter("chess_rate_limiter_requests_total", help, () -> limiter.totals().rejected(),
+                    "limiter", name, "outcome", "rejected");
+        });
+    }
+
+    private void scrapeMetrics(Context cxt) {
+        cxt.contentType("text/plain; version=0.0.4; charset=utf-8").result(metrics.scrape());
+    }
+
+    private static boolean isSignIn(Context cxt) {
+        return cxt.method().name().equals("POST") && (cxt.path().equals("/session") || cxt.path().equals("/user"));
     }
 
     private void register(Context cxt) {
@@ -0,0 +1,49 @@
+package server.cluster;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which server owns each game, as this server sees it. Only the owner changes
+ * a game or keeps it in memory; the others forward commands for it to the
+ * owner. The ring is replaced whenever a server joins or leaves.
+ */
+public class GameOwnership {
+    private final String self;
+    private volatile HashRing ring;
+
+    /**
+     * @param self  this server's name
+     * @param nodes every server's name; this server is added if it is missing
+     */
+    public GameOwnership(String self, Collection<String> nodes) {
+        this.self = self;
+        setNodes(nodes);
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public boolean ownsGame(int gameID) {
+        return ring.owner(gameID).equals(self);
+    }
+
+    public String ownerOf(int gameID) {
+        return ring.owner(gameID);
+    }
+
+    public Set<String> nodes() {
+        return ring.nodes();
+    }
+
+    /**
+     * Rebuilds the ring for a new set of servers
+     */
+    public void setNodes(Collection<String> nodes) {
+        Set<String> members = new HashSet<>(nodes);
+        members.add(self);
+        ring = new HashRing(members);
+    }
+}
@@ -0,0 +1,84 @@
+package server.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A consistent-hash ring that maps each game to the server that owns it.
+ * <p>
+ * Every server is placed on a ring of 64-bit hashes at {@value #POINTS_PER_NODE}
+ * points, and a game belongs to the server at the first point at or after the
+ * game's own hash. Adding or removing a server therefore only moves the games
+ * that fall next to its points, about one in n of them, and every server that
+ * agrees on the members computes the same owners.
+ */
+public final class HashRing {
+    public static final int POINTS_PER_NODE = 128;
+
+    private final Set<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param nodes the names of the servers on the ring
+     */
+    public HashRing(Collection<String> nodes) {
+        // Sorted so that servers listing the members in different orders still build the same ring
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        Map<Long, String> ring = new TreeMap<>();
+        for (String node : this.nodes) {
+            for (int i = 0; i < POINTS_PER_NODE; i++) {
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        points = new long[ring.size()];
+        owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            owners[i] = point.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * @return the server that owns a game
+     * @throws IllegalStateException if the ring has no servers
+     */
+    public String owner(int gameID) {
+        if (points.length == 0) {
+            throw new IllegalStateException("No servers to own games");
+        }
+        int index = Arrays.binarySearch(points, mix(gameID));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // The splitmix64 finalizer, so that neighbouring game IDs and node names land far apart
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,95 @@
+package server.events;
+
+import model.GameData;
+import websocket.commands.UserGameCommand;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+/**
+ * Something that happened in a game that other servers need to hear about.
+ * Events must not change once published, since other servers may read them
+ * on other threads.
+ * <p>
+ * {@link Notice}, {@link Move} and {@link GameOver} are published to every
+ * server for their connections to the game. The rest are sent to one server
+ * to move a game's commands and state to its owner and back.
+ */
+public sealed interface GameEvent {
+    int gameID();
+
+    /**
+     * A notification for everyone in the game, apart from the connection with
+     * {@code excludedAuthToken} if it is not null
+     */
+    record Notice(int gameID, String excludedAuthToken, Notification notification) implements GameEvent {
+    }
+
+    /**
+     * A move. Players are sent the delta or the full game depending on what
+     * they asked for, followed by the move and status notifications; observers
+     * get the same as one state update.
+     *
+     * @param game               the game after the move
+     * @param statusNotification check, checkmate or stalemate, or null if none applies
+     */
+    record Move(int gameID, GameData game, String moverAuthToken, MoveMade delta, Notification moveNotification,
+                Notification statusNotification) implements GameEvent {
+    }
+
+    /**
+     * A game ending other than by a move, such as a resignation
+     */
+    record GameOver(int gameID, Notification notification) implements GameEvent {
+    }
+
+    /**
+     * A command a client sent to a server that does not own the game, on its
+     * way to the owner
+     *
+     * @param origin    the server the client is connected to, which any error and the {@link Ack} go back to
+     * @param forwardID the origin's number for this command, which the {@link Ack} carries back
+     * @param hops      how many servers have passed it on, to stop it bouncing while servers disagree on the owner
+     */
+    record Forwarded(int gameID, String origin, long forwardID, int hops, UserGameCommand command)
+            implements GameEvent {
+    }
+
+    /**
+     * Tells the server a command was forwarded from that the game's owner has
+     * run it, whether or not it succeeded
+     */
+    record Ack(int gameID, long forwardID) implements GameEvent {
+    }
+
+    /**
+     * A game as its owner holds it, sent back to the server that forwarded a
+     * CONNECT or RESYNC for it, ahead of the {@link Ack}
+     *
+     * @param game the owner's copy, or null if the owner could not read the game
+     */
+    record Current(int gameID, long forwardID, GameData game) implements GameEvent {
+    }
+
+    /**
+     * A message from a game's owner for one client connected to another server
+     */
+    record Reply(int gameID, String authToken, ServerMessage message) implements GameEvent {
+    }
+
+    /**
+     * A game's latest state, sent by its old owner to its new one when the
+     * servers change. The game's move count versions it: a new owner that
+     * already holds a copy further along keeps its own.
+     */
+    record Handoff(int gameID, GameData game) implements GameEvent {
+    }
+
+    /**
+     * New players for a game, from a server that seated them without owning
+     * the game, for the owner to apply to its copy. Players are only ever
+     * seated this way, so an empty seat leaves the owner's seat as it is.
+     */
+    record Players(int gameID, String whiteUsername, String blackUsername) implements GameEvent {
+    }
+}
@@ -0,0 +1,53 @@
+package server.events;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link GameEvent}s between servers, so connections to a game hear
+ * about it whichever server the event happened on.
+ * <p>
+ * A server delivers its own events to its own connections and publishes them
+ * here; the bus hands them to the subscribers of every other server. Each
+ * server on the bus has a name, and events can also be sent to just one.
+ */
+public interface GameEventBus extends AutoCloseable {
+    /**
+     * @return this server's name on the bus
+     */
+    String nodeID();
+
+    /**
+     * @return the names of the servers on the bus, this one included
+     */
+    Set<String> nodes();
+
+    /**
+     * Sends an event to the other servers without waiting for them to receive it
+     */
+    void publish(GameEvent event);
+
+    /**
+     * Sends an event to one other server without waiting for it to be received
+     *
+     * @param nodeID the server's name; events for servers not on the bus are dropped
+     */
+    void send(String nodeID, GameEvent event);
+
+    /**
+     * @param subscriber called with each event another server publishes or sends here, on a thread of the bus's
+     *                   choosing
+     */
+    void subscribe(Consumer<GameEvent> subscriber);
+
+    /**
+     * @param listener called with the names of the servers on the bus whenever one joins or leaves
+     */
+    void onMembershipChange(Consumer<Set<String>> listener);
+
+    /**
+     * Leaves the bus, telling the other servers, and stops sending and receiving events
+     */
+    @Override
+    void close();
+}
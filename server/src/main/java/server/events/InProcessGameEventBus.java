@@ -0,0 +1,115 @@
+package server.events;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bus between servers in the same JVM. A new bus stands alone, which is all
+ * a single server needs; {@link #join()} makes another server's bus that
+ * shares events with this one. Events are handed to subscribers on the
+ * publishing thread, each server getting its own copy just as it would over a
+ * network, since servers stamp things such as replay numbers on the messages
+ * they deliver.
+ */
+public class InProcessGameEventBus implements GameEventBus {
+    private final List<InProcessGameEventBus> members;
+    private final AtomicInteger names;
+    private final String nodeID;
+    private final List<Consumer<GameEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<String>>> membershipListeners = new CopyOnWriteArrayList<>();
+
+    public InProcessGameEventBus() {
+        this(new CopyOnWriteArrayList<>(), new AtomicInteger());
+    }
+
+    private InProcessGameEventBus(List<InProcessGameEventBus> members, AtomicInteger names) {
+        this.members = members;
+        this.names = names;
+        this.nodeID = "node-" + names.incrementAndGet();
+        members.add(this);
+    }
+
+    /**
+     * @return a bus for another server, which hears every event published on this one or on any other bus joined
+     * to it, and the other way around
+     */
+    public InProcessGameEventBus join() {
+        InProcessGameEventBus joined = new InProcessGameEventBus(members, names);
+        notifyMembers();
+        return joined;
+    }
+
+    @Override
+    public String nodeID() {
+        return nodeID;
+    }
+
+    @Override
+    public Set<String> nodes() {
+        Set<String> nodes = new TreeSet<>();
+        for (InProcessGameEventBus member : members) {
+            nodes.add(member.nodeID);
+        }
+        return nodes;
+    }
+
+    @Override
+    public void publish(GameEvent event) {
+        String encoded = null;
+        for (InProcessGameEventBus member : members) {
+            if (member != this) {
+                if (encoded == null) {
+                    encoded = TcpGameEventBus.encode(event);
+                }
+                member.deliver(TcpGameEventBus.decode(encoded));
+            }
+        }
+    }
+
+    @Override
+    public void send(String nodeID, GameEvent event) {
+        for (InProcessGameEventBus member : members) {
+            if (member != this && member.nodeID.equals(nodeID)) {
+                member.deliver(TcpGameEventBus.decode(TcpGameEventBus.encode(event)));
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<GameEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void onMembershipChange(Consumer<Set<String>> listener) {
+        membershipListeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        if (members.remove(this)) {
+            notifyMembers();
+        }
+        subscribers.clear();
+        membershipListeners.clear();
+    }
+
+    private void deliver(GameEvent event) {
+        for (Consumer<GameEvent> subscriber : subscribers) {
+            subscriber.accept(event);
+        }
+    }
+
+    private void notifyMembers() {
+        Set<String> nodes = nodes();
+        for (InProcessGameEventBus member : members) {
+            for (Consumer<Set<String>> listener : member.membershipListeners) {
+                listener.accept(nodes);
+            }
+        }
+    }
+}
@@ -0,0 +1,619 @@
+package server.events;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import serialization.Codecs;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A bus between servers over TCP. Each server listens on a port and keeps a
+ * connection to every peer it knows of, so events go straight from the server
+ * they happened on to each of the others. A server is named by the host and
+ * port it listens on.
+ * <p>
+ * Events travel as one line of JSON each. Publishing only queues the line; a
+ * virtual thread per peer writes it, reconnecting when the peer goes away.
+ * Delivery is at most once: a line being written when the connection breaks
+ * is lost, and a peer that stays unreachable has its oldest lines dropped
+ * once {@value #QUEUE_CAPACITY} are waiting.
+ * <p>
+ * The bus listens only on the address of the host it is named by, and every
+ * server on it shares a secret. A server accepting a connection first sends a
+ * random challenge, and the connecting server must answer with a hello that
+ * carries an HMAC of that challenge under the secret. Nothing else is read
+ * from a connection until its hello checks out, and one that fails is closed.
+ * The hello must arrive whole within the handshake timeout and fit in
+ * {@value #MAX_HELLO_BYTES} bytes, and at most {@value #MAX_PENDING_HANDSHAKES}
+ * connections may be waiting on theirs; any more are closed as they arrive.
+ * <p>
+ * The hello names the server that made the connection and the servers it
+ * knows of, and a server adds any of those it did not know as peers. A new
+ * server therefore only needs to be told about one server already running to
+ * end up connected to all of them. Closing the bus says goodbye to every
+ * peer, which drops this server from theirs.
+ * <p>
+ * A server that crashes or is cut off cannot say goodbye, so each server sends
+ * every peer a heartbeat whenever it has had nothing else to send for a while.
+ * A peer not heard from within the peer timeout is taken off the bus, and the
+ * events waiting for it are dropped, but this server keeps trying to reach it
+ * and puts it back on the bus as soon as it is heard from again.
+ */
+public class TcpGameEventBus implements GameEventBus {
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final Duration RECONNECT_DELAY = Duration.ofMillis(200);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration GOODBYE_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration HANDSHAKE_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_PEER_TIMEOUT = Duration.ofSeconds(5);
+    // Several heartbeats fit in a timeout, so one delayed heartbeat does not take a peer off the bus
+    private static final int HEARTBEATS_PER_TIMEOUT = 5;
+    private static final int BACKLOG = 50;
+    private static final int CHALLENGE_BYTES = 32;
+    // Room for a hello naming a few hundred servers
+    private static final int MAX_HELLO_BYTES = 64 * 1024;
+    private static final int MAX_CHALLENGE_BYTES = 1024;
+    private static final int MAX_PENDING_HANDSHAKES = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String CHALLENGE = "Challenge";
+    private static final String HELLO = "Hello";
+    private static final String GOODBYE = "Goodbye";
+    private static final String HEARTBEAT = "Heartbeat";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ServerSocket serverSocket;
+    private final String nodeID;
+    private final SecretKeySpec secret;
+    private final Duration peerTimeout;
+    private final Duration heartbeatInterval;
+    private final String heartbeat;
+    private final Thread monitor;
+    private final List<Consumer<GameEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<String>>> membershipListeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Peer> peers = new ConcurrentHashMap<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final Semaphore pendingHandshakes = new Semaphore(MAX_PENDING_HANDSHAKES);
+    private volatile boolean closed;
+
+    /**
+     * Listens on a loopback port of this machine, which other servers reach as localhost
+     *
+     * @param port   the port to listen for peers on, or 0 for any free port
+     * @param secret the secret every server on the bus shares
+     */
+    public TcpGameEventBus(int port, String secret) throws IOException {
+        this("localhost", port, secret);
+    }
+
+    /**
+     * @param host   the name other servers reach this one by; only its address is listened on
+     * @param port   the port to listen for peers on, or 0 for any free port
+     * @param secret the secret every server on the bus shares
+     */
+    public TcpGameEventBus(String host, int port, String secret) throws IOException {
+        this(host, port, secret, DEFAULT_PEER_TIMEOUT);
+    }
+
+    public TcpGameEventBus(String host, int port, String secret, Collection<InetSocketAddress> peers)
+            throws IOException {
+        this(host, port, secret);
+        peers.forEach(this::addPeer);
+    }
+
+    /**
+     * @param peerTimeout how long a peer may go unheard from before it is taken off the bus
+     */
+    TcpGameEventBus(String host, int port, String secret, Duration peerTimeout) throws IOException {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("The event bus needs a shared secret");
+        }
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getByName(host));
+        nodeID = host + ":" + serverSocket.getLocalPort();
+        this.peerTimeout = peerTimeout;
+        this.heartbeatInterval = peerTimeout.dividedBy(HEARTBEATS_PER_TIMEOUT);
+        this.heartbeat = Codecs.GSON.toJson(control(HEARTBEAT));
+        Thread.ofVirtual().name("event-bus-accept").start(this::acceptPeers);
+        monitor = Thread.ofVirtual().name("event-bus-monitor").start(this::monitorPeers);
+    }
+
+    /**
+     * @return the port this bus listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts sending events to another server's bus
+     */
+    public void addPeer(InetSocketAddress address) {
+        addPeer(address.getHostString() + ":" + address.getPort());
+    }
+
+    private void addPeer(String peerID) {
+        if (closed || peerID.equals(nodeID)) {
+            return;
+        }
+        Peer peer = new Peer(peerID);
+        if (peers.putIfAbsent(peerID, peer) != null) {
+            return;
+        }
+        peer.thread = Thread.ofVirtual().name("event-bus-peer-" + peerID).start(peer);
+        membershipChanged();
+    }
+
+    private void removePeer(String peerID) {
+        Peer peer = peers.remove(peerID);
+        if (peer != null) {
+            peer.thread.interrupt();
+            membershipChanged();
+        }
+    }
+
+    @Override
+    public String nodeID() {
+        return nodeID;
+    }
+
+    @Override
+    public Set<String> nodes() {
+        Set<String> nodes = new TreeSet<>();
+        peers.forEach((peerID, peer) -> {
+            if (peer.alive.get()) {
+                nodes.add(peerID);
+            }
+        });
+        nodes.add(nodeID);
+        return nodes;
+    }
+
+    @Override
+    public void publish(GameEvent event) {
+        if (closed || peers.isEmpty()) {
+            return;
+        }
+        String line = encode(event);
+        for (Peer peer : peers.values()) {
+            if (peer.alive.get()) {
+                peer.offer(line);
+            }
+        }
+    }
+
+    @Override
+    public void send(String nodeID, GameEvent event) {
+        Peer peer = peers.get(nodeID);
+        if (!closed && peer != null && peer.alive.get()) {
+            peer.offer(encode(event));
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<GameEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void onMembershipChange(Consumer<Set<String>> listener) {
+        membershipListeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        monitor.interrupt();
+        closeQuietly(serverSocket);
+        String goodbye = Codecs.GSON.toJson(control(GOODBYE));
+        for (Peer peer : peers.values()) {
+            peer.finish(goodbye);
+        }
+        for (Peer peer : peers.values()) {
+            try {
+                if (!peer.thread.join(GOODBYE_TIMEOUT)) {
+                    peer.thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                peer.thread.interrupt();
+            }
+        }
+        inbound.forEach(TcpGameEventBus::closeQuietly);
+    }
+
+    static String encode(GameEvent event) {
+        JsonObject json = new JsonObject();
+        json.addProperty("type", event.getClass().getSimpleName());
+        json.add("event", Codecs.GSON.toJsonTree(event));
+        return Codecs.GSON.toJson(json);
+    }
+
+    /**
+     * @throws JsonParseException if the line is not an event
+     */
+    static GameEvent decode(String line) {
+        return decode(JsonParser.parseString(line).getAsJsonObject());
+    }
+
+    private static GameEvent decode(JsonObject json) {
+        Class<? extends GameEvent> type = switch (json.get("type").getAsString()) {
+            case "Notice" -> GameEvent.Notice.class;
+            case "Move" -> GameEvent.Move.class;
+            case "GameOver" -> GameEvent.GameOver.class;
+            case "Forwarded" -> GameEvent.Forwarded.class;
+            case "Ack" -> GameEvent.Ack.class;
+            case "Current" -> GameEvent.Current.class;
+            case "Reply" -> GameEvent.Reply.class;
+            case "Handoff" -> GameEvent.Handoff.class;
+            case "Players" -> GameEvent.Players.class;
+            default -> throw new JsonParseException("Unknown event type " + json.get("type"));
+        };
+        return Codecs.GSON.fromJson(json.get("event"), type);
+    }
+
+    private String hello(String challenge) {
+        JsonObject json = control(HELLO);
+        json.addProperty("proof", prove(challenge));
+        JsonArray nodes = new JsonArray();
+        peers.keySet().forEach(nodes::add);
+        json.add("nodes", nodes);
+        return Codecs.GSON.toJson(json);
+    }
+
+    private JsonObject control(String type) {
+        JsonObject json = new JsonObject();
+        json.addProperty("type", type);
+        json.addProperty("node", nodeID);
+        return json;
+    }
+
+    private String prove(String challenge) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            return HexFormat.of().formatHex(mac.doFinal(challenge.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Challenges a peer that connected here and reads its hello, which must prove it knows the secret
+     *
+     * @return the peer's hello
+     * @throws IOException if the peer did not answer in time or its hello does not check out
+     */
+    private JsonObject handshake(Socket socket) throws IOException {
+        byte[] bytes = new byte[CHALLENGE_BYTES];
+        RANDOM.nextBytes(bytes);
+        String challenge = HexFormat.of().formatHex(bytes);
+        JsonObject json = new JsonObject();
+        json.addProperty("type", CHALLENGE);
+        json.addProperty("challenge", challenge);
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(Codecs.GSON.toJson(json));
+        out.write('\n');
+        out.flush();
+
+        String line = readHandshakeLine(socket, MAX_HELLO_BYTES);
+        try {
+            JsonObject hello = JsonParser.parseString(line).getAsJsonObject();
+            byte[] proof = hello.get("proof").getAsString().getBytes(StandardCharsets.UTF_8);
+            if (hello.get("type").getAsString().equals(HELLO)
+                    && MessageDigest.isEqual(proof, prove(challenge).getBytes(StandardCharsets.UTF_8))) {
+                return hello;
+            }
+        } catch (RuntimeException e) {
+            // Not a hello at all, which fails the same way as a wrong one
+        }
+        throw new IOException("it did not prove it knows the event bus secret");
+    }
+
+    /**
+     * Reads one line of a handshake a byte at a time, so nothing after it is
+     * buffered away, giving up once the handshake timeout has passed in total
+     * rather than for each read
+     *
+     * @throws IOException if the line is longer than {@code maxBytes}, does not
+     *                     arrive in time or the connection closes first
+     */
+    private static String readHandshakeLine(Socket socket, int maxBytes) throws IOException {
+        long deadline = System.nanoTime() + HANDSHAKE_TIMEOUT.toNanos();
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new IOException("the handshake timed out");
+            }
+            socket.setSoTimeout((int) remaining);
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("the connection closed during the handshake");
+            }
+            if (b == '\n') {
+                break;
+            }
+            if (line.size() == maxBytes) {
+                throw new IOException("a handshake line is longer than " + maxBytes + " bytes");
+            }
+            line.write(b);
+        }
+        socket.setSoTimeout(0);
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void membershipChanged() {
+        Set<String> nodes = nodes();
+        for (Consumer<Set<String>> listener : membershipListeners) {
+            listener.accept(nodes);
+        }
+    }
+
+    /**
+     * Takes peers off the bus that have not been heard from within the timeout
+     */
+    private void monitorPeers() {
+        try {
+            while (!closed) {
+                Thread.sleep(heartbeatInterval.toMillis());
+                boolean changed = false;
+                long now = System.nanoTime();
+                for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+                    Peer peer = entry.getValue();
+                    if (now - peer.lastHeard > peerTimeout.toNanos() && peer.alive.compareAndSet(true, false)) {
+                        // Whatever was waiting is stale by the time the peer is back, and its games have new owners
+                        peer.queue.clear();
+                        System.out.printf("Event bus lost peer %s%n", entry.getKey());
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    membershipChanged();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closing
+        }
+    }
+
+    private void heard(String peerID) {
+        Peer peer = peers.get(peerID);
+        if (peer == null) {
+            return;
+        }
+        peer.lastHeard = System.nanoTime();
+        if (peer.alive.compareAndSet(false, true)) {
+            System.out.printf("Event bus peer %s is back%n", peerID);
+            membershipChanged();
+        }
+    }
+
+    private void acceptPeers() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!pendingHandshakes.tryAcquire()) {
+                    System.out.printf("Event bus turned away %s: too many handshakes in progress%n",
+                            socket.getRemoteSocketAddress());
+                    closeQuietly(socket);
+                    continue;
+                }
+                inbound.add(socket);
+                Thread.ofVirtual().name("event-bus-reader").start(() -> receive(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.printf("Event bus failed to accept a peer: %s%n", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        try (socket) {
+            String peerID;
+            try {
+                JsonObject hello = handshake(socket);
+                peerID = hello.get("node").getAsString();
+                receiveLine(hello);
+                heard(peerID);
+            } catch (IOException e) {
+                System.out.printf("Event bus rejected a peer at %s: %s%n", socket.getRemoteSocketAddress(),
+                        e.getMessage());
+                return;
+            } finally {
+                pendingHandshakes.release();
+            }
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // A peer that has gone quiet for this long has stopped sending heartbeats
+            socket.setSoTimeout((int) peerTimeout.toMillis());
+            String line;
+            while ((line = in.readLine()) != null) {
+                heard(peerID);
+                try {
+                    receiveLine(line);
+                } catch (RuntimeException e) {
+                    System.out.printf("Event bus could not handle an event: %s%n", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            // The peer went away; it reconnects when it comes back
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    private void receiveLine(String line) {
+        receiveLine(JsonParser.parseString(line).getAsJsonObject());
+    }
+
+    private void receiveLine(JsonObject json) {
+        String type = json.get("type").getAsString();
+        if (type.equals(HELLO)) {
+            addPeer(json.get("node").getAsString());
+            for (JsonElement node : json.getAsJsonArray("nodes")) {
+                addPeer(node.getAsString());
+            }
+        } else if (type.equals(GOODBYE)) {
+            removePeer(json.get("node").getAsString());
+        } else if (!type.equals(HEARTBEAT)) {
+            GameEvent event = decode(json);
+            for (Consumer<GameEvent> subscriber : subscribers) {
+                subscriber.accept(event);
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Already closed or broken, which is all we wanted
+        }
+    }
+
+    private class Peer implements Runnable {
+        // Queued after the goodbye so the writer knows to stop; compared by identity
+        private static final String STOP = new String("STOP");
+
+        private final String host;
+        private final int port;
+        private final BlockingDeque<String> queue = new LinkedBlockingDeque<>(QUEUE_CAPACITY);
+        private final AtomicBoolean alive = new AtomicBoolean(true);
+        // Starts as when the peer was added, so it has a full timeout to be heard from
+        private volatile long lastHeard = System.nanoTime();
+        private volatile Thread thread;
+        private volatile boolean finishing;
+
+        Peer(String peerID) {
+            int colon = peerID.lastIndexOf(':');
+            this.host = peerID.substring(0, colon);
+            this.port = Integer.parseInt(peerID.substring(colon + 1));
+        }
+
+        void offer(String line) {
+            while (!queue.offerLast(line)) {
+                queue.pollFirst();
+            }
+        }
+
+        /**
+         * Writes a last line after the ones already queued, then stops. Gives up
+         * on the line rather than retrying if the peer cannot be reached.
+         */
+        void finish(String lastLine) {
+            finishing = true;
+            offer(lastLine);
+            offer(STOP);
+        }
+
+        @Override
+        public void run() {
+            Socket socket = null;
+            Writer out = null;
+            String line = null;
+            try {
+                while (true) {
+                    try {
+                        // Connect straight away, so the peer hears the hello before there are events to send
+                        if (out == null) {
+                            socket = new Socket();
+                            socket.connect(new InetSocketAddress(host, port), (int) CONNECT_TIMEOUT.toMillis());
+                            String challenge = readChallenge(socket);
+                            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                                    StandardCharsets.UTF_8));
+                            out.write(hello(challenge));
+                            out.write('\n');
+                            out.flush();
+                        }
+                        if (line == null) {
+                            line = queue.pollFirst(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+                            if (line == null) {
+                                out.write(heartbeat);
+                                out.write('\n');
+                                out.flush();
+                                continue;
+                            }
+                        }
+                        if (line == STOP) {
+                            out.flush();
+                            return;
+                        }
+                        out.write(line);
+                        out.write('\n');
+                        if (queue.isEmpty()) {
+                            out.flush();
+                        }
+                        line = null;
+                    } catch (IOException e) {
+                        closeQuietly(socket);
+                        socket = null;
+                        out = null;
+                        if (finishing) {
+                            return;
+                        }
+                        Thread.sleep(RECONNECT_DELAY.toMillis());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Removed or closing
+            } finally {
+                if (socket != null) {
+                    closeQuietly(socket);
+                }
+            }
+        }
+
+        /**
+         * Reads the challenge the peer opens the connection with
+         */
+        private static String readChallenge(Socket socket) throws IOException {
+            String line = readHandshakeLine(socket, MAX_CHALLENGE_BYTES);
+            try {
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                return json.get("challenge").getAsString();
+            } catch (RuntimeException e) {
+                throw new IOException("The peer did not open with a challenge", e);
+            }
+        }
+    }
+}
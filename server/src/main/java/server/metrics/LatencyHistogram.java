@@ -0,0 +1,98 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something took in buckets whose width grows with the
+ * duration, as in an HDR histogram, so any quantile can be read back to
+ * within about 3% of the duration without keeping every one.
+ * <p>
+ * Durations under {@value #EXACT} nanoseconds each get their own bucket.
+ * Above that, every doubling is split into {@value #SUB_BUCKETS} buckets of
+ * equal width. Durations past about 18 minutes land in the last bucket.
+ * Recording is an array increment and two adds, so it takes no lock and
+ * allocates nothing.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int EXACT = SUB_BUCKETS * 2;
+    private static final int MAX_MAGNITUDE = 40;
+    static final long MAX_NANOS = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(EXACT + (MAX_MAGNITUDE - SUB_BITS) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * @param nanos how long one occurrence took; negative durations count as zero
+     */
+    public void record(long nanos) {
+        long clamped = Math.min(Math.max(nanos, 0), MAX_NANOS);
+        counts.incrementAndGet(bucketOf(clamped));
+        count.increment();
+        totalNanos.add(clamped);
+    }
+
+    /**
+     * @return how many durations have been recorded
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of every duration recorded, in nanoseconds
+     */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param quantile between 0 and 1, such as 0.99 for the 99th percentile
+     * @return the longest duration that falls in the same bucket as the one at
+     * that quantile, in nanoseconds, or -1 if nothing has been recorded
+     */
+    public long valueAtQuantile(double quantile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestInBucket(i);
+            }
+        }
+        return highestInBucket(snapshot.length - 1);
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < EXACT) {
+            return (int) nanos;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = magnitude - SUB_BITS;
+        return EXACT + (magnitude - SUB_BITS - 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestInBucket(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int shift = (bucket - EXACT) / SUB_BUCKETS + 1;
+        long top = SUB_BUCKETS + (bucket - EXACT) % SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
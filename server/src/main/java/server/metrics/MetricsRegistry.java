@@ -0,0 +1,145 @@
+package server.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The server's counters, gauges and latency histograms, written out in the
+ * Prometheus text format.
+ * <p>
+ * Metrics are registered once, when the code that records them is set up,
+ * and kept by whoever records them; recording then touches only that
+ * metric. Gauges, and counters kept elsewhere, are read from a supplier each
+ * time the metrics are written. Labels are given as name and value pairs,
+ * and registering the same name and labels again returns the same metric.
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    private interface Metric {
+        void write(StringBuilder out, String name, String labels);
+    }
+
+    private record Family(String type, String help, Map<String, Metric> metrics) {
+    }
+
+    /**
+     * @return a counter that is incremented by its owner
+     */
+    public Counter counter(String name, String help, String... labels) {
+        CounterMetric metric = (CounterMetric) register(name, help, "counter", labels, () -> new CounterMetric(new Counter()));
+        return metric.counter();
+    }
+
+    /**
+     * Registers a count that is kept elsewhere and only goes up
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, "counter", labels, () -> (Metric) (out, metricName, metricLabels) ->
+                sample(out, metricName, metricLabels, Long.toString(value.getAsLong())));
+    }
+
+    /**
+     * Registers a value that can go up and down, read when the metrics are written
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, help, "gauge", labels, () -> (Metric) (out, metricName, metricLabels) ->
+                sample(out, metricName, metricLabels, format(value.getAsDouble())));
+    }
+
+    /**
+     * @return a histogram of durations, written as a summary in seconds with its median, 99th and 99.9th percentiles
+     */
+    public LatencyHistogram latency(String name, String help, String... labels) {
+        LatencyMetric metric = (LatencyMetric) register(name, help, "summary", labels,
+                () -> new LatencyMetric(new LatencyHistogram()));
+        return metric.histogram();
+    }
+
+    LatencyHistogram daoLatency(String dao, String method) {
+        return latency("chess_dao_call_seconds", "How long each DAO call took, including failed ones",
+                "dao", dao, "method", method);
+    }
+
+    /**
+     * @return every metric in the Prometheus text format
+     */
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder();
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+            family.metrics().forEach((labels, metric) -> metric.write(out, name, labels));
+        });
+        return out.toString();
+    }
+
+    private synchronized Metric register(String name, String help, String type, String[] labels,
+            Supplier<Metric> create) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help, new LinkedHashMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        return family.metrics().computeIfAbsent(formatLabels(labels), l -> create.get());
+    }
+
+    private record CounterMetric(Counter counter) implements Metric {
+        @Override
+        public void write(StringBuilder out, String name, String labels) {
+            sample(out, name, labels, Long.toString(counter.get()));
+        }
+    }
+
+    private record LatencyMetric(LatencyHistogram histogram) implements Metric {
+        @Override
+        public void write(StringBuilder out, String name, String labels) {
+            for (double quantile : QUANTILES) {
+                long nanos = histogram.valueAtQuantile(quantile);
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                sample(out, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                        nanos < 0 ? "NaN" : format(nanos / NANOS_PER_SECOND));
+            }
+            sample(out, name + "_sum", labels, format(histogram.totalNanos() / NANOS_PER_SECOND));
+            sample(out, name + "_count", labels, Long.toString(histogram.count()));
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String formatLabels(String[] labels) {
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"").append(labels[i + 1]
+                    .replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return formatted.toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
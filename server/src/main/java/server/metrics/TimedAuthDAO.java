@@ -0,0 +1,65 @@
+package server.metrics;
+
+import dataaccess.AuthDAO;
+import dataaccess.DataAccessException;
+import exceptions.UnauthorizedException;
+import model.AuthData;
+
+/**
+ * An {@link AuthDAO} that records how long each of its calls takes
+ */
+public class TimedAuthDAO implements AuthDAO {
+    private final AuthDAO authDAO;
+    private final LatencyHistogram createAuth;
+    private final LatencyHistogram getAuth;
+    private final LatencyHistogram deleteAuth;
+    private final LatencyHistogram deleteAuths;
+
+    public TimedAuthDAO(AuthDAO authDAO, MetricsRegistry metrics) {
+        this.authDAO = authDAO;
+        this.createAuth = metrics.daoLatency("auth", "createAuth");
+        this.getAuth = metrics.daoLatency("auth", "getAuth");
+        this.deleteAuth = metrics.daoLatency("auth", "deleteAuth");
+        this.deleteAuths = metrics.daoLatency("auth", "deleteAuths");
+    }
+
+    @Override
+    public AuthData createAuth(String username) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return authDAO.createAuth(username);
+        } finally {
+            createAuth.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException, UnauthorizedException {
+        long start = System.nanoTime();
+        try {
+            return authDAO.getAuth(authToken);
+        } finally {
+            getAuth.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException, UnauthorizedException {
+        long start = System.nanoTime();
+        try {
+            authDAO.deleteAuth(authToken);
+        } finally {
+            deleteAuth.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteAuths() throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            authDAO.deleteAuths();
+        } finally {
+            deleteAuths.record(System.nanoTime() - start);
+        }
+    }
+}
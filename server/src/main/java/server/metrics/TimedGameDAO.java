@@ -0,0 +1,78 @@
+package server.metrics;
+
+import dataaccess.DataAccessException;
+import dataaccess.GameDAO;
+import model.GameData;
+
+import java.util.Collection;
+
+/**
+ * A {@link GameDAO} that records how long each of its calls takes
+ */
+public class TimedGameDAO implements GameDAO {
+    private final GameDAO gameDAO;
+    private final LatencyHistogram createGame;
+    private final LatencyHistogram getGame;
+    private final LatencyHistogram updateGame;
+    private final LatencyHistogram listGames;
+    private final LatencyHistogram deleteGames;
+
+    public TimedGameDAO(GameDAO gameDAO, MetricsRegistry metrics) {
+        this.gameDAO = gameDAO;
+        this.createGame = metrics.daoLatency("game", "createGame");
+        this.getGame = metrics.daoLatency("game", "getGame");
+        this.updateGame = metrics.daoLatency("game", "updateGame");
+        this.listGames = metrics.daoLatency("game", "listGames");
+        this.deleteGames = metrics.daoLatency("game", "deleteGames");
+    }
+
+    @Override
+    public void createGame(GameData gameData) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.createGame(gameData);
+        } finally {
+            createGame.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.getGame(gameID);
+        } finally {
+            getGame.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateGame(GameData updatedGameData) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.updateGame(updatedGameData);
+        } finally {
+            updateGame.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return gameDAO.listGames();
+        } finally {
+            listGames.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteGames() throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            gameDAO.deleteGames();
+        } finally {
+            deleteGames.record(System.nanoTime() - start);
+        }
+    }
+}
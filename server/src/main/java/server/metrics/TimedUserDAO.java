@@ -0,0 +1,52 @@
+package server.metrics;
+
+import dataaccess.DataAccessException;
+import dataaccess.UserDAO;
+import model.UserData;
+
+/**
+ * A {@link UserDAO} that records how long each of its calls takes
+ */
+public class TimedUserDAO implements UserDAO {
+    private final UserDAO userDAO;
+    private final LatencyHistogram createUser;
+    private final LatencyHistogram getUser;
+    private final LatencyHistogram deleteUsers;
+
+    public TimedUserDAO(UserDAO userDAO, MetricsRegistry metrics) {
+        this.userDAO = userDAO;
+        this.createUser = metrics.daoLatency("user", "createUser");
+        this.getUser = metrics.daoLatency("user", "getUser");
+        this.deleteUsers = metrics.daoLatency("user", "deleteUsers");
+    }
+
+    @Override
+    public UserData createUser(UserData userData) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return userDAO.createUser(userData);
+        } finally {
+            createUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return userDAO.getUser(username);
+        } finally {
+            getUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteUsers() throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            userDAO.deleteUsers();
+        } finally {
+            deleteUsers.record(System.nanoTime() - start);
+        }
+    }
+}
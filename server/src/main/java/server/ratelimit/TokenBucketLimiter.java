@@ -0,0 +1,157 @@
+package server.ratelimit;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how often each key, such as an auth token or a remote address, may
+ * make a request. Every key has a token bucket that holds up to {@code burst}
+ * tokens and refills at {@code perSecond}; a request takes a token or is
+ * rejected.
+ * <p>
+ * A bucket is kept as one number, the time at which it will be full again, as
+ * in the generic cell rate algorithm. Taking a token moves that time on by one
+ * token's worth with a single compare-and-set, so there are no locks, and a
+ * rejected request changes nothing but a counter. A full bucket behaves just
+ * like a new one, so once more than {@value #MAX_KEYS} keys are held, those
+ * whose buckets have filled up are dropped, along with their counters.
+ */
+public class TokenBucketLimiter {
+    static final int MAX_KEYS = 100_000;
+    private static final long PRUNE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final boolean secretKeys;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong lastPrune;
+
+    /**
+     * How many requests a key has had allowed and rejected
+     */
+    public record Counts(long allowed, long rejected) {
+    }
+
+    private static final class Bucket {
+        private final AtomicLong fullAt;
+        // When the key may next be told it was rejected
+        private final AtomicLong noticeAt;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Bucket(long now) {
+            fullAt = new AtomicLong(now);
+            noticeAt = new AtomicLong(now);
+        }
+    }
+
+    /**
+     * @param perSecond  how many requests each key may make per second, on average
+     * @param burst      how many requests each key may make at once after being idle
+     * @param secretKeys whether the keys are secrets, such as auth tokens, which {@link #counts()} must not show
+     */
+    public TokenBucketLimiter(double perSecond, int burst, boolean secretKeys) {
+        this(perSecond, burst, secretKeys, System::nanoTime);
+    }
+
+    TokenBucketLimiter(double perSecond, int burst, boolean secretKeys, LongSupplier clock) {
+        if (perSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("A limit needs a positive rate and a burst of at least one");
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.burstNanos = nanosPerToken * burst;
+        this.secretKeys = secretKeys;
+        this.clock = clock;
+        this.lastPrune = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes a token from a key's bucket if it has one
+     *
+     * @return 0 if the request is allowed, otherwise how many nanoseconds until it would be
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            prune(now);
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        while (true) {
+            long fullAt = bucket.fullAt.get();
+            long next = Math.max(fullAt, now) + nanosPerToken;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                bucket.rejected.increment();
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.fullAt.compareAndSet(fullAt, next)) {
+                bucket.allowed.increment();
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Claims the notice a rejected key may be sent, such as an error telling
+     * it to slow down. A key gets one notice until its bucket next has a
+     * token, so one sending far faster than it may is not sent as many
+     * notices as it sends requests.
+     *
+     * @return whether the caller should send the key a notice
+     */
+    public boolean claimRejectionNotice(String key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        long nextToken = bucket.fullAt.get() + nanosPerToken - burstNanos;
+        while (true) {
+            long noticeAt = bucket.noticeAt.get();
+            if (now - noticeAt < 0) {
+                return false;
+            }
+            if (bucket.noticeAt.compareAndSet(noticeAt, Math.max(nextToken, now + 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return how many requests each key still held has had allowed and rejected, by key, or by a hash of the
+     * key if keys are secret
+     */
+    public Map<String, Counts> counts() {
+        Map<String, Counts> counts = new TreeMap<>();
+        buckets.forEach((key, bucket) -> counts.merge(secretKeys ? String.format("#%08x", key.hashCode()) : key,
+                new Counts(bucket.allowed.sum(), bucket.rejected.sum()),
+                (a, b) -> new Counts(a.allowed() + b.allowed(), a.rejected() + b.rejected())));
+        return counts;
+    }
+
+    /**
+     * @return how many requests have been allowed and rejected across every key, including dropped ones
+     */
+    public Counts totals() {
+        return new Counts(allowed.sum(), rejected.sum());
+    }
+
+    private void prune(long now) {
+        long last = lastPrune.get();
+        if (buckets.size() < MAX_KEYS || now - last < PRUNE_INTERVAL || !lastPrune.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.fullAt.get() - now <= 0);
+    }
+}
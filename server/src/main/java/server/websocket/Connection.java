@@ -1,31 +1,93 @@
 package server.websocket;
 
-import com.google.gson.Gson;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import serialization.Codecs;
 import websocket.messages.Error;
+import websocket.messages.ServerMessage;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * One client's websocket session.
+ * <p>
+ * Messages are sent asynchronously through a bounded queue with at most one
+ * write in flight, so sending never blocks the caller on a slow client. When
+ * the queue is full the {@link SlowConsumerPolicy} decides what gives.
+ * <p>
+ * Messages go out as JSON text frames unless the client spoke the binary
+ * protocol when it connected, in which case they go out as binary frames.
+ * <p>
+ * Observers are sent game state with {@link #sendState(List)}, which replaces
+ * any earlier state still waiting in the queue instead of queueing behind it.
+ */
 public class Connection {
-    private Session session;
-    private String authToken;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final Session session;
+    private final String authToken;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy policy;
+    private final OutboundCounters counters;
+    // Text frames are queued as Strings and binary frames as byte arrays, either one wrapped in a StateFrame
+    private final ArrayDeque<Object> outbound = new ArrayDeque<>();
+    private boolean writing;
+    private volatile boolean moveDeltas;
+    private volatile boolean binary;
+    private final boolean observer;
+
+    // A frame of a state update, dropped from the queue if a newer update arrives before it is written
+    private record StateFrame(Object frame) {
+    }
 
     public Connection(Session session, String authToken) {
+        this(session, authToken, DEFAULT_QUEUE_CAPACITY, SlowConsumerPolicy.DROP_OLDEST, new OutboundCounters());
+    }
+
+    public Connection(Session session, String authToken, int queueCapacity, SlowConsumerPolicy policy,
+                      OutboundCounters counters) {
+        this(session, authToken, queueCapacity, policy, counters, false);
+    }
+
+    /**
+     * @param observer whether this client is watching the game rather than playing in it
+     */
+    public Connection(Session session, String authToken, int queueCapacity, SlowConsumerPolicy policy,
+                      OutboundCounters counters, boolean observer) {
         this.session = session;
         this.authToken = authToken;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.counters = counters;
+        this.observer = observer;
     }
 
     public static void sendError(Session session, String message) {
         try {
-            String completeErrorMessage = "Error: " + message;
-            Error error = new Error(completeErrorMessage);
-            String errorJSON = new Gson().toJson(error);
+            String errorJSON = errorJSON(message);
             session.getRemote().sendString(errorJSON);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Queues an error message behind whatever this connection is already sending
+     */
+    public void sendError(String message) {
+        send(new Error("Error: " + message));
+    }
+
+    private static String errorJSON(String message) {
+        String completeErrorMessage = "Error: " + message;
+        Error error = new Error(completeErrorMessage);
+        return Codecs.GSON.toJson(error);
+    }
+
     public Session getSession() {
         return session;
     }
@@ -34,7 +96,164 @@ public class Connection {
         return authToken;
     }
 
-    public void send(String message) throws IOException {
-        session.getRemote().sendString(message);
+    /**
+     * @return whether this client asked for MOVE_MADE deltas instead of the full game after each move
+     */
+    public boolean wantsMoveDeltas() {
+        return moveDeltas;
+    }
+
+    public void setMoveDeltas(boolean moveDeltas) {
+        this.moveDeltas = moveDeltas;
+    }
+
+    /**
+     * @return whether messages to this client are sent with the binary protocol
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * @return whether this client is watching the game rather than playing in it
+     */
+    public boolean isObserver() {
+        return observer;
+    }
+
+    /**
+     * Queues a message for this client in its wire format
+     */
+    public void send(ServerMessage message) {
+        send(new EncodedMessage(message));
+    }
+
+    void send(EncodedMessage message) {
+        enqueue(binary ? message.binary() : message.json());
+    }
+
+    /**
+     * Queues a message for this client and returns without waiting for it to be written
+     *
+     * @param message the text frame to send
+     */
+    public void send(String message) {
+        enqueue(message);
+    }
+
+    /**
+     * Queues a binary frame for this client and returns without waiting for it to be written
+     */
+    public void send(byte[] frame) {
+        enqueue(frame);
+    }
+
+    /**
+     * Queues the messages of a state update, first discarding the frames of any
+     * earlier update that have not started being written. A client that has
+     * fallen behind therefore skips to the latest state instead of replaying
+     * every one in between.
+     */
+    void sendState(List<EncodedMessage> update) {
+        List<Object> frames = new ArrayList<>(update.size());
+        for (EncodedMessage message : update) {
+            frames.add(new StateFrame(binary ? message.binary() : message.json()));
+        }
+        enqueue(frames, true);
+    }
+
+    private void enqueue(Object frame) {
+        enqueue(List.of(frame), false);
+    }
+
+    private void enqueue(List<Object> frames, boolean replacesState) {
+        Object next;
+        boolean disconnect = false;
+        synchronized (outbound) {
+            if (!session.isOpen()) {
+                counters.dropped(frames.size());
+                return;
+            }
+            if (replacesState) {
+                int before = outbound.size();
+                outbound.removeIf(StateFrame.class::isInstance);
+                counters.coalesced(before - outbound.size());
+            }
+            for (int i = 0; i < frames.size(); i++) {
+                if (outbound.size() >= queueCapacity) {
+                    if (policy == SlowConsumerPolicy.DISCONNECT) {
+                        counters.dropped(outbound.size() + frames.size() - i);
+                        outbound.clear();
+                        disconnect = true;
+                        break;
+                    }
+                    outbound.poll();
+                    counters.dropped(1);
+                }
+                outbound.add(frames.get(i));
+                counters.queued();
+            }
+            if (disconnect || writing) {
+                next = null;
+            } else {
+                writing = true;
+                next = outbound.poll();
+            }
+        }
+        if (disconnect) {
+            session.close(StatusCode.POLICY_VIOLATION, "Client is not keeping up with game updates");
+        } else if (next != null) {
+            write(next);
+        }
+    }
+
+    /**
+     * @return how many messages are waiting behind the one being written
+     */
+    public int queueDepth() {
+        synchronized (outbound) {
+            return outbound.size();
+        }
+    }
+
+    private void write(Object queued) {
+        Object frame = queued instanceof StateFrame state ? state.frame() : queued;
+        WriteCallback callback = new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                counters.sent();
+                writeNext();
+            }
+
+            @Override
+            public void writeFailed(Throwable x) {
+                synchronized (outbound) {
+                    counters.dropped(outbound.size() + 1);
+                    outbound.clear();
+                    writing = false;
+                }
+            }
+        };
+        if (frame instanceof byte[] bytes) {
+            session.getRemote().sendBytes(ByteBuffer.wrap(bytes), callback);
+        } else {
+            session.getRemote().sendString((String) frame, callback);
+        }
+    }
+
+    private void writeNext() {
+        Object next;
+        synchronized (outbound) {
+            next = outbound.poll();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(next);
     }
 }
@@ -1,51 +1,259 @@
 package server.websocket;
 
 import org.eclipse.jetty.websocket.api.Session;
+import websocket.messages.ServerMessage;
 
-import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
-public class ConnectionManager {
-    public final ConcurrentHashMap<Integer, CopyOnWriteArraySet<Connection>> connections = new ConcurrentHashMap<>();
+/**
+ * Every open websocket connection, by game, by auth token and by session.
+ * <p>
+ * Each game's connections are a concurrent set, so joining and leaving are
+ * constant time no matter how many others are watching, and broadcasts can
+ * iterate while connections come and go. A game's set is dropped when its
+ * last connection leaves. Closed sessions are removed from every index by
+ * {@link #remove(Session)}, and any a broadcast finds closed are removed then.
+ * <p>
+ * Players are sent every message in order on the broadcaster's thread, and
+ * a player too slow to keep up is disconnected rather than silently dropping
+ * a move; it can resume and be sent what it missed. Observers are sent theirs
+ * through an {@link ObserverFanout}, which works on its own pool and lets them
+ * skip stale game states.
+ */
+public class ConnectionManager implements AutoCloseable {
+    private final ConcurrentHashMap<Integer, Set<Connection>> connections = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Connection> connectionByAuthToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Session, Registration> registrations = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final OutboundCounters counters = new OutboundCounters();
+    private final ObserverFanout observers;
+    private final ExecutorService observerPool;
 
+    private record Registration(Integer gameID, Connection connection) {
+    }
+
+    public ConnectionManager() {
+        this(Connection.DEFAULT_QUEUE_CAPACITY, SlowConsumerPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @param queueCapacity      how many messages each connection may have waiting
+     * @param slowConsumerPolicy what to do with an observer whose queue is full; players are always
+     *                           {@linkplain SlowConsumerPolicy#DISCONNECT disconnected}
+     */
+    public ConnectionManager(int queueCapacity, SlowConsumerPolicy slowConsumerPolicy) {
+        this(queueCapacity, slowConsumerPolicy, ObserverFanout.defaultPool());
+    }
+
+    /**
+     * @param observerPool runs the deliveries to observers; shut down by {@link #close()} if it is an
+     *                     {@link ExecutorService}
+     */
+    public ConnectionManager(int queueCapacity, SlowConsumerPolicy slowConsumerPolicy, Executor observerPool) {
+        this.queueCapacity = queueCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.observers = new ObserverFanout(gameID -> connections.getOrDefault(gameID, Set.of()), observerPool);
+        this.observerPool = observerPool instanceof ExecutorService executor ? executor : null;
+    }
+
+    /**
+     * Adds a player's connection
+     */
     public Connection add(Integer gameID, String authToken, Session session) {
-        Connection connection = new Connection(session, authToken);
+        return add(gameID, authToken, session, false, connection -> { });
+    }
 
-        connections.computeIfAbsent(gameID, k -> new CopyOnWriteArraySet<>()).add(connection);
-        connectionByAuthToken.put(authToken, connection);
+    /**
+     * Adds a connection, replacing any other the same auth token or session has
+     *
+     * @param observer  whether the client is watching the game rather than playing in it
+     * @param configure sets up the connection before it is added, and so before any broadcast can reach it
+     */
+    public Connection add(Integer gameID, String authToken, Session session, boolean observer,
+                          Consumer<Connection> configure) {
+        SlowConsumerPolicy policy = observer ? slowConsumerPolicy : SlowConsumerPolicy.DISCONNECT;
+        Connection connection = new Connection(session, authToken, queueCapacity, policy, counters, observer);
+        configure.accept(connection);
+
+        connections.compute(gameID, (id, gameConnections) -> {
+            Set<Connection> updated = gameConnections == null ? ConcurrentHashMap.newKeySet() : gameConnections;
+            updated.add(connection);
+            return updated;
+        });
+        Connection previous = connectionByAuthToken.put(authToken, connection);
+        Registration replaced = registrations.put(session, new Registration(gameID, connection));
+        if (previous != null && previous != connection) {
+            detach(registrations.get(previous.getSession()), previous);
+        }
+        if (replaced != null) {
+            detach(replaced.gameID(), replaced.connection());
+        }
 
         return connection;
     }
 
     public void remove(Integer gameID, String authToken) {
-        var gameConnections = connections.get(gameID);
-        if (gameConnections != null) {
-            gameConnections.removeIf(connection -> connection.getAuthToken().equals(authToken));
+        Connection connection = connectionByAuthToken.get(authToken);
+        if (connection == null) {
+            return;
+        }
+        Registration registration = registrations.get(connection.getSession());
+        if (registration != null && registration.connection() == connection) {
+            registrations.remove(connection.getSession(), registration);
+            detach(registration.gameID(), connection);
+        } else {
+            detach(gameID, connection);
         }
-        connectionByAuthToken.remove(authToken);
     }
 
-    public void broadcastExclusion(Integer gameID, String excludedAuthToken, String message) throws IOException {
-        for (var c : connections.get(gameID)) {
-            if (c.getSession().isOpen()) {
-                if(!c.getAuthToken().equals(excludedAuthToken)) {
-                    c.send(message);
-                }
-            }
+    /**
+     * Forgets the connection on a session, if there is one. Called when the
+     * session closes or fails so nothing is kept for it.
+     */
+    public void remove(Session session) {
+        Registration registration = registrations.remove(session);
+        if (registration != null) {
+            detach(registration.gameID(), registration.connection());
         }
     }
 
-    public void broadcastAll(Integer gameID, String message) throws IOException {
-        for (var c : connections.get(gameID)) {
-            if (c.getSession().isOpen()) {
-                c.send(message);
+    private void detach(Registration registration, Connection connection) {
+        if (registration != null && registration.connection() == connection) {
+            registrations.remove(connection.getSession(), registration);
+            detach(registration.gameID(), connection);
+        }
+    }
+
+    private void detach(Integer gameID, Connection connection) {
+        connections.computeIfPresent(gameID, (id, gameConnections) -> {
+            gameConnections.remove(connection);
+            return gameConnections.isEmpty() ? null : gameConnections;
+        });
+        connectionByAuthToken.remove(connection.getAuthToken(), connection);
+    }
+
+    /**
+     * Queues a message for everyone in a game except one user. Returns without
+     * waiting for any of them to receive it.
+     */
+    public void broadcastExclusion(Integer gameID, String excludedAuthToken, ServerMessage message) {
+        broadcast(gameID, c -> !c.getAuthToken().equals(excludedAuthToken), message);
+    }
+
+    /**
+     * Queues a message for everyone in a game. Returns without waiting for any
+     * of them to receive it.
+     */
+    public void broadcastAll(Integer gameID, ServerMessage message) {
+        broadcast(gameID, c -> true, message);
+    }
+
+    /**
+     * Queues a message for the connections in a game that match a filter. The
+     * message is encoded once for each wire format in use, not once per
+     * connection. Observers get it through the observer fan-out, so it must not
+     * change after this call.
+     */
+    public void broadcast(Integer gameID, Predicate<Connection> recipients, ServerMessage message) {
+        broadcastToPlayers(gameID, recipients, message);
+        observers.publish(gameID, recipients, message);
+    }
+
+    /**
+     * Queues a message for the players in a game that match a filter, leaving
+     * out observers
+     */
+    public void broadcastToPlayers(Integer gameID, Predicate<Connection> recipients, ServerMessage message) {
+        Set<Connection> gameConnections = connections.get(gameID);
+        if (gameConnections == null) {
+            return;
+        }
+        EncodedMessage encoded = null;
+        for (var c : gameConnections) {
+            if (c.isObserver()) {
+                continue;
+            }
+            if (!c.getSession().isOpen()) {
+                remove(c.getSession());
+            } else if (recipients.test(c)) {
+                if (encoded == null) {
+                    encoded = new EncodedMessage(message);
+                }
+                c.send(encoded);
             }
         }
     }
 
+    /**
+     * Queues a new game state for a game's observers. An observer still
+     * waiting on an earlier state is sent this one instead. The messages must
+     * not change after this call.
+     *
+     * @param delta      what observers who asked for move deltas are sent
+     * @param fullUpdate what every other observer is sent, in order
+     */
+    public void broadcastStateToObservers(Integer gameID, ServerMessage delta, List<? extends ServerMessage> fullUpdate) {
+        observers.publishState(gameID, delta, fullUpdate);
+    }
+
     public Connection getConnection(String authToken) {
         return connectionByAuthToken.get(authToken);
     }
+
+    /**
+     * @return the connection on a session, or null if it has not connected to a game
+     */
+    public Connection getConnection(Session session) {
+        Registration registration = registrations.get(session);
+        return registration == null ? null : registration.connection();
+    }
+
+    /**
+     * @return how many connections are open across every game
+     */
+    public int size() {
+        return registrations.size();
+    }
+
+    /**
+     * @return how many connections each game with at least one has, by game ID
+     */
+    public Map<Integer, Integer> connectionCounts() {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        connections.forEach((gameID, gameConnections) -> counts.put(gameID, gameConnections.size()));
+        return counts;
+    }
+
+    /**
+     * @return how many deliveries to observers each game has waiting, by game ID
+     */
+    public Map<Integer, Integer> pendingObserverDeliveries() {
+        return observers.pendingCounts();
+    }
+
+    /**
+     * @return frames queued, sent and dropped across every connection
+     */
+    public OutboundCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Waits for deliveries to observers already published to be queued
+     */
+    @Override
+    public void close() {
+        if (observerPool != null) {
+            observerPool.close();
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package server.websocket;
+
+import serialization.Codecs;
+import websocket.BinaryCodec;
+import websocket.messages.ServerMessage;
+
+/**
+ * A message on its way to one or more connections, encoded at most once per
+ * wire format however many connections it goes to
+ */
+final class EncodedMessage {
+    private final ServerMessage message;
+    private String json;
+    private byte[] binary;
+
+    EncodedMessage(ServerMessage message) {
+        this.message = message;
+    }
+
+    String json() {
+        if (json == null) {
+            json = Codecs.GSON.toJson(message);
+        }
+        return json;
+    }
+
+    byte[] binary() {
+        if (binary == null) {
+            binary = BinaryCodec.encode(message);
+        }
+        return binary;
+    }
+}
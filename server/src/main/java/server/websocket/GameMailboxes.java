@@ -0,0 +1,135 @@
+package server.websocket;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the work for each game one task at a time, in the order it was
+ * submitted, while different games run in parallel.
+ * <p>
+ * Every game has a mailbox. Submitting a task queues it and, if the mailbox
+ * is idle, starts a virtual thread that drains it. Only one drainer exists
+ * per mailbox at a time, so a game's state is only ever touched by one thread
+ * and read-modify-write sequences on it cannot interleave. Nothing is shared
+ * between games apart from the map of mailboxes.
+ * <p>
+ * A mailbox is dropped from the map once it has drained, so the map holds only
+ * games with work in hand. Queueing into a mailbox and dropping it both happen
+ * inside the map's atomic updates, so a task can never land in a mailbox that
+ * has already been dropped. A mailbox the executor will not drain, such as
+ * after {@link #close()}, is dropped along with the tasks in it.
+ */
+public class GameMailboxes implements AutoCloseable {
+    private final Map<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public GameMailboxes() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public GameMailboxes(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a task to run after every task already submitted for the same game
+     *
+     * @param gameID the game the task works on
+     * @param task   the work to do; exceptions it throws are the task's own business and are only logged
+     * @throws RejectedExecutionException if the executor will not run the game's tasks, such as after
+     *                                    {@link #close()}; the task and any queued with it are dropped
+     */
+    public void submit(int gameID, Runnable task) {
+        Mailbox mailbox = mailboxes.compute(gameID, (id, existing) -> {
+            Mailbox queued = existing == null ? new Mailbox(id) : existing;
+            queued.tasks.add(task);
+            queued.depth.incrementAndGet();
+            return queued;
+        });
+        mailbox.schedule();
+    }
+
+    /**
+     * @return how many tasks for a game are queued or running
+     */
+    public int queueDepth(int gameID) {
+        Mailbox mailbox = mailboxes.get(gameID);
+        return mailbox == null ? 0 : mailbox.depth.get();
+    }
+
+    /**
+     * @return the queue depth of every game that has had work submitted, by game ID
+     */
+    public Map<Integer, Integer> queueDepths() {
+        Map<Integer, Integer> depths = new TreeMap<>();
+        mailboxes.forEach((gameID, mailbox) -> depths.put(gameID, mailbox.depth.get()));
+        return depths;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private class Mailbox implements Runnable {
+        private final int gameID;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Mailbox(int gameID) {
+            this.gameID = gameID;
+        }
+
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Nothing will drain the mailbox, so the next task for the game starts a new one
+                mailboxes.computeIfPresent(gameID, (id, mailbox) -> {
+                    if (mailbox != this) {
+                        return mailbox;
+                    }
+                    depth.addAndGet(-tasks.size());
+                    tasks.clear();
+                    return null;
+                });
+                draining.set(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.out.printf("Task for game %d failed: %s%n", gameID, e.getMessage());
+                } finally {
+                    depth.decrementAndGet();
+                }
+            }
+            draining.set(false);
+            // A task queued after the last poll but before draining was cleared would otherwise be stranded
+            if (!tasks.isEmpty()) {
+                schedule();
+                return;
+            }
+            mailboxes.computeIfPresent(gameID,
+                    (id, mailbox) -> mailbox == this && tasks.isEmpty() && !draining.get() ? null : mailbox);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package server.websocket;
+
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Sends messages to the observers of each game from a dedicated pool, so a
+ * game with a large audience costs its players nothing but a hand-off.
+ * <p>
+ * Every game has a channel of deliveries that one pool thread at a time
+ * drains, so observers get a game's messages in the order they were published.
+ * Each delivery is encoded at most once per wire format, and the same frame is
+ * queued for every observer. State updates coalesce twice over: one still
+ * waiting in the channel when a newer one is published is dropped, and an
+ * observer whose queue still holds an older update has it replaced. Observers
+ * who fall behind therefore jump to the latest position. Other messages are
+ * delivered to every observer like a normal broadcast.
+ * <p>
+ * A channel is dropped once it has drained, so only games with deliveries in
+ * hand have one. Deliveries are queued inside the map's atomic updates, so none
+ * can land in a channel that has already been dropped.
+ */
+final class ObserverFanout {
+    private final Map<Integer, Channel> channels = new ConcurrentHashMap<>();
+    private final Function<Integer, Collection<Connection>> connections;
+    private final Executor pool;
+
+    /**
+     * @param connections every connection in a game, by game ID
+     * @param pool        runs the deliveries
+     */
+    ObserverFanout(Function<Integer, Collection<Connection>> connections, Executor pool) {
+        this.connections = connections;
+        this.pool = pool;
+    }
+
+    /**
+     * @return a pool of one daemon thread per processor
+     */
+    static ExecutorService defaultPool() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "observer-fanout-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a message for a game's observers that match a filter
+     */
+    void publish(Integer gameID, Predicate<Connection> recipients, ServerMessage message) {
+        List<EncodedMessage> frames = List.of(new EncodedMessage(message));
+        offer(gameID, new Delivery(recipients, frames, frames, false));
+    }
+
+    /**
+     * Queues a state update for all of a game's observers, replacing any update
+     * that has not gone out yet. The messages must not change after this call.
+     *
+     * @param delta      what observers who asked for move deltas are sent
+     * @param fullUpdate what every other observer is sent, in order
+     */
+    void publishState(Integer gameID, ServerMessage delta, List<? extends ServerMessage> fullUpdate) {
+        List<EncodedMessage> full = new ArrayList<>(fullUpdate.size());
+        for (ServerMessage message : fullUpdate) {
+            full.add(new EncodedMessage(message));
+        }
+        offer(gameID, new Delivery(c -> true, List.of(new EncodedMessage(delta)), full, true));
+    }
+
+    /**
+     * @return how many deliveries each game has waiting, by game ID
+     */
+    Map<Integer, Integer> pendingCounts() {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        channels.forEach((gameID, channel) -> counts.put(gameID, channel.size()));
+        return counts;
+    }
+
+    private void offer(Integer gameID, Delivery delivery) {
+        Channel[] toStart = new Channel[1];
+        channels.compute(gameID, (id, existing) -> {
+            Channel channel = existing == null ? new Channel(id) : existing;
+            if (channel.offer(delivery)) {
+                toStart[0] = channel;
+            }
+            return channel;
+        });
+        if (toStart[0] != null) {
+            pool.execute(toStart[0]);
+        }
+    }
+
+    private record Delivery(Predicate<Connection> recipients, List<EncodedMessage> deltaFrames,
+                            List<EncodedMessage> fullFrames, boolean state) {
+    }
+
+    private class Channel implements Runnable {
+        private final Integer gameID;
+        private final ArrayDeque<Delivery> pending = new ArrayDeque<>();
+        private boolean draining;
+
+        Channel(Integer gameID) {
+            this.gameID = gameID;
+        }
+
+        /**
+         * @return whether the channel was idle and must now be started
+         */
+        boolean offer(Delivery delivery) {
+            synchronized (pending) {
+                if (delivery.state()) {
+                    pending.removeIf(Delivery::state);
+                }
+                pending.add(delivery);
+                if (draining) {
+                    return false;
+                }
+                draining = true;
+                return true;
+            }
+        }
+
+        private boolean isIdle() {
+            synchronized (pending) {
+                return !draining && pending.isEmpty();
+            }
+        }
+
+        int size() {
+            synchronized (pending) {
+                return pending.size();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Delivery delivery;
+                synchronized (pending) {
+                    delivery = pending.poll();
+                    if (delivery == null) {
+                        draining = false;
+                        break;
+                    }
+                }
+                try {
+                    deliver(delivery);
+                } catch (RuntimeException e) {
+                    System.out.printf("Failed to deliver to the observers of game %d: %s%n", gameID, e.getMessage());
+                }
+            }
+            // Outside the lock, since queueing takes the map's lock before this one
+            channels.computeIfPresent(gameID, (id, channel) -> channel == this && isIdle() ? null : channel);
+        }
+
+        private void deliver(Delivery delivery) {
+            for (Connection connection : connections.apply(gameID)) {
+                if (!connection.isObserver() || !delivery.recipients().test(connection)) {
+                    continue;
+                }
+                List<EncodedMessage> frames = connection.wantsMoveDeltas() ? delivery.deltaFrames() : delivery.fullFrames();
+                if (delivery.state()) {
+                    connection.sendState(frames);
+                } else {
+                    for (EncodedMessage frame : frames) {
+                        connection.send(frame);
+                    }
+                }
+            }
+        }
+    }
+}
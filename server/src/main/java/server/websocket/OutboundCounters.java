@@ -0,0 +1,58 @@
+package server.websocket;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of outbound websocket frames, shared by every connection of
+ * a {@link ConnectionManager}
+ */
+public class OutboundCounters {
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    void queued() {
+        queued.increment();
+    }
+
+    void sent() {
+        sent.increment();
+    }
+
+    void dropped(int count) {
+        dropped.add(count);
+    }
+
+    void coalesced(int count) {
+        coalesced.add(count);
+    }
+
+    /**
+     * @return frames accepted into an outbound queue
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * @return frames written to the client
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return frames discarded because a queue was full, the write failed or the connection had closed
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return state frames discarded unsent because a newer state update replaced them
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
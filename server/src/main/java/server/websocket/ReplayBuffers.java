@@ -0,0 +1,125 @@
+package server.websocket;
+
+import websocket.messages.LoadGame;
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The last messages sent to each game's connections, so a client whose
+ * connection dropped can be sent just what it missed when it comes back
+ * instead of the whole game.
+ * <p>
+ * A game's messages are numbered from 1 as they are recorded, and each is
+ * stamped with its replay sequence before it is sent. The numbers only mean
+ * something to this server's buffer for the game, which is named by a random
+ * replay epoch that every {@link LoadGame} carries; a client resuming in any
+ * other epoch, because it was connected to another server or to this one
+ * before a restart, gets the whole game instead. Each game keeps its last
+ * {@value #CAPACITY} messages, and past {@value #MAX_GAMES} games the buffers
+ * of those quiet the longest are dropped.
+ */
+final class ReplayBuffers {
+    static final int CAPACITY = 256;
+    static final int MAX_GAMES = 10_000;
+
+    private final Map<Integer, Buffer> buffers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Buffer> eldest) {
+            return size() > MAX_GAMES;
+        }
+    };
+
+    /**
+     * One message, in the forms sent to clients that asked for move deltas and
+     * to those that did not. A null form is not sent to those clients.
+     */
+    private record Entry(int sequence, ServerMessage deltaForm, ServerMessage fullForm, String excludedAuthToken) {
+    }
+
+    private static final class Buffer {
+        private final int epoch = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>(CAPACITY);
+        private int lastSequence;
+    }
+
+    /**
+     * Numbers a message about to be sent to a game's connections and keeps it
+     * for replay. Must be called before the message is sent, as it stamps it.
+     *
+     * @param deltaForm         what clients that asked for move deltas are sent, or null for nothing
+     * @param fullForm          what every other client is sent, or null for nothing
+     * @param excludedAuthToken the connection the message is not sent to, or null if it goes to every one
+     */
+    synchronized void record(int gameID, ServerMessage deltaForm, ServerMessage fullForm, String excludedAuthToken) {
+        Buffer buffer = buffers.computeIfAbsent(gameID, id -> new Buffer());
+        int sequence = ++buffer.lastSequence;
+        stamp(buffer, deltaForm, sequence);
+        stamp(buffer, fullForm, sequence);
+        if (buffer.entries.size() == CAPACITY) {
+            buffer.entries.removeFirst();
+        }
+        buffer.entries.addLast(new Entry(sequence, deltaForm, fullForm, excludedAuthToken));
+    }
+
+    /**
+     * Stamps a copy of a game sent to one connection with the game's replay
+     * epoch and latest sequence, so the client can resume from it later
+     */
+    synchronized void stamp(int gameID, LoadGame loadGame) {
+        Buffer buffer = buffers.computeIfAbsent(gameID, id -> new Buffer());
+        stamp(buffer, loadGame, buffer.lastSequence);
+    }
+
+    private static void stamp(Buffer buffer, ServerMessage message, int sequence) {
+        if (message == null) {
+            return;
+        }
+        message.setReplaySequence(sequence);
+        if (message instanceof LoadGame loadGame) {
+            loadGame.setReplayEpoch(buffer.epoch);
+        }
+    }
+
+    /**
+     * Finds the messages a client missed. Of several copies of the game, only
+     * the last is included, since it makes the others out of date.
+     *
+     * @param after      the last replay sequence the client saw
+     * @param moveDeltas whether the client asked for move deltas
+     * @param authToken  the client's auth token, to leave out messages it was not sent
+     * @return the messages in order, or null if this buffer cannot tell what the client missed
+     */
+    synchronized List<ServerMessage> missed(int gameID, int epoch, int after, boolean moveDeltas, String authToken) {
+        Buffer buffer = buffers.get(gameID);
+        if (buffer == null || buffer.epoch != epoch || after > buffer.lastSequence) {
+            return null;
+        }
+        int firstKept = buffer.entries.isEmpty() ? buffer.lastSequence + 1 : buffer.entries.getFirst().sequence();
+        if (after < firstKept - 1) {
+            return null;
+        }
+        List<ServerMessage> missed = new ArrayList<>();
+        int lastLoadGame = -1;
+        for (Entry entry : buffer.entries) {
+            ServerMessage message = moveDeltas ? entry.deltaForm() : entry.fullForm();
+            if (entry.sequence() <= after || message == null || authToken.equals(entry.excludedAuthToken())) {
+                continue;
+            }
+            if (message instanceof LoadGame) {
+                if (lastLoadGame >= 0) {
+                    missed.set(lastLoadGame, null);
+                }
+                lastLoadGame = missed.size();
+            }
+            missed.add(message);
+        }
+        missed.removeIf(message -> message == null);
+        return missed;
+    }
+}
@@ -0,0 +1,18 @@
+package server.websocket;
+
+/**
+ * What a {@link Connection} does when a message arrives while its outbound
+ * queue is already full
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Discard the oldest queued message to make room. The newest message is
+     * always kept, so a client that catches up still ends on the latest state.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard everything queued and close the connection. The client can
+     * reconnect and be sent the game again.
+     */
+    DISCONNECT
+}
@@ -4,90 +4,400 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPiece;
 import chess.ChessPosition;
-import com.google.gson.Gson;
+import chess.GameStatus;
 import dataaccess.AuthDAO;
-import dataaccess.GameDAO;
+import dataaccess.DataAccessException;
+import dataaccess.LiveGameRegistry;
 import io.javalin.websocket.*;
 import model.GameData;
+import org.eclipse.jetty.websocket.api.Session;
+import server.cluster.GameOwnership;
+import server.events.GameEvent;
+import server.events.GameEventBus;
+import server.events.InProcessGameEventBus;
+import server.metrics.LatencyHistogram;
+import server.metrics.MetricsRegistry;
+import server.ratelimit.TokenBucketLimiter;
+import serialization.Codecs;
+import websocket.BinaryCodec;
+import websocket.commands.Connect;
 import websocket.commands.MakeMove;
 import websocket.commands.UserGameCommand;
+import websocket.messages.Error;
 import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
 import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
 
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsBinaryMessageHandler, WsCloseHandler,
+        WsErrorHandler {
+    // A socket that sends and receives nothing for this long, not even ping replies, is closed
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(5);
+    // Clients that did not ask for MOVE_MADE deltas get the full game and a notification after every move
+    private static final Predicate<Connection> WANTS_FULL_GAME = connection -> !connection.wantsMoveDeltas();
+    // Commands that change a game, which only its owner runs
+    private static final Set<UserGameCommand.CommandType> OWNER_COMMANDS = EnumSet.of(
+            UserGameCommand.CommandType.MAKE_MOVE, UserGameCommand.CommandType.LEAVE, UserGameCommand.CommandType.RESIGN);
+    // Commands that read a game, which only its owner is sure to have the latest moves of
+    private static final Set<UserGameCommand.CommandType> READ_COMMANDS = EnumSet.of(
+            UserGameCommand.CommandType.CONNECT, UserGameCommand.CommandType.RESYNC);
+    // How many times a forwarded command may be passed on while the servers disagree about who owns its game
+    private static final int MAX_FORWARDS = 3;
+    // How long a forwarded command may go unacknowledged before the client is told it may not have been run
+    private static final Duration DEFAULT_FORWARD_TIMEOUT = Duration.ofSeconds(5);
+    private static final String NO_ACK = "The server running this game did not respond, please try again";
+    private static final String TOO_MANY_MESSAGES = "Too many messages, please slow down";
 
-public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
     private final ConnectionManager connectionManager = new ConnectionManager();
+    private final GameMailboxes mailboxes = new GameMailboxes();
+    private final ReplayBuffers replays = new ReplayBuffers();
+    // Messages allowed per second, and at once, from one address and with one auth token
+    private final TokenBucketLimiter messagesByAddress = new TokenBucketLimiter(50, 100, false);
+    private final TokenBucketLimiter messagesByToken = new TokenBucketLimiter(10, 30, true);
     private final AuthDAO authDAO;
-    private final GameDAO gameDAO;
+    private final LiveGameRegistry gameDAO;
+    private final GameEventBus eventBus;
+    private final GameOwnership ownership;
+    // How long each kind of command took from being received to being handled, waiting in its game's mailbox included
+    private final Map<UserGameCommand.CommandType, LatencyHistogram> commandLatency =
+            new EnumMap<>(UserGameCommand.CommandType.class);
+    private final LatencyHistogram validMovesLatency;
+    private final LatencyHistogram makeMoveLatency;
+    private final LatencyHistogram evaluateLatency;
+    private final Duration forwardTimeout;
+    private final AtomicLong forwardIDs = new AtomicLong();
+    // The auth token each forwarded command came with, until the owner acknowledges it
+    private final ConcurrentHashMap<Long, String> unacknowledged = new ConcurrentHashMap<>();
+    // Forwarded CONNECT and RESYNC commands waiting on the owner's copy of their game
+    private final ConcurrentHashMap<Long, PendingRead> pendingReads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService forwardTimeouts;
+
+    public WebSocketHandler(AuthDAO authDAO, LiveGameRegistry gameDAO) {
+        this(authDAO, gameDAO, new InProcessGameEventBus(), new GameOwnership("standalone", Set.of()));
+    }
+
+    public WebSocketHandler(AuthDAO authDAO, LiveGameRegistry gameDAO, GameEventBus eventBus, GameOwnership ownership) {
+        this(authDAO, gameDAO, eventBus, ownership, new MetricsRegistry());
+    }
+
+    /**
+     * @param gameDAO   must keep in memory only the games {@code ownership} says this server owns
+     * @param eventBus  where this server publishes its games' events and hears about those on other servers
+     * @param ownership which server owns each game; updated here as servers join and leave the bus
+     * @param metrics   where command and engine latencies, connections and queues are reported
+     */
+    public WebSocketHandler(AuthDAO authDAO, LiveGameRegistry gameDAO, GameEventBus eventBus, GameOwnership ownership,
+                            MetricsRegistry metrics) {
+        this(authDAO, gameDAO, eventBus, ownership, metrics, DEFAULT_FORWARD_TIMEOUT);
+    }
 
-    public WebSocketHandler(AuthDAO authDAO, GameDAO gameDAO) {
+    /**
+     * @param forwardTimeout how long to wait for the owner of a game to acknowledge a command forwarded to it
+     */
+    WebSocketHandler(AuthDAO authDAO, LiveGameRegistry gameDAO, GameEventBus eventBus, GameOwnership ownership,
+                     MetricsRegistry metrics, Duration forwardTimeout) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
+        this.eventBus = eventBus;
+        this.ownership = ownership;
+        this.forwardTimeout = forwardTimeout;
+        this.forwardTimeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forward-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (UserGameCommand.CommandType type : UserGameCommand.CommandType.values()) {
+            commandLatency.put(type, metrics.latency("chess_websocket_command_seconds",
+                    "How long websocket commands took from being received to being handled", "command", type.name()));
+        }
+        validMovesLatency = engineLatency(metrics, "validMoves");
+        makeMoveLatency = engineLatency(metrics, "makeMove");
+        evaluateLatency = engineLatency(metrics, "evaluate");
+        registerGauges(metrics);
+        eventBus.subscribe(this::receive);
+        eventBus.onMembershipChange(this::membershipChanged);
+        gameDAO.onUnownedUpdate(gameData -> eventBus.send(ownership.ownerOf(gameData.gameID()),
+                new GameEvent.Players(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername())));
     }
 
     @Override
     public void handleConnect(WsConnectContext ctx) {
         System.out.println("WebSocket connected");
+        ctx.session.setIdleTimeout(IDLE_TIMEOUT);
         ctx.enableAutomaticPings();
     }
 
     @Override
     public void handleMessage(WsMessageContext ctx) {
+        if (overLimit(messagesByAddress, remoteAddress(ctx.session), ctx.session)) {
+            return;
+        }
+        UserGameCommand command;
+        try {
+            command = Codecs.GSON.fromJson(ctx.message(), UserGameCommand.class);
+        } catch (Exception e) {
+            Connection.sendError(ctx.session, e.getMessage());
+            return;
+        }
+        dispatch(command, ctx.session, false);
+    }
+
+    @Override
+    public void handleBinaryMessage(WsBinaryMessageContext ctx) {
+        if (overLimit(messagesByAddress, remoteAddress(ctx.session), ctx.session)) {
+            return;
+        }
+        UserGameCommand command;
+        try {
+            command = BinaryCodec.decodeCommand(ByteBuffer.wrap(ctx.data(), ctx.offset(), ctx.length()));
+        } catch (Exception e) {
+            Connection.sendError(ctx.session, e.getMessage());
+            return;
+        }
+        dispatch(command, ctx.session, true);
+    }
+
+    void dispatch(UserGameCommand command, Session session, boolean binary) {
+        long received = System.nanoTime();
+        if (command != null && command.getAuthToken() != null
+                && overLimit(messagesByToken, command.getAuthToken(), session)) {
+            return;
+        }
+        if (command == null || command.getGameID() == null) {
+            handleCommand(command, session, binary, received);
+            return;
+        }
+        try {
+            mailboxes.submit(command.getGameID(), () -> handleCommand(command, session, binary, received));
+        } catch (RejectedExecutionException e) {
+            // This server is stopping, and its connections with it
+        }
+    }
+
+    private void handleCommand(UserGameCommand command, Session session, boolean binary, long received) {
+        Connection connection = null;
         try {
-            UserGameCommand command = new Gson().fromJson(ctx.message(), UserGameCommand.class);
             String authToken = command.getAuthToken();
-            var connection = connectionManager.getConnection(authToken);
+            connection = connectionManager.getConnection(authToken);
 
-            if (connection == null) {
-                if (command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
-                    Integer gameID = command.getGameID();
-                    var session = ctx.session;
-                    connection = connectionManager.add(gameID, authToken, session);
+            if (OWNER_COMMANDS.contains(command.getCommandType()) && !ownership.ownsGame(command.getGameID())) {
+                int gameID = command.getGameID();
+                forward(gameID, command);
+                if (command.getCommandType() == UserGameCommand.CommandType.LEAVE) {
+                    connectionManager.remove(gameID, authToken);
                 }
+                return;
+            }
+            if (READ_COMMANDS.contains(command.getCommandType()) && !ownership.ownsGame(command.getGameID())) {
+                // The database lags the owner's moves, so the game comes from the owner
+                forward(command.getGameID(), command, new PendingRead(command, session, binary));
+                return;
             }
 
             switch (command.getCommandType()) {
                 case CONNECT:
-                    connect(command, connection, authToken);
+                    connection = connect(command, session, binary, authToken, gameDAO.getGame(command.getGameID()));
                     break;
                 case MAKE_MOVE:
-                    MakeMove makeMoveCommand = new Gson().fromJson(ctx.message(), MakeMove.class);
-                    makeMove(makeMoveCommand, authToken);
-                    break;
                 case LEAVE:
-                    leave(command, authToken);
-                    break;
                 case RESIGN:
-                    resign(command, authToken);
+                    runOwnerCommand(command);
+                    break;
+                case RESYNC:
+                    resync(command, connection, authToken, gameDAO.getGame(command.getGameID()));
                     break;
                 default:
                     break;
             }
         } catch (Exception e) {
-            Connection.sendError(ctx.session, e.getMessage());
+            if (connection != null && connection.getSession() == session) {
+                connection.sendError(e.getMessage());
+            } else {
+                Connection.sendError(session, e.getMessage());
+            }
+        } finally {
+            if (command != null && command.getCommandType() != null) {
+                commandLatency.get(command.getCommandType()).record(System.nanoTime() - received);
+            }
+        }
+    }
+
+    private static LatencyHistogram engineLatency(MetricsRegistry metrics, String call) {
+        return metrics.latency("chess_engine_call_seconds", "How long calls into the chess engine took", "call", call);
+    }
+
+    private void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("chess_websocket_connections", "Open websocket connections", connectionManager::size);
+        metrics.gauge("chess_websocket_games", "Games with at least one open websocket connection",
+                () -> connectionManager.connectionCounts().size());
+        metrics.gauge("chess_websocket_mailbox_depth", "Commands queued or running across every game's mailbox",
+                () -> sum(mailboxes.queueDepths()));
+        metrics.gauge("chess_websocket_mailbox_max_depth", "Commands queued or running in the busiest game's mailbox",
+                () -> max(mailboxes.queueDepths()));
+        metrics.gauge("chess_websocket_observer_deliveries_pending", "Updates waiting to be fanned out to observers",
+                () -> sum(connectionManager.pendingObserverDeliveries()));
+        OutboundCounters counters = connectionManager.getCounters();
+        String help = "Outbound websocket frames, by what became of them";
+        metrics.counter("chess_websocket_frames_total", help, counters::getQueued, "outcome", "queued");
+        metrics.counter("chess_websocket_frames_total", help, counters::getSent, "outcome", "sent");
+        metrics.counter("chess_websocket_frames_total", help, counters::getDropped, "outcome", "dropped");
+        metrics.counter("chess_websocket_frames_total", help, counters::getCoalesced, "outcome", "coalesced");
+    }
+
+    private static int sum(Map<Integer, Integer> values) {
+        return values.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private static int max(Map<Integer, Integer> values) {
+        return values.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    /**
+     * Takes a token for a message, or drops it. The sender is told to slow
+     * down at most once until it may send again, so a flood of messages is
+     * not answered with a flood of errors.
+     *
+     * @return whether the message is over the limit and must be dropped
+     */
+    private boolean overLimit(TokenBucketLimiter limiter, String key, Session session) {
+        if (limiter.tryAcquire(key) == 0) {
+            return false;
+        }
+        if (!limiter.claimRejectionNotice(key)) {
+            return true;
         }
+        Connection connection = connectionManager.getConnection(session);
+        if (connection != null) {
+            connection.sendError(TOO_MANY_MESSAGES);
+        } else {
+            Connection.sendError(session, TOO_MANY_MESSAGES);
+        }
+        return true;
+    }
+
+    private static String remoteAddress(Session session) {
+        return session.getRemoteAddress() instanceof InetSocketAddress address
+                ? address.getHostString() : String.valueOf(session.getRemoteAddress());
+    }
+
+    /**
+     * @return the limits on messages by remote address and by auth token, by name
+     */
+    public Map<String, TokenBucketLimiter> rateLimiters() {
+        return Map.of("websocket-address", messagesByAddress, "websocket-token", messagesByToken);
+    }
+
+    /**
+     * @return how many commands for a game are waiting or running
+     */
+    public int queueDepth(int gameID) {
+        return mailboxes.queueDepth(gameID);
+    }
+
+    /**
+     * Waits for the commands already received to finish and for their messages to reach observers' queues
+     */
+    public void close() {
+        forwardTimeouts.shutdownNow();
+        mailboxes.close();
+        connectionManager.close();
+    }
+
+    /**
+     * @return frames queued, sent and dropped across every websocket connection
+     */
+    public OutboundCounters getOutboundCounters() {
+        return connectionManager.getCounters();
+    }
+
+    /**
+     * @return how many websocket connections are open for each game, by game ID
+     */
+    public Map<Integer, Integer> connectionCounts() {
+        return connectionManager.connectionCounts();
+    }
+
+    /**
+     * @return how many websocket connections are open across every game
+     */
+    public int connectionCount() {
+        return connectionManager.size();
     }
 
     @Override
     public void handleClose(WsCloseContext ctx) {
         System.out.println("WebSocket closed");
+        connectionManager.remove(ctx.session);
     }
 
-    private void connect(UserGameCommand command, Connection connection, String authToken) throws Exception {
+    @Override
+    public void handleError(WsErrorContext ctx) {
+        System.out.println("WebSocket error: " + ctx.error());
+        connectionManager.remove(ctx.session);
+    }
+
+    /**
+     * Registers the session a client connected on, replacing any connection it
+     * already had. A client coming back after its network dropped may do so
+     * before its old socket is seen to close, and must be sent what it missed
+     * on the new one.
+     *
+     * @param gameData the game as its owner holds it
+     * @return the client's new connection
+     */
+    private Connection connect(UserGameCommand command, Session session, boolean binary, String authToken,
+                               GameData gameData) throws Exception {
         String username = authDAO.getAuth(authToken).username();
         Integer gameID = command.getGameID();
-        GameData gameData = gameDAO.getGame(gameID);
         if (gameData == null) {
             throw new Exception ("Game does not exist");
         }
         String role = determineRole(gameData, username);
+        boolean moveDeltas = command instanceof Connect connectCommand && connectCommand.wantsMoveDeltas();
+        // Set up before it is added, so no broadcast reaches it with the wrong role or wire format
+        Connection connection = connectionManager.add(gameID, authToken, session, role.equals("observer"), added -> {
+            added.setBinary(binary);
+            added.setMoveDeltas(moveDeltas);
+        });
+        if (command instanceof Connect connectCommand && connectCommand.isResume()) {
+            // Coming back from a dropped connection, which nobody else was told about, so neither is this
+            List<ServerMessage> missed = replays.missed(gameID, connectCommand.getResumeEpoch(),
+                    connectCommand.getResumeAfter(), connection.wantsMoveDeltas(), authToken);
+            if (missed != null) {
+                missed.forEach(connection::send);
+            } else {
+                sendGame(connection, gameData);
+            }
+            return connection;
+        }
         Notification notification = new Notification(String.format("%s joined as %s", username, role));
-        String notificationJSON = new Gson().toJson(notification);
+        sendGame(connection, gameData);
+        publish(new GameEvent.Notice(gameID, authToken, notification));
+        return connection;
+    }
+
+    private void sendGame(Connection connection, GameData gameData) {
         LoadGame loadGame = new LoadGame(gameData);
-        String loadGameJSON = new Gson().toJson(loadGame);
-        connection.send(loadGameJSON);
-        connectionManager.broadcastExclusion(gameID, authToken, notificationJSON);
+        replays.stamp(gameData.gameID(), loadGame);
+        connection.send(loadGame);
     }
 
     private String determineRole(GameData gameData, String username) {
@@ -105,10 +415,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
     private void makeMove(MakeMove command, String authToken) throws Exception {
         String username = authDAO.getAuth(authToken).username();
         Integer gameID = command.getGameID();
-        GameData gameData = gameDAO.getGame(gameID);
-        if (gameData == null) {
-            throw new Exception("Game does not exist");
-        }
+        GameData gameData = copyOfGame(gameID);
 
         ChessGame game = gameData.game();
         boolean isWhite = username.equals(gameData.whiteUsername());
@@ -125,7 +432,9 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         if (game.isGameOver()) {
             throw new Exception("The game has already ended");
         }
+        long start = System.nanoTime();
         Collection<ChessMove> validMoves = game.validMoves(command.getMove().getStartPosition());
+        validMovesLatency.record(System.nanoTime() - start);
         if (!validMoves.contains(command.getMove())) {
             throw new Exception("That move is not valid");
         }
@@ -141,60 +450,55 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             throw new Exception("You may not move the other player's pieces");
         }
 
+        start = System.nanoTime();
         game.makeMove(command.getMove());
+        makeMoveLatency.record(System.nanoTime() - start);
         GameData updatedGameData = new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
         gameDAO.updateGame(updatedGameData);
 
-        LoadGame loadGame = new LoadGame(updatedGameData);
-        String loadGameJSON = new Gson().toJson(loadGame);
-        connectionManager.broadcastAll(gameID, loadGameJSON);
+        start = System.nanoTime();
+        GameStatus status = game.evaluate();
+        evaluateLatency.record(System.nanoTime() - start);
+        MoveMade moveMade = new MoveMade(game.getMoveCount(), username, command.getMove(), status);
 
         String pieceType = convertPieceType(game.getBoard().getPiece(command.getMove().getEndPosition()).getPieceType());
         String formattedStartPos = formatPosition(command.getMove().getStartPosition());
         String formattedEndPos = formatPosition(command.getMove().getEndPosition());
         Notification moveNotification = new Notification(String.format("%s moved their %s from %s to %s",
                 username, pieceType, formattedStartPos, formattedEndPos));
-        String moveNotificationJSON = new Gson().toJson(moveNotification);
-        connectionManager.broadcastExclusion(gameID, authToken, moveNotificationJSON);
 
-        if (game.isInCheck(ChessGame.TeamColor.WHITE) && !game.isInCheckmate(ChessGame.TeamColor.WHITE)) {
-            Notification checkNotification = new Notification(String.format("%s is in check", gameData.whiteUsername()));
-            String checkNotificationJSON = new Gson().toJson(checkNotification);
-            connectionManager.broadcastAll(gameID, checkNotificationJSON);
-        }
-        if (game.isInCheck(ChessGame.TeamColor.BLACK) && !game.isInCheckmate(ChessGame.TeamColor.BLACK)) {
-            Notification checkNotification = new Notification(String.format("%s is in check", gameData.blackUsername()));
-            String checkNotificationJSON = new Gson().toJson(checkNotification);
-            connectionManager.broadcastAll(gameID, checkNotificationJSON);
-        }
-        if (game.isInCheckmate(ChessGame.TeamColor.WHITE)) {
+        boolean whiteToMove = status.teamToMove().equals(ChessGame.TeamColor.WHITE);
+        String playerToMove = whiteToMove ? gameData.whiteUsername() : gameData.blackUsername();
+        String otherPlayer = whiteToMove ? gameData.blackUsername() : gameData.whiteUsername();
+        Notification statusNotification = null;
+        if (status.checkmate()) {
             endGame(gameData);
-            Notification checkmateNotification = new Notification(String.format("%s is in checkmate. %s has won the game!",
-                    gameData.whiteUsername(), gameData.blackUsername()));
-            String checkmateNotificationJSON = new Gson().toJson(checkmateNotification);
-            connectionManager.broadcastAll(gameID, checkmateNotificationJSON);
-        }
-        if (game.isInCheckmate(ChessGame.TeamColor.BLACK)) {
+            statusNotification = new Notification(String.format("%s is in checkmate. %s has won the game!",
+                    playerToMove, otherPlayer));
+        } else if (status.stalemate()) {
             endGame(gameData);
-            Notification checkmateNotification = new Notification(String.format("%s is in checkmate. %s has won the game!",
-                    gameData.blackUsername(), gameData.whiteUsername()));
-            String checkmateNotificationJSON = new Gson().toJson(checkmateNotification);
-            connectionManager.broadcastAll(gameID, checkmateNotificationJSON);
+            statusNotification = new Notification(String.format("%s has no remaining moves. The game has ended in a stalemate.",
+                    playerToMove));
+        } else if (status.inCheck()) {
+            statusNotification = new Notification(String.format("%s is in check", playerToMove));
         }
-        if (game.isInStalemate(ChessGame.TeamColor.WHITE)) {
-            endGame(gameData);
-            Notification stalemateNotification = new Notification(String.format("%s has no remaining moves. The game has ended in a stalemate.",
-                    gameData.whiteUsername()));
-            String stalemateNotificationJSON = new Gson().toJson(stalemateNotification);
-            connectionManager.broadcastAll(gameID, stalemateNotificationJSON);
+
+        publish(new GameEvent.Move(gameID, snapshot(updatedGameData), authToken, moveMade, moveNotification,
+                statusNotification));
+    }
+
+    private void resync(UserGameCommand command, Connection connection, String authToken, GameData gameData)
+            throws Exception {
+        if (authDAO.getAuth(authToken) == null) {
+            throw new Exception("Unauthorized");
         }
-        if (game.isInStalemate(ChessGame.TeamColor.BLACK)) {
-            endGame(gameData);
-            Notification stalemateNotification = new Notification(String.format("%s has no remaining moves. The game has ended in a stalemate.",
-                    gameData.blackUsername()));
-            String stalemateNotificationJSON = new Gson().toJson(stalemateNotification);
-            connectionManager.broadcastAll(gameID, stalemateNotificationJSON);
+        if (connection == null) {
+            throw new Exception("Connect to the game before asking to resync");
         }
+        if (gameData == null) {
+            throw new Exception("Game does not exist");
+        }
+        sendGame(connection, gameData);
     }
 
     private String convertPieceType(ChessPiece.PieceType type) {
@@ -223,6 +527,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         ChessGame game = gameData.game();
         GameData endedGame = new GameData(gameID, whiteUsername, blackUsername, gameName, game);
         gameDAO.updateGame(endedGame);
+        gameDAO.flush(gameID);
     }
 
     private void leave(UserGameCommand command, String authToken) throws Exception {
@@ -243,17 +548,13 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         connectionManager.remove(gameID, authToken);
 
         Notification notification = new Notification(String.format("%s has left the game", username));
-        String notificationJSON = new Gson().toJson(notification);
-        connectionManager.broadcastExclusion(gameID, authToken, notificationJSON);
+        publish(new GameEvent.Notice(gameID, authToken, notification));
     }
 
     private void resign(UserGameCommand command, String authToken) throws Exception {
         String username = authDAO.getAuth(authToken).username();
         Integer gameID = command.getGameID();
-        GameData gameData = gameDAO.getGame(gameID);
-        if (gameData == null) {
-            throw new Exception("Game does not exist");
-        }
+        GameData gameData = copyOfGame(gameID);
         ChessGame game = gameData.game();
         if (game.isGameOver()) {
             throw new Exception("Game has already ended");
@@ -264,9 +565,309 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         game.endGame();
         GameData updatedGameData = new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
         gameDAO.updateGame(updatedGameData);
+        gameDAO.flush(gameID);
 
         Notification notification = new Notification(String.format("%s has resigned from the game", username));
-        String notificationJSON = new Gson().toJson(notification);
-        connectionManager.broadcastAll(gameID, notificationJSON);
+        publish(new GameEvent.GameOver(gameID, notification));
+    }
+
+    /**
+     * Delivers an event to this server's connections and publishes it to the others
+     */
+    private void publish(GameEvent event) {
+        deliver(event);
+        eventBus.publish(event);
+    }
+
+    private void receive(GameEvent event) {
+        try {
+            mailboxes.submit(event.gameID(), () -> applyRemote(event));
+        } catch (RejectedExecutionException e) {
+            // This server is stopping; whoever owns the game next loads it from the database
+        }
+    }
+
+    private void runOwnerCommand(UserGameCommand command) throws Exception {
+        String authToken = command.getAuthToken();
+        switch (command.getCommandType()) {
+            case MAKE_MOVE -> makeMove((MakeMove) command, authToken);
+            case LEAVE -> leave(command, authToken);
+            case RESIGN -> resign(command, authToken);
+            default -> throw new IllegalArgumentException(command.getCommandType() + " is not run by the owner");
+        }
+    }
+
+    private void applyRemote(GameEvent event) {
+        switch (event) {
+            case GameEvent.Forwarded forwarded -> runForwarded(forwarded);
+            case GameEvent.Ack ack -> {
+                unacknowledged.remove(ack.forwardID());
+                PendingRead pending = pendingReads.remove(ack.forwardID());
+                if (pending != null) {
+                    // Run without the owner's copy, which could not be reached
+                    finishRead(pending, null);
+                }
+            }
+            case GameEvent.Current current -> {
+                PendingRead pending = pendingReads.remove(current.forwardID());
+                if (pending != null) {
+                    finishRead(pending, current.game());
+                }
+            }
+            case GameEvent.Reply reply -> {
+                Connection connection = connectionManager.getConnection(reply.authToken());
+                if (connection != null) {
+                    connection.send(reply.message());
+                }
+            }
+            case GameEvent.Handoff handoff -> gameDAO.refresh(handoff.game());
+            case GameEvent.Players players -> seatPlayers(players);
+            default -> deliver(event);
+        }
+    }
+
+    /**
+     * Sends a command to its game's owner. The client is sent an error if the
+     * owner does not acknowledge it in time, since the bus may have lost it or
+     * the owner may have gone away.
+     */
+    private void forward(int gameID, UserGameCommand command) {
+        forward(gameID, command, null);
+    }
+
+    /**
+     * @param pendingRead a CONNECT or RESYNC to finish here once the owner sends its copy of the game, or null
+     */
+    private void forward(int gameID, UserGameCommand command, PendingRead pendingRead) {
+        long forwardID = forwardIDs.incrementAndGet();
+        if (pendingRead != null) {
+            pendingReads.put(forwardID, pendingRead);
+        } else {
+            unacknowledged.put(forwardID, command.getAuthToken());
+        }
+        eventBus.send(ownership.ownerOf(gameID), new GameEvent.Forwarded(gameID, ownership.self(), forwardID, 0,
+                command));
+        try {
+            forwardTimeouts.schedule(() -> forwardTimedOut(forwardID), forwardTimeout.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // This server is stopping, and its connections with it
+        }
+    }
+
+    private void forwardTimedOut(long forwardID) {
+        PendingRead pending = pendingReads.remove(forwardID);
+        if (pending != null) {
+            // Better a game that may be a move behind than none at all
+            try {
+                mailboxes.submit(pending.command().getGameID(), () -> finishRead(pending, null));
+            } catch (RejectedExecutionException e) {
+                // This server is stopping, and its connections with it
+            }
+            return;
+        }
+        String authToken = unacknowledged.remove(forwardID);
+        Connection connection = authToken == null ? null : connectionManager.getConnection(authToken);
+        if (connection != null) {
+            connection.sendError(NO_ACK);
+        }
+    }
+
+    private void runForwarded(GameEvent.Forwarded forwarded) {
+        int gameID = forwarded.gameID();
+        boolean read = READ_COMMANDS.contains(forwarded.command().getCommandType());
+        if (!ownership.ownsGame(gameID)) {
+            if (forwarded.hops() < MAX_FORWARDS) {
+                eventBus.send(ownership.ownerOf(gameID), new GameEvent.Forwarded(gameID, forwarded.origin(),
+                        forwarded.forwardID(), forwarded.hops() + 1, forwarded.command()));
+                return;
+            }
+            if (!read) {
+                // A read is finished without the owner's copy when the Ack arrives alone
+                reply(forwarded, "The game is moving between servers, please try again");
+            }
+        } else if (read) {
+            sendCurrent(forwarded);
+        } else {
+            try {
+                runOwnerCommand(forwarded.command());
+            } catch (Exception e) {
+                reply(forwarded, e.getMessage());
+            }
+        }
+        GameEvent.Ack ack = new GameEvent.Ack(gameID, forwarded.forwardID());
+        if (forwarded.origin().equals(ownership.self())) {
+            applyRemote(ack);
+        } else {
+            eventBus.send(forwarded.origin(), ack);
+        }
+    }
+
+    /**
+     * Sends this server's copy of a game back to the server a CONNECT or
+     * RESYNC for it was forwarded from, which finishes the command itself
+     */
+    private void sendCurrent(GameEvent.Forwarded forwarded) {
+        int gameID = forwarded.gameID();
+        GameData gameData = null;
+        try {
+            GameData held = gameDAO.getGame(gameID);
+            gameData = held == null ? null : snapshot(held);
+        } catch (DataAccessException e) {
+            System.out.printf("Failed to read game %d for another server: %s%n", gameID, e.getMessage());
+        }
+        GameEvent.Current current = new GameEvent.Current(gameID, forwarded.forwardID(), gameData);
+        if (forwarded.origin().equals(ownership.self())) {
+            applyRemote(current);
+        } else {
+            eventBus.send(forwarded.origin(), current);
+        }
+    }
+
+    /**
+     * Finishes a CONNECT or RESYNC that was forwarded to its game's owner
+     *
+     * @param ownersCopy the game from its owner, or null to read it here instead
+     */
+    private void finishRead(PendingRead pending, GameData ownersCopy) {
+        UserGameCommand command = pending.command();
+        String authToken = command.getAuthToken();
+        Connection connection = connectionManager.getConnection(authToken);
+        try {
+            GameData gameData = ownersCopy != null ? ownersCopy : gameDAO.getGame(command.getGameID());
+            if (command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+                connection = connect(command, pending.session(), pending.binary(), authToken, gameData);
+            } else {
+                resync(command, connection, authToken, gameData);
+            }
+        } catch (Exception e) {
+            if (connection != null && connection.getSession() == pending.session()) {
+                connection.sendError(e.getMessage());
+            } else {
+                Connection.sendError(pending.session(), e.getMessage());
+            }
+        }
+    }
+
+    private void reply(GameEvent.Forwarded forwarded, String errorMessage) {
+        String authToken = forwarded.command().getAuthToken();
+        Error error = new Error("Error: " + errorMessage);
+        if (forwarded.origin().equals(ownership.self())) {
+            applyRemote(new GameEvent.Reply(forwarded.gameID(), authToken, error));
+        } else {
+            eventBus.send(forwarded.origin(), new GameEvent.Reply(forwarded.gameID(), authToken, error));
+        }
+    }
+
+    private void seatPlayers(GameEvent.Players players) {
+        try {
+            GameData gameData = gameDAO.getGame(players.gameID());
+            if (gameData != null) {
+                // The seating server read the game from the database, which may not have this server's latest seats
+                String white = players.whiteUsername() != null ? players.whiteUsername() : gameData.whiteUsername();
+                String black = players.blackUsername() != null ? players.blackUsername() : gameData.blackUsername();
+                gameDAO.updateGame(new GameData(gameData.gameID(), white, black, gameData.gameName(), gameData.game()));
+            }
+        } catch (DataAccessException e) {
+            System.out.printf("Failed to seat players in game %d: %s%n", players.gameID(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the ring for the servers now on the bus and hands each game this
+     * server no longer owns to its new owner, after saving it
+     */
+    private void membershipChanged(Set<String> nodes) {
+        ownership.setNodes(nodes);
+        for (int gameID : gameDAO.cachedGameIDs()) {
+            if (!ownership.ownsGame(gameID)) {
+                try {
+                    mailboxes.submit(gameID, () -> handOff(gameID));
+                } catch (RejectedExecutionException e) {
+                    // This server is stopping; whoever owns the game next loads it from the database
+                }
+            }
+        }
+    }
+
+    private void handOff(int gameID) {
+        if (ownership.ownsGame(gameID)) {
+            return;
+        }
+        try {
+            GameData gameData = gameDAO.release(gameID);
+            if (gameData != null) {
+                eventBus.send(ownership.ownerOf(gameID), new GameEvent.Handoff(gameID, snapshot(gameData)));
+            }
+        } catch (DataAccessException e) {
+            System.out.printf("Failed to hand off game %d: %s%n", gameID, e.getMessage());
+        }
+    }
+
+    private void deliver(GameEvent event) {
+        int gameID = event.gameID();
+        switch (event) {
+            case GameEvent.Notice notice -> {
+                replays.record(gameID, notice.notification(), notice.notification(), notice.excludedAuthToken());
+                if (notice.excludedAuthToken() == null) {
+                    connectionManager.broadcastAll(gameID, notice.notification());
+                } else {
+                    connectionManager.broadcastExclusion(gameID, notice.excludedAuthToken(), notice.notification());
+                }
+            }
+            case GameEvent.Move move -> deliverMove(move);
+            case GameEvent.GameOver gameOver -> {
+                replays.record(gameID, gameOver.notification(), gameOver.notification(), null);
+                connectionManager.broadcastAll(gameID, gameOver.notification());
+            }
+            default -> throw new IllegalArgumentException("Cannot deliver " + event.getClass().getSimpleName());
+        }
+    }
+
+    private void deliverMove(GameEvent.Move move) {
+        int gameID = move.gameID();
+        LoadGame loadGame = new LoadGame(move.game());
+        replays.record(gameID, move.delta(), loadGame, null);
+        replays.record(gameID, null, move.moveNotification(), move.moverAuthToken());
+        if (move.statusNotification() != null) {
+            replays.record(gameID, null, move.statusNotification(), null);
+        }
+        connectionManager.broadcastToPlayers(gameID, Connection::wantsMoveDeltas, move.delta());
+        connectionManager.broadcastToPlayers(gameID, WANTS_FULL_GAME, loadGame);
+        connectionManager.broadcastToPlayers(gameID,
+                WANTS_FULL_GAME.and(c -> !c.getAuthToken().equals(move.moverAuthToken())), move.moveNotification());
+        if (move.statusNotification() != null) {
+            connectionManager.broadcastToPlayers(gameID, WANTS_FULL_GAME, move.statusNotification());
+        }
+
+        List<ServerMessage> observerUpdate = new ArrayList<>(List.of(loadGame, move.moveNotification()));
+        if (move.statusNotification() != null) {
+            observerUpdate.add(move.statusNotification());
+        }
+        connectionManager.broadcastStateToObservers(gameID, move.delta(), observerUpdate);
+    }
+
+    /**
+     * @return a copy of a game for a command to change; the registry's copy is shared with readers on other threads
+     */
+    private GameData copyOfGame(int gameID) throws Exception {
+        GameData gameData = gameDAO.getGame(gameID);
+        if (gameData == null) {
+            throw new Exception("Game does not exist");
+        }
+        return snapshot(gameData);
+    }
+
+    /**
+     * A CONNECT or RESYNC forwarded to its game's owner, with what is needed to finish it on this server
+     */
+    private record PendingRead(UserGameCommand command, Session session, boolean binary) {
+    }
+
+    // Events are read on other threads and other servers after later commands may have changed the live game
+    private static GameData snapshot(GameData gameData) {
+        ChessGame game = gameData.game() == null ? null : new ChessGame(gameData.game());
+        return new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(),
+                gameData.gameName(), game);
     }
 }
@@ -4,19 +4,23 @@ import dataaccess.*;
 
 public class ClearService {
 
-    private final AuthDAO authAccess;
-    private final GameDAO gameAccess;
-    private final UserDAO userAccess;
+    private final AsyncAuthDAO authAccess;
+    private final AsyncGameDAO gameAccess;
+    private final AsyncUserDAO userAccess;
 
     public ClearService(AuthDAO authAccess, GameDAO gameAccess, UserDAO userAccess) {
+        this(new ExecutorAuthDAO(authAccess, DataAccessExecutor.DIRECT),
+                new ExecutorGameDAO(gameAccess, DataAccessExecutor.DIRECT),
+                new ExecutorUserDAO(userAccess, DataAccessExecutor.DIRECT));
+    }
+
+    public ClearService(AsyncAuthDAO authAccess, AsyncGameDAO gameAccess, AsyncUserDAO userAccess) {
         this.authAccess = authAccess;
         this.gameAccess = gameAccess;
         this.userAccess = userAccess;
     }
 
     public void clear() throws DataAccessException {
-        authAccess.deleteAuths();
-        gameAccess.deleteGames();
-        userAccess.deleteUsers();
+        DataAccessExecutor.awaitAll(authAccess.deleteAuths(), gameAccess.deleteGames(), userAccess.deleteUsers());
     }
 }
@@ -11,14 +11,21 @@ import requests.CreateGameRequest;
 import requests.JoinGameRequest;
 import responses.CreateGameResponse;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+import static dataaccess.DataAccessExecutor.await;
 
 public class GameService {
 
-    private final AuthDAO authDAO;
-    private final GameDAO gameDAO;
+    private final AsyncAuthDAO authDAO;
+    private final AsyncGameDAO gameDAO;
     private static int gameID = 1;
 
     public GameService(AuthDAO authDAO, GameDAO gameDAO) {
+        this(new ExecutorAuthDAO(authDAO, DataAccessExecutor.DIRECT), new ExecutorGameDAO(gameDAO, DataAccessExecutor.DIRECT));
+    }
+
+    public GameService(AsyncAuthDAO authDAO, AsyncGameDAO gameDAO) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
     }
@@ -27,34 +34,39 @@ public class GameService {
         if (request.gameName() == null) {
             throw new BadRequestException("Error: bad request");
         }
-        if (authDAO.getAuth(authToken) == null) {
+        if (await(authDAO.getAuth(authToken)) == null) {
             throw new UnauthorizedException("Error: unauthorized");
         }
         int gameID = GameService.gameID;
         GameService.gameID++;
         GameData gameData = new GameData(gameID, null, null, request.gameName(), new ChessGame());
-        gameDAO.createGame(gameData);
+        await(gameDAO.createGame(gameData));
         return new CreateGameResponse(gameID);
     }
 
     public Collection<GameData> listGames(String authToken) throws Exception {
-        if (authDAO.getAuth(authToken) == null) {
+        // The games are fetched alongside the auth check and thrown away if it fails
+        CompletableFuture<AuthData> auth = authDAO.getAuth(authToken);
+        CompletableFuture<Collection<GameData>> games = gameDAO.listGames();
+        if (await(auth) == null) {
             throw new UnauthorizedException("Error: unauthorized");
         }
-        return gameDAO.listGames();
+        return await(games);
     }
 
     public void joinGame(JoinGameRequest request, String authToken) throws Exception {
-        if (authDAO.getAuth(authToken) == null) {
+        CompletableFuture<AuthData> auth = authDAO.getAuth(authToken);
+        CompletableFuture<GameData> game = gameDAO.getGame(request.gameID());
+        AuthData authData = await(auth);
+        if (authData == null) {
             throw new UnauthorizedException("Error: unauthorized");
         }
 
-        GameData gameData = gameDAO.getGame(request.gameID());
+        GameData gameData = await(game);
         if (gameData == null) {
             throw new BadRequestException("Error: bad request");
         }
 
-        AuthData authData = authDAO.getAuth(authToken);
         String username = authData.username();
         boolean isWhite = "white".equalsIgnoreCase(request.playerColor());
         boolean isBlack = "black".equalsIgnoreCase(request.playerColor());
@@ -79,6 +91,6 @@ public class GameService {
             updatedGameData = new GameData(gameData.gameID(), gameData.whiteUsername(), username, gameData.gameName(), gameData.game());
         }
 
-        gameDAO.updateGame(updatedGameData);
+        await(gameDAO.updateGame(updatedGameData));
     }
 }
@@ -12,12 +12,22 @@ import responses.RegisterResponse;
 import model.UserData;
 import model.AuthData;
 
+import static dataaccess.DataAccessExecutor.await;
+
 public class UserService {
 
-    private final AuthDAO authDAO;
-    private final UserDAO userDAO;
+    private final AsyncAuthDAO authDAO;
+    private final AsyncUserDAO userDAO;
 
     public UserService(AuthDAO authDAO, UserDAO userDAO) {
+        this(new ExecutorAuthDAO(authDAO, DataAccessExecutor.DIRECT), new ExecutorUserDAO(userDAO, DataAccessExecutor.DIRECT));
+    }
+
+    /**
+     * Registering and logging in run their queries one after another, as each
+     * depends on the one before; an auth token is only made for a user known to exist.
+     */
+    public UserService(AsyncAuthDAO authDAO, AsyncUserDAO userDAO) {
         this.authDAO = authDAO;
         this.userDAO = userDAO;
     }
@@ -26,12 +36,12 @@ public class UserService {
         if (request.username() == null || request.password() == null || request.email() == null) {
             throw new BadRequestException("Error: bad request");
         }
-        if (userDAO.getUser(request.username()) != null) {
+        if (await(userDAO.getUser(request.username())) != null) {
             throw new AlreadyTakenException("Error: already taken");
         }
         UserData userData = new UserData(request.username(), request.password(), request.email());
-        userDAO.createUser(userData);
-        AuthData authData = authDAO.createAuth(request.username());
+        await(userDAO.createUser(userData));
+        AuthData authData = await(authDAO.createAuth(request.username()));
         return new RegisterResponse(request.username(), authData.authToken());
     }
 
@@ -39,18 +49,18 @@ public class UserService {
         if (request.username() == null || request.password() == null) {
             throw new BadRequestException("Error: bad request");
         }
-        UserData userData = userDAO.getUser(request.username());
+        UserData userData = await(userDAO.getUser(request.username()));
         if (userData == null) {
             throw new UnauthorizedException("Error: unauthorized");
         }
         if (!BCrypt.checkpw(request.password(), userData.password())) {
             throw new UnauthorizedException("Error: unauthorized");
         }
-        AuthData authData = authDAO.createAuth(request.username());
+        AuthData authData = await(authDAO.createAuth(request.username()));
         return new LoginResponse(request.username(), authData.authToken());
     }
 
     public void logout(String authToken) throws UnauthorizedException, DataAccessException {
-        authDAO.deleteAuth(authToken);
+        await(authDAO.deleteAuth(authToken));
     }
 }
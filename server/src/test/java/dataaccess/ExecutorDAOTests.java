@@ -0,0 +1,79 @@
+package dataaccess;
+
+import chess.ChessGame;
+import exceptions.UnauthorizedException;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutorDAOTests {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void cleanUp() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void memoryCallsCompleteBeforeReturning() throws Exception {
+        AsyncAuthDAO authDAO = new ExecutorAuthDAO(new MemoryAuthDAO(), DataAccessExecutor.DIRECT);
+
+        CompletableFuture<AuthData> created = authDAO.createAuth("username");
+
+        assertTrue(created.isDone());
+        assertEquals("username", DataAccessExecutor.await(authDAO.getAuth(created.join().authToken())).username());
+    }
+
+    @Test
+    public void callsRunOnTheExecutor() throws Exception {
+        AsyncGameDAO gameDAO = new ExecutorGameDAO(new MemoryGameDAO(), executor);
+        GameData gameData = new GameData(1, "white", null, "game", new ChessGame());
+
+        DataAccessExecutor.await(gameDAO.createGame(gameData));
+
+        assertEquals(gameData, DataAccessExecutor.await(gameDAO.getGame(1)));
+        assertEquals(1, DataAccessExecutor.await(gameDAO.listGames()).size());
+    }
+
+    @Test
+    public void failuresAreRethrownAsTheyWereThrown() {
+        AsyncAuthDAO authDAO = new ExecutorAuthDAO(new MemoryAuthDAO(), executor);
+        AsyncUserDAO userDAO = new ExecutorUserDAO(new UserDAO() {
+            @Override
+            public UserData createUser(UserData userData) throws DataAccessException {
+                throw new DataAccessException("Error: database error");
+            }
+
+            @Override
+            public UserData getUser(String username) {
+                return null;
+            }
+
+            @Override
+            public void deleteUsers() {
+            }
+        }, executor);
+
+        assertThrows(UnauthorizedException.class, () -> DataAccessExecutor.await(authDAO.deleteAuth("missing")));
+        assertThrows(DataAccessException.class,
+                () -> DataAccessExecutor.await(userDAO.createUser(new UserData("username", "password", "email"))));
+        assertThrows(DataAccessException.class,
+                () -> DataAccessExecutor.awaitAll(userDAO.deleteUsers(), authDAO.deleteAuth("missing")));
+    }
+
+    @Test
+    public void callsAfterShutdownFail() {
+        AsyncUserDAO userDAO = new ExecutorUserDAO(new MemoryUserDAO(), executor);
+        executor.shutdown();
+
+        assertThrows(DataAccessException.class, () -> DataAccessExecutor.await(userDAO.getUser("username")));
+    }
+}
@@ -0,0 +1,231 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiveGameRegistryTests {
+    private CountingGameDAO database;
+    private LiveGameRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        database = new CountingGameDAO();
+        registry = new LiveGameRegistry(database, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        registry.close();
+    }
+
+    @Test
+    public void getGameLoadsOnce() throws DataAccessException {
+        database.createGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+
+        GameData first = registry.getGame(1);
+        GameData second = registry.getGame(1);
+
+        assertSame(first, second);
+        assertEquals(1, database.reads);
+        assertNull(registry.getGame(2));
+    }
+
+    @Test
+    public void refreshReplacesCachedGameWithoutWriting() throws DataAccessException, InvalidMoveException {
+        registry.createGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+        ChessGame elsewhere = new ChessGame();
+        elsewhere.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        GameData changed = new GameData(1, "white", null, "game1", elsewhere);
+
+        registry.refresh(changed);
+
+        GameData cached = registry.getGame(1);
+        assertEquals(changed, cached);
+        assertNotSame(changed.game(), cached.game());
+        assertEquals(0, database.writes);
+        assertEquals(0, registry.pendingCount());
+    }
+
+    @Test
+    public void refreshKeepsALaterCachedGame() throws DataAccessException, InvalidMoveException {
+        ChessGame before = new ChessGame();
+        ChessGame after = new ChessGame(before);
+        after.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        registry.createGame(new GameData(1, "white", "black", "game1", after));
+
+        registry.refresh(new GameData(1, "white", "black", "game1", before));
+        assertEquals(1, registry.getGame(1).game().getMoveCount());
+
+        ChessGame resigned = new ChessGame(after);
+        resigned.endGame();
+        registry.refresh(new GameData(1, "white", "black", "game1", resigned));
+        registry.refresh(new GameData(1, "white", "black", "game1", after));
+        assertTrue(registry.getGame(1).game().isGameOver());
+    }
+
+    @Test
+    public void updatesAreCoalescedUntilFlush() throws DataAccessException, InvalidMoveException {
+        registry.createGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+        GameData gameData = registry.getGame(1);
+        ChessGame game = gameData.game();
+
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        registry.updateGame(gameData);
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        registry.updateGame(gameData);
+
+        assertEquals(0, database.writes);
+        assertEquals(1, registry.pendingCount());
+        assertEquals(ChessGame.TeamColor.WHITE, registry.getGame(1).game().getTeamTurn());
+
+        registry.flush(1);
+
+        assertEquals(1, database.writes);
+        assertEquals(0, registry.pendingCount());
+        assertEquals(game, database.getGame(1).game());
+    }
+
+    @Test
+    public void gamesHandedOutAreNeverChanged() throws DataAccessException, InvalidMoveException {
+        registry.createGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+        GameData read = registry.getGame(1);
+
+        ChessGame moved = new ChessGame(read.game());
+        moved.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        registry.updateGame(new GameData(1, "white", "black", "game1", moved));
+        moved.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+
+        assertEquals(new ChessGame(), read.game());
+        assertEquals(1, registry.getGame(1).game().getMoveCount());
+        assertEquals(1, registry.listGames().iterator().next().game().getMoveCount());
+    }
+
+    @Test
+    public void pendingSnapshotIsNotChangedByLaterMoves() throws DataAccessException, InvalidMoveException {
+        registry.createGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+        GameData gameData = registry.getGame(1);
+        registry.updateGame(gameData);
+
+        gameData.game().makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        registry.flush(1);
+
+        assertEquals(new ChessGame(), database.getGame(1).game());
+    }
+
+    @Test
+    public void closeFlushesEverything() throws DataAccessException {
+        registry.createGame(new GameData(1, "white", null, "game1", new ChessGame()));
+        registry.createGame(new GameData(2, null, "black", "game2", new ChessGame()));
+        registry.updateGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+        registry.updateGame(new GameData(2, "white", "black", "game2", new ChessGame()));
+
+        registry.close();
+
+        assertEquals(2, database.writes);
+        assertEquals("black", database.getGame(1).blackUsername());
+        assertEquals("white", database.getGame(2).whiteUsername());
+    }
+
+    @Test
+    public void backgroundFlush() throws Exception {
+        LiveGameRegistry fastRegistry = new LiveGameRegistry(database, Duration.ofMillis(10));
+        fastRegistry.createGame(new GameData(1, "white", null, "game1", new ChessGame()));
+        fastRegistry.updateGame(new GameData(1, "white", "black", "game1", new ChessGame()));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fastRegistry.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        fastRegistry.close();
+
+        assertEquals("black", database.getGame(1).blackUsername());
+    }
+
+    @Test
+    public void listGamesPrefersLiveCopies() throws DataAccessException {
+        database.createGame(new GameData(1, null, null, "game1", new ChessGame()));
+        database.createGame(new GameData(2, null, null, "game2", new ChessGame()));
+        registry.updateGame(new GameData(1, "white", null, "game1", new ChessGame()));
+
+        var games = registry.listGames();
+
+        assertEquals(2, games.size());
+        assertTrue(games.stream().anyMatch(game -> "white".equals(game.whiteUsername())));
+    }
+
+    @Test
+    public void deleteGamesDropsPendingUpdates() throws DataAccessException {
+        registry.createGame(new GameData(1, null, null, "game1", new ChessGame()));
+        registry.updateGame(new GameData(1, "white", null, "game1", new ChessGame()));
+
+        registry.deleteGames();
+        registry.flush(1);
+
+        assertEquals(0, database.writes);
+        assertNull(registry.getGame(1));
+    }
+
+    @Test
+    public void unownedGamesAreWrittenThrough() throws DataAccessException {
+        LiveGameRegistry nonOwner = new LiveGameRegistry(database, Duration.ofHours(1), gameID -> false);
+        List<GameData> heard = new ArrayList<>();
+        nonOwner.onUnownedUpdate(heard::add);
+        nonOwner.createGame(new GameData(1, null, null, "game1", new ChessGame()));
+
+        GameData seated = new GameData(1, "white", null, "game1", new ChessGame());
+        nonOwner.updateGame(seated);
+
+        assertEquals(1, database.writes);
+        assertEquals(0, nonOwner.pendingCount());
+        assertEquals(List.of(seated), heard);
+        assertTrue(nonOwner.cachedGameIDs().isEmpty());
+        assertEquals("white", nonOwner.getGame(1).whiteUsername());
+        assertEquals("white", nonOwner.getGame(1).whiteUsername());
+        assertEquals(2, database.reads);
+        nonOwner.close();
+    }
+
+    @Test
+    public void releaseFlushesAndForgets() throws DataAccessException {
+        registry.createGame(new GameData(1, null, null, "game1", new ChessGame()));
+        registry.updateGame(new GameData(1, "white", null, "game1", new ChessGame()));
+
+        GameData released = registry.release(1);
+
+        assertEquals("white", released.whiteUsername());
+        assertEquals(1, database.writes);
+        assertEquals(0, registry.pendingCount());
+        assertEquals(Set.of(), registry.cachedGameIDs());
+        assertNull(registry.release(2));
+    }
+
+    private static class CountingGameDAO extends MemoryGameDAO {
+        private int reads;
+        private int writes;
+
+        @Override
+        public GameData getGame(int gameID) throws DataAccessException {
+            reads++;
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public void updateGame(GameData updatedGameData) throws DataAccessException {
+            writes++;
+            super.updateGame(updatedGameData);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package server;
+
+import dataaccess.DataAccessException;
+import dataaccess.DataAccessExecutor;
+import dataaccess.MemoryAuthDAO;
+import dataaccess.MemoryGameDAO;
+import dataaccess.MemoryUserDAO;
+import model.GameData;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import server.events.InProcessGameEventBus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many concurrent requests that each wait a second on the database, run on
+ * platform threads and then on virtual threads. Only runs when asked for:
+ * {@code mvn test -pl server -am -Dtest=SlowRequestLoadTests -DloadTest=true},
+ * optionally with {@code -DloadTest.requests=N} (10,000 by default).
+ * <p>
+ * Every {@code GET /game} sleeps for a second in the game DAO, standing in for
+ * a slow query on a database with connections to spare. DAO calls run on the
+ * executor the server would give a real database: a pool of a hundred threads
+ * on platform threads, and a thread per call on virtual threads. Clients
+ * connect from many loopback addresses, each with its own auth token, so the
+ * rate limits let every request through; this needs the whole of 127.0.0.0/8
+ * on loopback, as Linux has.
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+public class SlowRequestLoadTests {
+    private static final int REQUESTS = Integer.getInteger("loadTest.requests", 10_000);
+    private static final Duration QUERY_TIME = Duration.ofSeconds(1);
+    private static final int MAX_CONNECTIONS = 100;
+    // Within the per-token and per-address bursts, so none of the requests is turned away
+    private static final int REQUESTS_PER_TOKEN = 50;
+    private static final int REQUESTS_PER_ADDRESS = 100;
+
+    /**
+     * The baseline, which is only reported: a hundred threads get through a
+     * hundred requests a second, and those still waiting when Jetty's idle
+     * timeout closes their connections are lost
+     */
+    @Test
+    public void platformThreads() throws Exception {
+        run(false);
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        assertEquals(Map.of(200, REQUESTS), run(true));
+    }
+
+    /**
+     * @return how many requests got each status, with -1 for those that got no response
+     */
+    private Map<Integer, Integer> run(boolean virtualThreads) throws Exception {
+        Assumptions.assumeTrue(canBind("127.1.1.1"), "loopback does not cover 127.0.0.0/8");
+        Server server = new Server(new InProcessGameEventBus(), virtualThreads);
+        // The executor run(int) gives the database, with as many connections as it allows by default
+        int port = server.run(0, new MemoryAuthDAO(), new SlowGameDAO(), new MemoryUserDAO(),
+                DataAccessExecutor.forDatabase(virtualThreads, MAX_CONNECTIONS));
+        try {
+            int users = Math.max(1, REQUESTS / REQUESTS_PER_TOKEN);
+            int addresses = Math.max(1, REQUESTS / REQUESTS_PER_ADDRESS);
+            List<String> tokens = new ArrayList<>();
+            for (int user = 0; user < users; user++) {
+                String body = String.format("{\"username\":\"user%d\",\"password\":\"password\",\"email\":\"e\"}", user);
+                String response = request(address(0, user), port, "POST /user", null, body);
+                int start = response.indexOf("\"authToken\":\"") + "\"authToken\":\"".length();
+                tokens.add(response.substring(start, response.indexOf('"', start)));
+            }
+
+            Map<Integer, AtomicInteger> statuses = new ConcurrentSkipListMap<>();
+            long start = System.nanoTime();
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < REQUESTS; i++) {
+                    String address = address(1, i % addresses);
+                    String token = tokens.get(i % users);
+                    clients.submit(() -> {
+                        int status;
+                        try {
+                            status = Integer.parseInt(request(address, port, "GET /game", token, null).substring(9, 12));
+                        } catch (IOException | RuntimeException e) {
+                            status = -1;
+                        }
+                        statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    });
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("virtualThreads=%s requests=%d elapsed=%.1fs statuses=%s%n", virtualThreads, REQUESTS,
+                    elapsed, statuses);
+            return toCounts(statuses);
+        } finally {
+            server.stop();
+        }
+    }
+
+    // A distinct loopback address for each client, with signing up and the load itself in different ranges
+    private static String address(int use, int client) {
+        return String.format("127.%d.%d.%d", 1 + use, 1 + client / 200, 1 + client % 200);
+    }
+
+    private static boolean canBind(String address) {
+        try (Socket socket = new Socket()) {
+            socket.bind(new InetSocketAddress(address, 0));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Map<Integer, Integer> toCounts(Map<Integer, AtomicInteger> statuses) {
+        Map<Integer, Integer> counts = new ConcurrentSkipListMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.get()));
+        return counts;
+    }
+
+    private static String request(String from, int port, String requestLine, String authToken, String body)
+            throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.bind(new InetSocketAddress(from, 0));
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            socket.setSoTimeout((int) Duration.ofMinutes(5).toMillis());
+            byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+            StringBuilder head = new StringBuilder(requestLine).append(" HTTP/1.1\r\nHost: localhost\r\n")
+                    .append("Connection: close\r\n");
+            if (authToken != null) {
+                head.append("Authorization: ").append(authToken).append("\r\n");
+            }
+            head.append("Content-Length: ").append(content.length).append("\r\n\r\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+            out.write(content);
+            out.flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Games in memory, where listing them takes as long as a slow query
+     */
+    private static class SlowGameDAO extends MemoryGameDAO {
+        @Override
+        public synchronized void createGame(GameData gameData) throws DataAccessException {
+            super.createGame(gameData);
+        }
+
+        @Override
+        public synchronized GameData getGame(int gameID) throws DataAccessException {
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public synchronized void updateGame(GameData updatedGameData) throws DataAccessException {
+            super.updateGame(updatedGameData);
+        }
+
+        @Override
+        public Collection<GameData> listGames() throws DataAccessException {
+            try {
+                Thread.sleep(QUERY_TIME.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessException("Interrupted while listing games");
+            }
+            synchronized (this) {
+                return new ArrayList<>(super.listGames());
+            }
+        }
+
+        @Override
+        public synchronized void deleteGames() throws DataAccessException {
+            super.deleteGames();
+        }
+    }
+}
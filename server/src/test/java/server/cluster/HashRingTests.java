@@ -0,0 +1,81 @@
+package server.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTests {
+    private static final int GAMES = 10_000;
+
+    @Test
+    public void memberOrderDoesNotMatter() {
+        HashRing ring = new HashRing(List.of("a:1", "b:2", "c:3"));
+        HashRing reordered = new HashRing(List.of("c:3", "a:1", "b:2"));
+
+        for (int gameID = 1; gameID <= GAMES; gameID++) {
+            assertEquals(ring.owner(gameID), reordered.owner(gameID));
+        }
+    }
+
+    @Test
+    public void gamesAreSpreadEvenly() {
+        HashRing ring = new HashRing(List.of("a:1", "b:2", "c:3", "d:4"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int gameID = 1; gameID <= GAMES; gameID++) {
+            counts.merge(ring.owner(gameID), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > GAMES / 4 * 0.75 && count < GAMES / 4 * 1.25, counts.toString());
+        }
+    }
+
+    @Test
+    public void joiningMovesGamesOnlyToTheNewServer() {
+        HashRing before = new HashRing(List.of("a:1", "b:2", "c:3"));
+        HashRing after = new HashRing(List.of("a:1", "b:2", "c:3", "d:4"));
+
+        int moved = 0;
+        for (int gameID = 1; gameID <= GAMES; gameID++) {
+            if (!before.owner(gameID).equals(after.owner(gameID))) {
+                assertEquals("d:4", after.owner(gameID));
+                moved++;
+            }
+        }
+        assertTrue(moved > GAMES / 4 * 0.75 && moved < GAMES / 4 * 1.25, "moved " + moved);
+    }
+
+    @Test
+    public void leavingMovesOnlyTheLeaversGames() {
+        HashRing before = new HashRing(List.of("a:1", "b:2", "c:3"));
+        HashRing after = new HashRing(List.of("a:1", "c:3"));
+
+        for (int gameID = 1; gameID <= GAMES; gameID++) {
+            if (!before.owner(gameID).equals("b:2")) {
+                assertEquals(before.owner(gameID), after.owner(gameID));
+            }
+        }
+    }
+
+    @Test
+    public void ownershipAlwaysIncludesSelf() {
+        GameOwnership ownership = new GameOwnership("a:1", Set.of());
+
+        assertEquals(Set.of("a:1"), ownership.nodes());
+        assertTrue(ownership.ownsGame(42));
+
+        ownership.setNodes(Set.of("b:2"));
+        assertEquals(Set.of("a:1", "b:2"), ownership.nodes());
+    }
+
+    @Test
+    public void emptyRingOwnsNothing() {
+        assertThrows(IllegalStateException.class, () -> new HashRing(List.of()).owner(1));
+    }
+}
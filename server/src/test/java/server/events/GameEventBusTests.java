@@ -0,0 +1,434 @@
+package server.events;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.messages.Error;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventBusTests {
+    private static final String SECRET = "shared secret";
+
+    private final List<GameEventBus> buses = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        buses.forEach(GameEventBus::close);
+    }
+
+    @Test
+    public void inProcessBusSkipsThePublisher() {
+        InProcessGameEventBus first = new InProcessGameEventBus();
+        InProcessGameEventBus second = first.join();
+        InProcessGameEventBus third = second.join();
+        List<GameEvent> firstHeard = new ArrayList<>();
+        List<GameEvent> secondHeard = new ArrayList<>();
+        List<GameEvent> thirdHeard = new ArrayList<>();
+        first.subscribe(firstHeard::add);
+        second.subscribe(secondHeard::add);
+        third.subscribe(thirdHeard::add);
+
+        GameEvent event = notice(1, "white joined");
+        first.publish(event);
+
+        assertTrue(firstHeard.isEmpty());
+        assertEquals(List.of(event), secondHeard);
+        assertEquals(List.of(event), thirdHeard);
+    }
+
+    @Test
+    public void closedInProcessBusHearsNothing() {
+        InProcessGameEventBus first = new InProcessGameEventBus();
+        InProcessGameEventBus second = first.join();
+        List<GameEvent> heard = new ArrayList<>();
+        second.subscribe(heard::add);
+
+        second.close();
+        first.publish(notice(1, "white joined"));
+
+        assertTrue(heard.isEmpty());
+    }
+
+    @Test
+    public void eventsSurviveEncoding() {
+        GameEvent.Move move = move();
+        GameEvent.Move decodedMove = (GameEvent.Move) TcpGameEventBus.decode(TcpGameEventBus.encode(move));
+        assertMoveEquals(move, decodedMove);
+
+        GameEvent.Notice notice = notice(3, "black has left the game");
+        GameEvent.Notice decodedNotice = (GameEvent.Notice) TcpGameEventBus.decode(TcpGameEventBus.encode(notice));
+        assertEquals(3, decodedNotice.gameID());
+        assertEquals("token", decodedNotice.excludedAuthToken());
+        assertEquals(notice.notification().getMessage(), decodedNotice.notification().getMessage());
+
+        GameEvent.GameOver gameOver = new GameEvent.GameOver(4, new Notification("white has resigned"));
+        GameEvent.GameOver decodedGameOver = (GameEvent.GameOver) TcpGameEventBus.decode(TcpGameEventBus.encode(gameOver));
+        assertEquals("white has resigned", decodedGameOver.notification().getMessage());
+
+        MakeMove command = new MakeMove("token", 5, new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        GameEvent.Forwarded forwarded = new GameEvent.Forwarded(5, "localhost:1", 7, 1, command);
+        GameEvent.Forwarded decodedForwarded = (GameEvent.Forwarded) TcpGameEventBus.decode(TcpGameEventBus.encode(forwarded));
+        assertEquals("localhost:1", decodedForwarded.origin());
+        assertEquals(7, decodedForwarded.forwardID());
+        assertEquals(1, decodedForwarded.hops());
+        assertEquals(command.getMove(), ((MakeMove) decodedForwarded.command()).getMove());
+
+        GameEvent.Reply reply = new GameEvent.Reply(5, "token", new Error("Error: not your turn"));
+        GameEvent.Reply decodedReply = (GameEvent.Reply) TcpGameEventBus.decode(TcpGameEventBus.encode(reply));
+        assertEquals("Error: not your turn", ((Error) decodedReply.message()).getErrorMessage());
+
+        GameEvent.Handoff handoff = new GameEvent.Handoff(6, game(6));
+        assertEquals(handoff.game(), ((GameEvent.Handoff) TcpGameEventBus.decode(TcpGameEventBus.encode(handoff))).game());
+
+        GameEvent.Current current = new GameEvent.Current(6, 8, game(6));
+        GameEvent.Current decodedCurrent = (GameEvent.Current) TcpGameEventBus.decode(TcpGameEventBus.encode(current));
+        assertEquals(8, decodedCurrent.forwardID());
+        assertEquals(current.game(), decodedCurrent.game());
+
+        Connect connect = new Connect("token", 6, true, 3, 12);
+        Connect decodedConnect = (Connect) ((GameEvent.Forwarded) TcpGameEventBus.decode(TcpGameEventBus.encode(
+                new GameEvent.Forwarded(6, "localhost:1", 9, 0, connect)))).command();
+        assertTrue(decodedConnect.wantsMoveDeltas());
+        assertEquals(Integer.valueOf(12), decodedConnect.getResumeAfter());
+
+        GameEvent.Players players = new GameEvent.Players(7, "white", null);
+        assertEquals(players, TcpGameEventBus.decode(TcpGameEventBus.encode(players)));
+    }
+
+    @Test
+    public void inProcessBusSendsToOneServer() {
+        InProcessGameEventBus first = new InProcessGameEventBus();
+        InProcessGameEventBus second = first.join();
+        InProcessGameEventBus third = first.join();
+        List<GameEvent> secondHeard = new ArrayList<>();
+        List<GameEvent> thirdHeard = new ArrayList<>();
+        second.subscribe(secondHeard::add);
+        third.subscribe(thirdHeard::add);
+
+        first.send(third.nodeID(), notice(1, "for third only"));
+
+        assertTrue(secondHeard.isEmpty());
+        assertEquals(1, thirdHeard.size());
+    }
+
+    @Test
+    public void inProcessBusReportsMembership() {
+        InProcessGameEventBus first = new InProcessGameEventBus();
+        List<Set<String>> changes = new ArrayList<>();
+        first.onMembershipChange(changes::add);
+
+        InProcessGameEventBus second = first.join();
+        second.close();
+
+        assertEquals(List.of(Set.of(first.nodeID(), second.nodeID()), Set.of(first.nodeID())), changes);
+        assertNotEquals(first.nodeID(), second.nodeID());
+    }
+
+    @Test
+    public void tcpServersDiscoverAndForgetEachOther() throws Exception {
+        TcpGameEventBus first = tcpBus();
+        BlockingQueue<Set<String>> firstChanges = new LinkedBlockingQueue<>();
+        first.onMembershipChange(firstChanges::add);
+
+        TcpGameEventBus second = new TcpGameEventBus("localhost", 0, SECRET,
+                List.of(new InetSocketAddress("localhost", first.getPort())));
+        buses.add(second);
+        assertEquals(Set.of(first.nodeID(), second.nodeID()), second.nodes());
+        assertEquals(Set.of(first.nodeID(), second.nodeID()), firstChanges.poll(5, TimeUnit.SECONDS));
+
+        BlockingQueue<GameEvent> secondHeard = new LinkedBlockingQueue<>();
+        second.subscribe(secondHeard::add);
+        first.send(second.nodeID(), notice(9, "hello second"));
+        assertEquals(9, secondHeard.poll(5, TimeUnit.SECONDS).gameID());
+
+        second.close();
+        assertEquals(Set.of(first.nodeID()), firstChanges.poll(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(first.nodeID()), first.nodes());
+    }
+
+    @Test
+    public void tcpServersFindEachOtherThroughOne() throws Exception {
+        TcpGameEventBus first = tcpBus();
+        List<InetSocketAddress> firstOnly = List.of(new InetSocketAddress("localhost", first.getPort()));
+        TcpGameEventBus second = new TcpGameEventBus("localhost", 0, SECRET, firstOnly);
+        buses.add(second);
+        TcpGameEventBus third = new TcpGameEventBus("localhost", 0, SECRET, firstOnly);
+        buses.add(third);
+
+        Set<String> all = Set.of(first.nodeID(), second.nodeID(), third.nodeID());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(second.nodes().equals(all) && third.nodes().equals(all))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(all, second.nodes());
+        assertEquals(all, third.nodes());
+    }
+
+    @Test
+    public void tcpBusesDeliverToEveryOtherServer() throws Exception {
+        TcpGameEventBus first = tcpBus();
+        TcpGameEventBus second = tcpBus();
+        TcpGameEventBus third = tcpBus();
+        for (TcpGameEventBus from : List.of(first, second, third)) {
+            for (TcpGameEventBus to : List.of(first, second, third)) {
+                if (from != to) {
+                    from.addPeer(new InetSocketAddress("localhost", to.getPort()));
+                }
+            }
+        }
+        BlockingQueue<GameEvent> firstHeard = new LinkedBlockingQueue<>();
+        BlockingQueue<GameEvent> secondHeard = new LinkedBlockingQueue<>();
+        BlockingQueue<GameEvent> thirdHeard = new LinkedBlockingQueue<>();
+        first.subscribe(firstHeard::add);
+        second.subscribe(secondHeard::add);
+        third.subscribe(thirdHeard::add);
+
+        GameEvent.Move move = move();
+        first.publish(move);
+        third.publish(notice(2, "black joined as black"));
+
+        // Events from different servers may arrive in either order
+        List<GameEvent> secondEvents = new ArrayList<>();
+        secondEvents.add(secondHeard.poll(5, TimeUnit.SECONDS));
+        secondEvents.add(secondHeard.poll(5, TimeUnit.SECONDS));
+        secondEvents.sort(Comparator.comparing(GameEvent::gameID));
+        assertMoveEquals(move, (GameEvent.Move) secondEvents.get(0));
+        assertEquals(2, secondEvents.get(1).gameID());
+        assertMoveEquals(move, (GameEvent.Move) thirdHeard.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, firstHeard.poll(5, TimeUnit.SECONDS).gameID());
+        assertNull(firstHeard.poll(100, TimeUnit.MILLISECONDS));
+        assertNull(thirdHeard.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void tcpBusKeepsOrderForOnePublisher() throws Exception {
+        TcpGameEventBus first = tcpBus();
+        TcpGameEventBus second = tcpBus();
+        first.addPeer(new InetSocketAddress("localhost", second.getPort()));
+        BlockingQueue<GameEvent> heard = new LinkedBlockingQueue<>();
+        second.subscribe(heard::add);
+
+        for (int i = 0; i < 500; i++) {
+            first.publish(notice(i, "event " + i));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            GameEvent event = heard.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "event " + i);
+            assertEquals(i, event.gameID());
+        }
+    }
+
+    @Test
+    public void tcpBusIgnoresPeersWithoutTheSecret() throws Exception {
+        TcpGameEventBus first = tcpBus();
+        BlockingQueue<GameEvent> heard = new LinkedBlockingQueue<>();
+        first.subscribe(heard::add);
+        TcpGameEventBus stranger = new TcpGameEventBus("localhost", 0, "wrong secret",
+                List.of(new InetSocketAddress("localhost", first.getPort())));
+        buses.add(stranger);
+
+        stranger.publish(notice(1, "let me in"));
+        try (Socket socket = new Socket("localhost", first.getPort());
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            out.write(TcpGameEventBus.encode(notice(2, "no hello at all")) + "\n");
+            out.flush();
+
+            assertNull(heard.poll(500, TimeUnit.MILLISECONDS));
+            assertEquals(Set.of(first.nodeID()), first.nodes());
+        }
+    }
+
+    @Test
+    public void tcpBusClosesConnectionsWithAnOverlongHello() throws Exception {
+        TcpGameEventBus bus = tcpBus();
+        try (Socket socket = new Socket("localhost", bus.getPort())) {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            while (in.read() != '\n') {
+                // The challenge, which goes unanswered
+            }
+            OutputStream out = socket.getOutputStream();
+            byte[] chunk = new byte[8192];
+            Arrays.fill(chunk, (byte) 'x');
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    out.write(chunk);
+                }
+            } catch (IOException e) {
+                // Reset by the bus, which stopped reading once the hello ran past its limit
+            }
+            assertClosed(in);
+        }
+    }
+
+    @Test
+    public void tcpBusTurnsAwayConnectionsOnceTooManyAreWaitingToAuthenticate() throws Exception {
+        TcpGameEventBus bus = tcpBus();
+        List<Socket> waiting = new ArrayList<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                Socket socket = new Socket("localhost", bus.getPort());
+                socket.setSoTimeout(5000);
+                assertEquals('{', socket.getInputStream().read(), "challenge " + i);
+                waiting.add(socket);
+            }
+            try (Socket socket = new Socket("localhost", bus.getPort())) {
+                socket.setSoTimeout(5000);
+                assertClosed(socket.getInputStream());
+            }
+        } finally {
+            waiting.forEach(socket -> assertDoesNotThrow(socket::close));
+        }
+    }
+
+    @Test
+    public void tcpBusListensOnlyOnItsHostsAddress() throws Exception {
+        TcpGameEventBus bus = tcpBus();
+        InetAddress elsewhere = Collections.list(NetworkInterface.getNetworkInterfaces()).stream()
+                .flatMap(NetworkInterface::inetAddresses)
+                .filter(address -> !address.isLoopbackAddress())
+                .findFirst().orElse(null);
+        Assumptions.assumeTrue(elsewhere != null, "no address besides loopback to try");
+
+        assertThrows(IOException.class, () -> new Socket(elsewhere, bus.getPort()).close());
+    }
+
+    @Test
+    public void tcpBusDropsSilentPeersUntilTheyAreHeardFromAgain() throws Exception {
+        TcpGameEventBus first = new TcpGameEventBus("localhost", 0, SECRET, Duration.ofMillis(500));
+        buses.add(first);
+        BlockingQueue<Set<String>> changes = new LinkedBlockingQueue<>();
+        first.onMembershipChange(changes::add);
+        // A peer that says hello and then hangs, at an address nothing listens on
+        String hung = "localhost:1";
+
+        try (Socket socket = new Socket("localhost", first.getPort())) {
+            sayHello(socket, hung);
+            assertEquals(Set.of(first.nodeID(), hung), changes.poll(5, TimeUnit.SECONDS));
+            assertEquals(Set.of(first.nodeID()), changes.poll(5, TimeUnit.SECONDS));
+        }
+        try (Socket socket = new Socket("localhost", first.getPort())) {
+            sayHello(socket, hung);
+            assertEquals(Set.of(first.nodeID(), hung), changes.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void tcpBusKeepsQuietPeersThroughHeartbeats() throws Exception {
+        TcpGameEventBus first = new TcpGameEventBus("localhost", 0, SECRET, Duration.ofMillis(300));
+        TcpGameEventBus second = new TcpGameEventBus("localhost", 0, SECRET, Duration.ofMillis(300));
+        buses.add(first);
+        buses.add(second);
+        first.addPeer(new InetSocketAddress("localhost", second.getPort()));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (second.nodes().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Thread.sleep(1500);
+
+        assertEquals(Set.of(first.nodeID(), second.nodeID()), first.nodes());
+        assertEquals(Set.of(first.nodeID(), second.nodeID()), second.nodes());
+    }
+
+    private static void assertClosed(InputStream in) {
+        try {
+            assertEquals(-1, in.read());
+        } catch (IOException e) {
+            // Reset rather than closed cleanly, which is closed all the same
+            assertFalse(e instanceof SocketTimeoutException, e.getMessage());
+        }
+    }
+
+    // Answers the bus's challenge as a server that knows the secret
+    private static void sayHello(Socket socket, String nodeID) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String challenge = JsonParser.parseString(in.readLine()).getAsJsonObject().get("challenge").getAsString();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        JsonObject hello = new JsonObject();
+        hello.addProperty("type", "Hello");
+        hello.addProperty("node", nodeID);
+        hello.addProperty("proof", HexFormat.of().formatHex(mac.doFinal(challenge.getBytes(StandardCharsets.UTF_8))));
+        hello.add("nodes", new JsonArray());
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(hello + "\n");
+        out.flush();
+    }
+
+    private TcpGameEventBus tcpBus() throws Exception {
+        TcpGameEventBus bus = new TcpGameEventBus(0, SECRET);
+        buses.add(bus);
+        return bus;
+    }
+
+    private static GameEvent.Notice notice(int gameID, String message) {
+        return new GameEvent.Notice(gameID, "token", new Notification(message));
+    }
+
+    private static GameEvent.Move move() {
+        ChessGame game = new ChessGame();
+        ChessMove e4 = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        assertDoesNotThrow(() -> game.makeMove(e4));
+        GameData gameData = new GameData(1, "white", "black", "game", game);
+        return new GameEvent.Move(1, gameData, "token", new MoveMade(game.getMoveCount(), "white", e4, game.evaluate()),
+                new Notification("white moved their pawn from e2 to e4"), null);
+    }
+
+    private static GameData game(int gameID) {
+        return new GameData(gameID, "white", "black", "game", new ChessGame());
+    }
+
+    private static void assertMoveEquals(GameEvent.Move expected, GameEvent.Move actual) {
+        assertNotNull(actual);
+        assertEquals(expected.gameID(), actual.gameID());
+        assertEquals(expected.game(), actual.game());
+        assertEquals(expected.game().game().getMoveCount(), actual.game().game().getMoveCount());
+        assertEquals(expected.moverAuthToken(), actual.moverAuthToken());
+        assertEquals(expected.delta().getSequence(), actual.delta().getSequence());
+        assertEquals(expected.delta().getMove(), actual.delta().getMove());
+        assertEquals(expected.moveNotification().getMessage(), actual.moveNotification().getMessage());
+        assertNull(actual.statusNotification());
+    }
+}
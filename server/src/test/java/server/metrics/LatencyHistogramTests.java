@@ -0,0 +1,70 @@
+package server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+    @Test
+    public void bucketsCoverEveryDurationInOrder() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket <= LatencyHistogram.bucketOf(LatencyHistogram.MAX_NANOS); bucket++) {
+            long highest = LatencyHistogram.highestInBucket(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousHighest + 1), "first duration in bucket " + bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest), "last duration in bucket " + bucket);
+            previousHighest = highest;
+        }
+        assertEquals(LatencyHistogram.MAX_NANOS, previousHighest);
+    }
+
+    @Test
+    public void quantilesAreWithinTheBucketWidth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(50_005_000_000L, histogram.totalNanos());
+        assertWithin(5_000_000, histogram.valueAtQuantile(0.5));
+        assertWithin(9_900_000, histogram.valueAtQuantile(0.99));
+        assertWithin(9_990_000, histogram.valueAtQuantile(0.999));
+        assertWithin(10_000_000, histogram.valueAtQuantile(1));
+    }
+
+    @Test
+    public void extremesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(-1, histogram.valueAtQuantile(0.5));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.valueAtQuantile(0.5));
+        assertEquals(LatencyHistogram.MAX_NANOS, histogram.valueAtQuantile(1));
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i);
+        }
+        long threadID = Thread.currentThread().threadId();
+
+        long before = threads.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < 1_000_000; i++) {
+            histogram.record(i * 31L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadID) - before;
+
+        assertTrue(allocated < 1024, allocated + " bytes allocated");
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.04, actual + " is not within 4% above " + expected);
+    }
+}
@@ -0,0 +1,69 @@
+package server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTests {
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    @Test
+    public void countersAndGaugesAreWrittenWithTheirLabels() {
+        Counter served = metrics.counter("requests_total", "Requests served", "route", "GET /game");
+        AtomicLong sent = new AtomicLong(7);
+        metrics.counter("frames_total", "Frames", sent::get, "outcome", "sent");
+        metrics.gauge("connections", "Open connections", () -> 3);
+
+        served.increment();
+        served.add(2);
+        sent.incrementAndGet();
+
+        assertEquals("""
+                # HELP requests_total Requests served
+                # TYPE requests_total counter
+                requests_total{route="GET /game"} 3
+                # HELP frames_total Frames
+                # TYPE frames_total counter
+                frames_total{outcome="sent"} 8
+                # HELP connections Open connections
+                # TYPE connections gauge
+                connections 3
+                """, metrics.scrape());
+    }
+
+    @Test
+    public void latenciesAreWrittenAsSummariesInSeconds() {
+        LatencyHistogram latency = metrics.latency("call_seconds", "Calls", "call", "makeMove");
+        latency.record(40);
+        latency.record(60);
+
+        String scraped = metrics.scrape();
+
+        assertTrue(scraped.contains("# TYPE call_seconds summary\n"), scraped);
+        assertTrue(scraped.contains("call_seconds{call=\"makeMove\",quantile=\"0.5\"} 4.0E-8\n"), scraped);
+        assertTrue(scraped.contains("call_seconds{call=\"makeMove\",quantile=\"0.999\"} 6.0E-8\n"), scraped);
+        assertTrue(scraped.contains("call_seconds_sum{call=\"makeMove\"} 1.0E-7\n"), scraped);
+        assertTrue(scraped.contains("call_seconds_count{call=\"makeMove\"} 2\n"), scraped);
+    }
+
+    @Test
+    public void registeringAgainReturnsTheSameMetric() {
+        Counter first = metrics.counter("requests_total", "Requests served", "route", "a");
+        Counter second = metrics.counter("requests_total", "Requests served", "route", "a");
+        Counter other = metrics.counter("requests_total", "Requests served", "route", "b");
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertThrows(IllegalArgumentException.class, () -> metrics.latency("requests_total", "Requests served"));
+        assertThrows(IllegalArgumentException.class, () -> metrics.counter("requests_total", "Requests served", "route"));
+    }
+
+    @Test
+    public void labelValuesAreEscaped() {
+        metrics.gauge("value", "A value", () -> 1.5, "name", "say \"hi\"\\\n");
+
+        assertTrue(metrics.scrape().contains("value{name=\"say \\\"hi\\\"\\\\\\n\"} 1.5\n"));
+    }
+}
@@ -0,0 +1,123 @@
+package server.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketLimiterTests {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    public void burstThenRefill() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 3, false, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a"));
+        }
+        assertEquals(SECOND / 2, limiter.tryAcquire("a"));
+
+        now.addAndGet(SECOND / 2);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+
+        now.addAndGet(10 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a"), "a full bucket holds only the burst");
+        }
+        assertTrue(limiter.tryAcquire("a") > 0);
+    }
+
+    @Test
+    public void rejectionsGetOneNoticePerToken() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, false, now::get);
+        assertEquals(0, limiter.tryAcquire("a"));
+
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertTrue(limiter.claimRejectionNotice("a"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("a") > 0);
+            assertFalse(limiter.claimRejectionNotice("a"));
+        }
+
+        now.addAndGet(SECOND);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertTrue(limiter.claimRejectionNotice("a"));
+        assertFalse(limiter.claimRejectionNotice("b"), "a key never seen was never rejected");
+    }
+
+    @Test
+    public void keysHaveTheirOwnBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, false, now::get);
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertEquals(0, limiter.tryAcquire("b"));
+
+        assertEquals(new TokenBucketLimiter.Counts(1, 1), limiter.counts().get("a"));
+        assertEquals(new TokenBucketLimiter.Counts(1, 0), limiter.counts().get("b"));
+        assertEquals(new TokenBucketLimiter.Counts(2, 1), limiter.totals());
+    }
+
+    @Test
+    public void secretKeysAreNotShown() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, true, now::get);
+
+        limiter.tryAcquire("6f1c2c0e-secret-token");
+
+        assertEquals(1, limiter.counts().size());
+        assertFalse(limiter.counts().keySet().iterator().next().contains("secret"));
+    }
+
+    @Test
+    public void concurrentRequestsNeverExceedTheBurst() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1000, false, now::get);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire("a") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, allowed.get());
+        assertEquals(new TokenBucketLimiter.Counts(1000, 3000), limiter.totals());
+    }
+
+    @Test
+    public void fullBucketsAreDroppedWhenThereAreTooManyKeys() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, false, now::get);
+        for (int i = 0; i < TokenBucketLimiter.MAX_KEYS; i++) {
+            limiter.tryAcquire("key-" + i);
+        }
+
+        now.addAndGet(2 * SECOND);
+        limiter.tryAcquire("new");
+
+        assertEquals(1, limiter.counts().size());
+        assertEquals(TokenBucketLimiter.MAX_KEYS + 1, limiter.totals().allowed());
+    }
+}
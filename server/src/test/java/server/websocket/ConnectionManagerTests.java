@@ -0,0 +1,225 @@
+package server.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import websocket.messages.Notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionManagerTests {
+    private final List<Runnable> observerTasks = new ArrayList<>();
+    private ConnectionManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        manager = new ConnectionManager(Connection.DEFAULT_QUEUE_CAPACITY, SlowConsumerPolicy.DROP_OLDEST,
+                observerTasks::add);
+    }
+
+    @Test
+    public void closingSessionForgetsConnection() {
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        ConnectionTests.FakeSession black = new ConnectionTests.FakeSession();
+        manager.add(1, "white", white.session);
+        manager.add(1, "black", black.session);
+
+        manager.remove(white.session);
+
+        assertNull(manager.getConnection("white"));
+        assertNotNull(manager.getConnection("black"));
+        assertEquals(Map.of(1, 1), manager.connectionCounts());
+        assertEquals(1, manager.size());
+
+        manager.remove(black.session);
+
+        assertEquals(Map.of(), manager.connectionCounts());
+        assertEquals(0, manager.size());
+    }
+
+    @Test
+    public void leavingForgetsSessionToo() {
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        manager.add(1, "white", white.session);
+
+        manager.remove(1, "white");
+
+        assertNull(manager.getConnection("white"));
+        assertEquals(0, manager.size());
+        assertTrue(manager.connectionCounts().isEmpty());
+    }
+
+    @Test
+    public void countsConnectionsPerGame() {
+        manager.add(1, "a", new ConnectionTests.FakeSession().session);
+        manager.add(1, "b", new ConnectionTests.FakeSession().session);
+        manager.add(2, "c", new ConnectionTests.FakeSession().session);
+
+        assertEquals(Map.of(1, 2, 2, 1), manager.connectionCounts());
+        assertEquals(3, manager.size());
+    }
+
+    @Test
+    public void broadcastToUnknownGameDoesNothing() {
+        assertDoesNotThrow(() -> manager.broadcastAll(42, new Notification("nobody is here")));
+    }
+
+    @Test
+    public void broadcastDropsClosedSessions() {
+        ConnectionTests.FakeSession open = new ConnectionTests.FakeSession();
+        ConnectionTests.FakeSession closed = new ConnectionTests.FakeSession();
+        manager.add(1, "open", open.session);
+        manager.add(1, "closed", closed.session);
+        closed.open = false;
+
+        manager.broadcastAll(1, new Notification("white moved"));
+
+        assertEquals(1, open.written.size());
+        assertTrue(closed.written.isEmpty());
+        assertNull(manager.getConnection("closed"));
+        assertEquals(Map.of(1, 1), manager.connectionCounts());
+    }
+
+    @Test
+    public void reconnectingReplacesOldConnection() {
+        ConnectionTests.FakeSession first = new ConnectionTests.FakeSession();
+        ConnectionTests.FakeSession second = new ConnectionTests.FakeSession();
+        manager.add(1, "white", first.session);
+        Connection replacement = manager.add(1, "white", second.session);
+
+        assertSame(replacement, manager.getConnection("white"));
+        assertEquals(Map.of(1, 1), manager.connectionCounts());
+
+        // The old socket closing late must not take the new connection with it
+        manager.remove(first.session);
+        assertSame(replacement, manager.getConnection("white"));
+        assertEquals(1, manager.size());
+    }
+
+    @Test
+    public void observersAreSentFromTheirOwnPool() {
+        ConnectionTests.FakeSession player = new ConnectionTests.FakeSession();
+        ConnectionTests.FakeSession observer = new ConnectionTests.FakeSession();
+        manager.add(1, "player", player.session);
+        manager.add(1, "observer", observer.session, true, connection -> { });
+
+        manager.broadcastAll(1, new Notification("white moved"));
+
+        assertEquals(1, player.written.size());
+        assertTrue(observer.written.isEmpty());
+
+        runObserverTasks();
+
+        assertEquals(List.of(player.written.get(0)), observer.written);
+    }
+
+    @Test
+    public void waitingStateUpdatesCoalesce() {
+        ConnectionTests.FakeSession observer = new ConnectionTests.FakeSession();
+        manager.add(1, "observer", observer.session, true, connection -> { });
+
+        for (int i = 1; i <= 3; i++) {
+            Notification state = new Notification("state " + i);
+            manager.broadcastStateToObservers(1, state, List.of(state));
+        }
+        assertEquals(Map.of(1, 1), manager.pendingObserverDeliveries());
+        runObserverTasks();
+        assertEquals(Map.of(), manager.pendingObserverDeliveries());
+
+        assertEquals(1, observer.written.size());
+        assertTrue(observer.written.get(0).contains("state 3"));
+    }
+
+    @Test
+    public void slowObserverSkipsToLatestState() {
+        ConnectionTests.FakeSession observer = new ConnectionTests.FakeSession();
+        manager.add(1, "observer", observer.session, true, connection -> { });
+
+        for (int i = 1; i <= 4; i++) {
+            Notification state = new Notification("state " + i);
+            Notification check = new Notification("check " + i);
+            manager.broadcastStateToObservers(1, state, List.of(state, check));
+            runObserverTasks();
+        }
+        observer.completeWrites();
+
+        // The first update's opening frame was already being written; only the latest is sent after it
+        assertEquals(3, observer.written.size());
+        assertTrue(observer.written.get(0).contains("state 1"));
+        assertTrue(observer.written.get(1).contains("state 4"));
+        assertTrue(observer.written.get(2).contains("check 4"));
+        assertEquals(5, manager.getCounters().getCoalesced());
+    }
+
+    @Test
+    public void eventsAreNotCoalesced() {
+        ConnectionTests.FakeSession observer = new ConnectionTests.FakeSession();
+        manager.add(1, "observer", observer.session, true, connection -> { });
+
+        manager.broadcastAll(1, new Notification("black joined"));
+        Notification state = new Notification("state");
+        manager.broadcastStateToObservers(1, state, List.of(state));
+        manager.broadcastAll(1, new Notification("white left"));
+        runObserverTasks();
+        observer.completeWrites();
+
+        assertEquals(3, observer.written.size());
+        assertTrue(observer.written.get(2).contains("white left"));
+    }
+
+    @Test
+    public void slowPlayerIsDisconnectedRatherThanSkippingMessages() {
+        ConnectionTests.FakeSession player = new ConnectionTests.FakeSession();
+        manager.add(1, "player", player.session);
+
+        // One message is in flight and the rest fill the queue; the next cannot be kept
+        for (int i = 0; i <= Connection.DEFAULT_QUEUE_CAPACITY + 1; i++) {
+            manager.broadcastAll(1, new Notification("move " + i));
+        }
+        player.completeWrites();
+
+        assertFalse(player.open);
+        assertFalse(player.written.isEmpty());
+        for (int i = 0; i < player.written.size(); i++) {
+            assertTrue(player.written.get(i).contains("\"move " + i + "\""));
+        }
+    }
+
+    @Test
+    public void slowObserverDropsOldestMessages() {
+        ConnectionTests.FakeSession observer = new ConnectionTests.FakeSession();
+        manager.add(1, "observer", observer.session, true, connection -> { });
+
+        for (int i = 0; i <= Connection.DEFAULT_QUEUE_CAPACITY + 1; i++) {
+            manager.broadcastAll(1, new Notification("move " + i));
+        }
+        runObserverTasks();
+        observer.completeWrites();
+
+        assertTrue(observer.open);
+        assertEquals(Connection.DEFAULT_QUEUE_CAPACITY + 1, observer.written.size());
+        assertTrue(observer.written.get(observer.written.size() - 1)
+                .contains("move " + (Connection.DEFAULT_QUEUE_CAPACITY + 1)));
+    }
+
+    @Test
+    public void playersAreNotSentObserverState() {
+        ConnectionTests.FakeSession player = new ConnectionTests.FakeSession();
+        manager.add(1, "player", player.session);
+
+        Notification state = new Notification("state");
+        manager.broadcastStateToObservers(1, state, List.of(state));
+        runObserverTasks();
+
+        assertTrue(player.written.isEmpty());
+    }
+
+    private void runObserverTasks() {
+        while (!observerTasks.isEmpty()) {
+            observerTasks.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package server.websocket;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import serialization.Codecs;
+import websocket.BinaryCodec;
+import websocket.messages.Notification;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionTests {
+    private FakeSession client;
+    private OutboundCounters counters;
+
+    @BeforeEach
+    public void setUp() {
+        client = new FakeSession();
+        counters = new OutboundCounters();
+    }
+
+    @Test
+    public void sendDoesNotWaitForTheClient() {
+        Connection connection = new Connection(client.session, "token", 8, SlowConsumerPolicy.DROP_OLDEST, counters);
+
+        connection.send("one");
+        connection.send("two");
+        connection.send("three");
+
+        assertEquals(List.of("one"), client.written);
+        assertEquals(2, connection.queueDepth());
+
+        client.completeWrites();
+
+        assertEquals(List.of("one", "two", "three"), client.written);
+        assertEquals(3, counters.getQueued());
+        assertEquals(3, counters.getSent());
+        assertEquals(0, counters.getDropped());
+    }
+
+    @Test
+    public void dropOldestKeepsLatestMessages() {
+        Connection connection = new Connection(client.session, "token", 2, SlowConsumerPolicy.DROP_OLDEST, counters);
+
+        for (int i = 1; i <= 5; i++) {
+            connection.send("state " + i);
+        }
+        client.completeWrites();
+
+        assertEquals(List.of("state 1", "state 4", "state 5"), client.written);
+        assertEquals(2, counters.getDropped());
+        assertTrue(client.open);
+    }
+
+    @Test
+    public void disconnectPolicyClosesSlowClient() {
+        Connection connection = new Connection(client.session, "token", 2, SlowConsumerPolicy.DISCONNECT, counters);
+
+        for (int i = 1; i <= 4; i++) {
+            connection.send("state " + i);
+        }
+
+        assertFalse(client.open);
+        assertEquals(0, connection.queueDepth());
+        assertEquals(3, counters.getDropped());
+    }
+
+    @Test
+    public void slowClientDoesNotHoldUpOthers() {
+        FakeSession fastClient = new FakeSession();
+        ConnectionManager manager = new ConnectionManager(4, SlowConsumerPolicy.DROP_OLDEST);
+        manager.add(1, "slow", client.session);
+        manager.add(1, "fast", fastClient.session);
+
+        for (int i = 1; i <= 10; i++) {
+            manager.broadcastAll(1, new Notification("move " + i));
+            fastClient.completeWrites();
+        }
+
+        assertEquals(10, fastClient.written.size());
+        assertEquals(List.of(Codecs.GSON.toJson(new Notification("move 1"))), client.written);
+        assertEquals(5, manager.getCounters().getDropped());
+    }
+
+    @Test
+    public void closedSessionDropsMessages() {
+        Connection connection = new Connection(client.session, "token", 2, SlowConsumerPolicy.DROP_OLDEST, counters);
+        client.open = false;
+
+        connection.send("lost");
+
+        assertTrue(client.written.isEmpty());
+        assertEquals(1, counters.getDropped());
+    }
+
+    @Test
+    public void eachConnectionGetsItsOwnWireFormat() {
+        FakeSession binaryClient = new FakeSession();
+        ConnectionManager manager = new ConnectionManager();
+        manager.add(1, "text", client.session);
+        manager.add(1, "binary", binaryClient.session).setBinary(true);
+
+        Notification notification = new Notification("white moved their pawn from e2 to e4");
+        manager.broadcastAll(1, notification);
+
+        assertEquals(List.of(Codecs.GSON.toJson(notification)), client.written);
+        assertTrue(client.writtenBytes.isEmpty());
+        assertTrue(binaryClient.written.isEmpty());
+        assertEquals(1, binaryClient.writtenBytes.size());
+        Notification decoded = (Notification) BinaryCodec.decodeMessage(binaryClient.writtenBytes.get(0));
+        assertEquals(notification.getMessage(), decoded.getMessage());
+    }
+
+    /**
+     * Records writes and only completes them when told to, like a client on a slow network
+     */
+    static class FakeSession {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        private final List<ByteBuffer> writtenBytes = Collections.synchronizedList(new ArrayList<>());
+        private final List<WriteCallback> inFlight = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean open = true;
+        final Session session;
+
+        FakeSession() {
+            RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("sendString") && args.length == 2) {
+                            written.add((String) args[0]);
+                            inFlight.add((WriteCallback) args[1]);
+                        } else if (method.getName().equals("sendString")) {
+                            written.add((String) args[0]);
+                        } else if (method.getName().equals("sendBytes") && args.length == 2) {
+                            writtenBytes.add((ByteBuffer) args[0]);
+                            inFlight.add((WriteCallback) args[1]);
+                        }
+                        return null;
+                    });
+            session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "isOpen" -> open;
+                        case "getRemote" -> remote;
+                        case "close" -> {
+                            open = false;
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> null;
+                    });
+        }
+
+        void completeWrites() {
+            WriteCallback callback;
+            while ((callback = nextInFlight()) != null) {
+                callback.writeSuccess();
+            }
+        }
+
+        private WriteCallback nextInFlight() {
+            synchronized (inFlight) {
+                return inFlight.isEmpty() ? null : inFlight.remove(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package server.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameMailboxesTests {
+    private GameMailboxes mailboxes;
+
+    @BeforeEach
+    public void setUp() {
+        mailboxes = new GameMailboxes();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        mailboxes.close();
+    }
+
+    @Test
+    public void tasksForOneGameRunInOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            mailboxes.submit(1, () -> {
+                order.add(task);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    public void tasksForOneGameNeverOverlap() throws InterruptedException {
+        int[] counter = {0};
+        CountDownLatch done = new CountDownLatch(4 * 500);
+        List<Thread> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            submitters.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    mailboxes.submit(7, () -> {
+                        int read = counter[0];
+                        Thread.onSpinWait();
+                        counter[0] = read + 1;
+                        done.countDown();
+                    });
+                }
+            }));
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        mailboxes.submit(7, () -> { });
+        mailboxes.close();
+        assertEquals(2000, counter[0]);
+    }
+
+    @Test
+    public void blockedGameDoesNotHoldUpOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherGameRan = new CountDownLatch(1);
+        mailboxes.submit(1, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        mailboxes.submit(1, () -> { });
+        mailboxes.submit(2, otherGameRan::countDown);
+
+        assertTrue(otherGameRan.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mailboxes.queueDepth(1));
+        assertEquals(0, mailboxes.queueDepth(3));
+
+        release.countDown();
+        mailboxes.close();
+        assertEquals(0, mailboxes.queueDepth(1));
+    }
+
+    @Test
+    public void drainedMailboxesAreDropped() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(100 * 10);
+        for (int round = 0; round < 10; round++) {
+            for (int gameID = 0; gameID < 100; gameID++) {
+                mailboxes.submit(gameID, done::countDown);
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!mailboxes.queueDepths().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Map.of(), mailboxes.queueDepths());
+    }
+
+    @Test
+    public void rejectedMailboxIsDroppedAndStartedAfresh() throws InterruptedException {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        // Turns away the first mailbox it is given, as an executor that is full or shut down would
+        ExecutorService executor = new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+                if (reject.getAndSet(false)) {
+                    throw new RejectedExecutionException("expected by test");
+                }
+                threads.execute(command);
+            }
+
+            @Override
+            public void shutdown() {
+                threads.shutdown();
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return threads.shutdownNow();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return threads.isShutdown();
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return threads.isTerminated();
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                return threads.awaitTermination(timeout, unit);
+            }
+        };
+        try (GameMailboxes rejecting = new GameMailboxes(executor)) {
+            assertThrows(RejectedExecutionException.class, () -> rejecting.submit(1, () -> { }));
+            assertEquals(Map.of(), rejecting.queueDepths());
+
+            CountDownLatch ran = new CountDownLatch(1);
+            rejecting.submit(1, ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void closedMailboxesTurnAwayTasks() {
+        mailboxes.close();
+
+        assertThrows(RejectedExecutionException.class, () -> mailboxes.submit(1, () -> { }));
+        assertEquals(0, mailboxes.queueDepth(1));
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheMailbox() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        mailboxes.submit(1, () -> {
+            throw new IllegalStateException("expected by test");
+        });
+        mailboxes.submit(1, ran::countDown);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,111 @@
+package server.websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayBuffersTests {
+    private final ReplayBuffers replays = new ReplayBuffers();
+
+    @Test
+    public void missedMessagesAreReplayedInTheClientsForm() {
+        int epoch = connect(1);
+        Notification joined = notice("black joined as black");
+        replays.record(1, joined, joined, "black");
+        MoveMade delta = delta(1);
+        LoadGame full = game(1);
+        Notification moved = notice("white moved their pawn from e2 to e4");
+        replays.record(1, delta, full, null);
+        replays.record(1, null, moved, "white");
+
+        assertReplayed(List.of(delta), replays.missed(1, epoch, 1, true, "white"));
+        assertReplayed(List.of(full, moved), replays.missed(1, epoch, 1, false, "black"));
+        assertReplayed(List.of(full), replays.missed(1, epoch, 1, false, "white"));
+        assertReplayed(List.of(joined, full, moved), replays.missed(1, epoch, 0, false, "observer"));
+        assertReplayed(List.of(), replays.missed(1, epoch, 3, false, "black"));
+        assertEquals(3, moved.getReplaySequence());
+        assertEquals(epoch, full.getReplayEpoch());
+    }
+
+    @Test
+    public void onlyTheLatestGameIsReplayed() {
+        int epoch = connect(1);
+        LoadGame first = game(1);
+        Notification firstMove = notice("first move");
+        LoadGame second = game(2);
+        Notification secondMove = notice("second move");
+        replays.record(1, delta(1), first, null);
+        replays.record(1, null, firstMove, null);
+        replays.record(1, delta(2), second, null);
+        replays.record(1, null, secondMove, null);
+
+        assertReplayed(List.of(firstMove, second, secondMove), replays.missed(1, epoch, 0, false, "observer"));
+    }
+
+    @Test
+    public void clientsThatCannotResumeGetNothing() {
+        int epoch = connect(1);
+        for (int i = 0; i < ReplayBuffers.CAPACITY + 1; i++) {
+            Notification notification = notice("message " + i);
+            replays.record(1, notification, notification, null);
+        }
+
+        assertNull(replays.missed(1, epoch, 0, true, "white"));
+        assertEquals(ReplayBuffers.CAPACITY, replays.missed(1, epoch, 1, true, "white").size());
+        assertNull(replays.missed(1, epoch + 1, 1, true, "white"));
+        assertNull(replays.missed(1, epoch, ReplayBuffers.CAPACITY + 2, true, "white"));
+        assertNull(replays.missed(2, epoch, 0, true, "white"));
+    }
+
+    @Test
+    public void snapshotsCarryTheLatestSequence() {
+        Notification notification = notice("white joined as white");
+        replays.record(1, notification, notification, null);
+        LoadGame loadGame = new LoadGame(new GameData(1, "white", null, "game", new ChessGame()));
+
+        replays.stamp(1, loadGame);
+
+        assertEquals(1, loadGame.getReplaySequence());
+        assertNotNull(loadGame.getReplayEpoch());
+        assertEquals(List.of(), replays.missed(1, loadGame.getReplayEpoch(), 1, true, "white"));
+    }
+
+    private int connect(int gameID) {
+        LoadGame loadGame = new LoadGame(new GameData(gameID, "white", "black", "game", new ChessGame()));
+        replays.stamp(gameID, loadGame);
+        return loadGame.getReplayEpoch();
+    }
+
+    private static Notification notice(String message) {
+        return new Notification(message);
+    }
+
+    private static MoveMade delta(int sequence) {
+        ChessMove move = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        return new MoveMade(sequence, "white", move, false, false, false);
+    }
+
+    private static LoadGame game(int moveCount) {
+        ChessGame game = new ChessGame();
+        game.setMoveCount(moveCount);
+        return new LoadGame(new GameData(1, "white", "black", "game", game));
+    }
+
+    private static void assertReplayed(List<? extends ServerMessage> expected, List<ServerMessage> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size(), actual.toString());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i), "message " + i);
+        }
+    }
+}
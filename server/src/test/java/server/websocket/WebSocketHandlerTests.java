@@ -0,0 +1,199 @@
+package server.websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dataaccess.LiveGameRegistry;
+import dataaccess.MemoryAuthDAO;
+import dataaccess.MemoryGameDAO;
+import model.GameData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.cluster.GameOwnership;
+import server.events.InProcessGameEventBus;
+import server.metrics.MetricsRegistry;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.commands.UserGameCommand;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebSocketHandlerTests {
+    private static final Duration FORWARD_TIMEOUT = Duration.ofMillis(200);
+    private static final ChessMove E4 = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+
+    private final MemoryAuthDAO authDAO = new MemoryAuthDAO();
+    private final MemoryGameDAO games = new MemoryGameDAO();
+    private WebSocketHandler handler;
+    private String whiteToken;
+    private String blackToken;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        LiveGameRegistry gameDAO = new LiveGameRegistry(games);
+        gameDAO.createGame(new GameData(1, "white", "black", "game", new ChessGame()));
+        whiteToken = authDAO.createAuth("white").authToken();
+        blackToken = authDAO.createAuth("black").authToken();
+        handler = new WebSocketHandler(authDAO, gameDAO);
+    }
+
+    @Test
+    public void resumingOnANewSessionReplacesOneStillOpen() throws InterruptedException {
+        ConnectionTests.FakeSession dropped = new ConnectionTests.FakeSession();
+        handler.dispatch(new Connect(whiteToken, 1, false), dropped.session, false);
+        JsonObject loadGame = awaitMessage(dropped, 0);
+        int epoch = loadGame.get("replayEpoch").getAsInt();
+        int seen = loadGame.get("replaySequence").getAsInt();
+
+        // The network drops without the old socket being seen to close, and black joins meanwhile
+        ConnectionTests.FakeSession black = new ConnectionTests.FakeSession();
+        handler.dispatch(new Connect(blackToken, 1, false), black.session, false);
+        awaitMessage(black, 0);
+        assertEquals("black joined as black", awaitMessage(dropped, 1).get("message").getAsString());
+        assertTrue(dropped.open);
+
+        ConnectionTests.FakeSession resumed = new ConnectionTests.FakeSession();
+        handler.dispatch(new Connect(whiteToken, 1, false, epoch, seen), resumed.session, false);
+        assertEquals("black joined as black", awaitMessage(resumed, 0).get("message").getAsString());
+
+        handler.dispatch(new Connect(blackToken, 1, false), black.session, false);
+        assertEquals("black joined as black", awaitMessage(resumed, 1).get("message").getAsString());
+        assertEquals(2, dropped.written.size());
+    }
+
+    @Test
+    public void unacknowledgedForwardedCommandIsReportedToTheClient() throws Exception {
+        InProcessGameEventBus bus = new InProcessGameEventBus();
+        // Owns some games but never answers, as if the bus lost the command or the owner hung
+        InProcessGameEventBus silent = bus.join();
+        GameOwnership ownership = new GameOwnership(bus.nodeID(), bus.nodes());
+        int gameID = gameOwnedBy(ownership, silent.nodeID());
+        WebSocketHandler origin = clusterHandler(bus, ownership, gameID);
+
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        origin.dispatch(new Connect(whiteToken, gameID, false), white.session, false);
+        awaitMessage(white, 0);
+        origin.dispatch(new MakeMove(whiteToken, gameID, E4), white.session, false);
+
+        JsonObject error = awaitMessage(white, 1);
+        assertEquals("ERROR", error.get("serverMessageType").getAsString());
+        assertTrue(error.get("errorMessage").getAsString().contains("did not respond"));
+    }
+
+    @Test
+    public void acknowledgedForwardedCommandIsNotReported() throws Exception {
+        InProcessGameEventBus bus = new InProcessGameEventBus();
+        InProcessGameEventBus ownerBus = bus.join();
+        GameOwnership ownership = new GameOwnership(bus.nodeID(), bus.nodes());
+        int gameID = gameOwnedBy(ownership, ownerBus.nodeID());
+        WebSocketHandler origin = clusterHandler(bus, ownership, gameID);
+        new WebSocketHandler(authDAO, new LiveGameRegistry(games), ownerBus,
+                new GameOwnership(ownerBus.nodeID(), ownerBus.nodes()), new MetricsRegistry(), FORWARD_TIMEOUT);
+
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        origin.dispatch(new Connect(whiteToken, gameID, false), white.session, false);
+        awaitMessage(white, 0);
+        origin.dispatch(new MakeMove(whiteToken, gameID, E4), white.session, false);
+
+        assertEquals("LOAD_GAME", awaitMessage(white, 1).get("serverMessageType").getAsString());
+        Thread.sleep(FORWARD_TIMEOUT.toMillis() * 3);
+        white.completeWrites();
+        assertEquals(2, white.written.size());
+    }
+
+    @Test
+    public void gameIsLoadedFromItsOwnerNotTheLaggingDatabase() throws Exception {
+        InProcessGameEventBus bus = new InProcessGameEventBus();
+        InProcessGameEventBus ownerBus = bus.join();
+        GameOwnership ownership = new GameOwnership(bus.nodeID(), bus.nodes());
+        int gameID = gameOwnedBy(ownership, ownerBus.nodeID());
+        WebSocketHandler origin = clusterHandler(bus, ownership, gameID);
+        GameOwnership ownersView = new GameOwnership(ownerBus.nodeID(), ownerBus.nodes());
+        // Never writes moves through to the database during the test
+        new WebSocketHandler(authDAO, new LiveGameRegistry(games, Duration.ofHours(1), ownersView::ownsGame),
+                ownerBus, ownersView, new MetricsRegistry(), FORWARD_TIMEOUT);
+
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        origin.dispatch(new Connect(whiteToken, gameID, false), white.session, false);
+        awaitMessage(white, 0);
+        origin.dispatch(new MakeMove(whiteToken, gameID, E4), white.session, false);
+        awaitMessage(white, 1);
+        assertEquals(0, games.getGame(gameID).game().getMoveCount());
+
+        ConnectionTests.FakeSession black = new ConnectionTests.FakeSession();
+        origin.dispatch(new Connect(blackToken, gameID, false), black.session, false);
+        assertEquals(1, loadedMoveCount(awaitMessage(black, 0)));
+        origin.dispatch(new UserGameCommand(UserGameCommand.CommandType.RESYNC, blackToken, gameID), black.session,
+                false);
+        assertEquals(1, loadedMoveCount(awaitMessage(black, 1)));
+    }
+
+    @Test
+    public void floodOverTheLimitIsToldToSlowDownOnlyOnce() {
+        // Not connected, so every error is written straight to the session
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        for (int i = 0; i < 200; i++) {
+            handler.dispatch(new UserGameCommand(UserGameCommand.CommandType.RESYNC, whiteToken, null), white.session,
+                    false);
+        }
+
+        long slowDowns;
+        synchronized (white.written) {
+            slowDowns = white.written.stream().filter(message -> message.contains("Too many messages")).count();
+        }
+        // One for each token that refilled while the flood was being sent, which is quick
+        assertTrue(slowDowns >= 1 && slowDowns <= 3, slowDowns + " errors");
+    }
+
+    @Test
+    public void commandsArrivingWhileStoppingAreDropped() {
+        handler.close();
+
+        ConnectionTests.FakeSession white = new ConnectionTests.FakeSession();
+        assertDoesNotThrow(() -> handler.dispatch(new Connect(whiteToken, 1, false), white.session, false));
+        assertEquals(0, handler.queueDepth(1));
+    }
+
+    private static int loadedMoveCount(JsonObject loadGame) {
+        assertEquals("LOAD_GAME", loadGame.get("serverMessageType").getAsString());
+        return loadGame.getAsJsonObject("game").getAsJsonObject("game").get("moveCount").getAsInt();
+    }
+
+    private WebSocketHandler clusterHandler(InProcessGameEventBus bus, GameOwnership ownership, int gameID)
+            throws Exception {
+        games.createGame(new GameData(gameID, "white", "black", "game", new ChessGame()));
+        return new WebSocketHandler(authDAO, new LiveGameRegistry(games, ownership::ownsGame), bus, ownership,
+                new MetricsRegistry(), FORWARD_TIMEOUT);
+    }
+
+    private static int gameOwnedBy(GameOwnership ownership, String nodeID) {
+        int gameID = 2;
+        while (!ownership.ownerOf(gameID).equals(nodeID)) {
+            gameID++;
+        }
+        return gameID;
+    }
+
+    private static JsonObject awaitMessage(ConnectionTests.FakeSession session, int index)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            session.completeWrites();
+            List<String> written;
+            synchronized (session.written) {
+                written = new ArrayList<>(session.written);
+            }
+            if (written.size() > index) {
+                return JsonParser.parseString(written.get(index)).getAsJsonObject();
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("timed out waiting for message " + index);
+    }
+}
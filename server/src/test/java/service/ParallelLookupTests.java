@@ -0,0 +1,97 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.*;
+import exceptions.BadRequestException;
+import exceptions.UnauthorizedException;
+import model.AuthData;
+import model.GameData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import requests.JoinGameRequest;
+
+import java.util.Collection;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelLookupTests {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    // Each lookup waits here for the other, so they only finish if they are in progress together
+    private final CyclicBarrier bothLookups = new CyclicBarrier(2);
+    private volatile boolean meeting = true;
+    private final MemoryAuthDAO authDAO = new MemoryAuthDAO() {
+        @Override
+        public AuthData getAuth(String authToken) throws DataAccessException, UnauthorizedException {
+            meet();
+            return super.getAuth(authToken);
+        }
+    };
+    private final MemoryGameDAO gameDAO = new MemoryGameDAO() {
+        @Override
+        public GameData getGame(int gameID) throws DataAccessException {
+            meet();
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public Collection<GameData> listGames() throws DataAccessException {
+            meet();
+            return super.listGames();
+        }
+    };
+    private final GameService gameService = new GameService(new ExecutorAuthDAO(authDAO, executor),
+            new ExecutorGameDAO(gameDAO, executor));
+
+    @AfterEach
+    public void cleanUp() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void joinGameLooksUpAuthAndGameTogether() throws Exception {
+        String authToken = authDAO.createAuth("username").authToken();
+        gameDAO.createGame(new GameData(1, null, null, "game", new ChessGame()));
+
+        gameService.joinGame(new JoinGameRequest("WHITE", 1), authToken);
+
+        meeting = false;
+        assertEquals("username", gameDAO.getGame(1).whiteUsername());
+    }
+
+    @Test
+    public void listGamesLooksUpAuthAndGamesTogether() throws Exception {
+        String authToken = authDAO.createAuth("username").authToken();
+        gameDAO.createGame(new GameData(1, null, null, "game", new ChessGame()));
+
+        assertEquals(1, gameService.listGames(authToken).size());
+    }
+
+    @Test
+    public void authIsCheckedBeforeTheGame() {
+        assertThrows(UnauthorizedException.class,
+                () -> gameService.joinGame(new JoinGameRequest("WHITE", 1), "missing"));
+    }
+
+    @Test
+    public void missingGameIsABadRequest() throws Exception {
+        String authToken = authDAO.createAuth("username").authToken();
+
+        assertThrows(BadRequestException.class,
+                () -> gameService.joinGame(new JoinGameRequest("WHITE", 1), authToken));
+    }
+
+    private void meet() throws DataAccessException {
+        if (!meeting) {
+            return;
+        }
+        try {
+            bothLookups.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new DataAccessException("lookups did not overlap", e);
+        }
+    }
+}
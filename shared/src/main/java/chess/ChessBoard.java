@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -11,8 +10,36 @@ import java.util.Objects;
  */
 public class ChessBoard {
     private ChessPiece[][] squares = new ChessPiece[8][8];
+
+    // Bitboard view of squares, indexed by Bitboards square numbers. These are rebuilt from squares
+    // whenever squares has been replaced behind our back (e.g. by Gson), so they are never serialized.
+    private transient long[] pieceMasks = new long[12];
+    private transient long[] colorMasks = new long[2];
+    private transient long occupied;
+    private transient long zobristKey;
+    private transient int[] kingSquares = {-1, -1};
+    private transient ChessPiece[][] indexedSquares;
+
     public ChessBoard() {
-        
+        indexedSquares = squares;
+    }
+
+    /**
+     * Creates a board holding the same pieces as another board
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        other.ensureIndexed();
+        for (int row = 0; row < 8; row++) {
+            squares[row] = other.squares[row].clone();
+        }
+        pieceMasks = other.pieceMasks.clone();
+        colorMasks = other.colorMasks.clone();
+        occupied = other.occupied;
+        zobristKey = other.zobristKey;
+        kingSquares = other.kingSquares.clone();
+        indexedSquares = squares;
     }
 
     /**
@@ -22,7 +49,32 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        ensureIndexed();
+        place(position.getRow() - 1, position.getColumn() - 1, piece);
+    }
+
+    private void place(int row, int col, ChessPiece piece) {
+        long bit = Bitboards.bit(row * 8 + col);
+        ChessPiece previous = squares[row][col];
+        if (previous != null) {
+            pieceMasks[maskIndex(previous)] &= ~bit;
+            colorMasks[previous.getTeamColor().ordinal()] &= ~bit;
+            occupied &= ~bit;
+            zobristKey ^= Zobrist.key(previous, row * 8 + col);
+            if (previous.getPieceType() == ChessPiece.PieceType.KING) {
+                updateKingSquare(previous.getTeamColor());
+            }
+        }
+        squares[row][col] = piece;
+        if (piece != null) {
+            pieceMasks[maskIndex(piece)] |= bit;
+            colorMasks[piece.getTeamColor().ordinal()] |= bit;
+            occupied |= bit;
+            zobristKey ^= Zobrist.key(piece, row * 8 + col);
+            if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+                updateKingSquare(piece.getTeamColor());
+            }
+        }
     }
 
     /**
@@ -36,6 +88,76 @@ public class ChessBoard {
         return squares[position.getRow() - 1][position.getColumn() - 1];
     }
 
+    /**
+     * Moves a piece in place without checking that the move is legal, promoting
+     * it if the move calls for a promotion
+     *
+     * @param move the move to make
+     * @return the piece that was captured, or null if the end position was empty
+     */
+    public ChessPiece makeMove(ChessMove move) {
+        ChessPiece piece = getPiece(move.getStartPosition());
+        ChessPiece captured = getPiece(move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), move.getPromotionPiece());
+        }
+        addPiece(move.getEndPosition(), piece);
+        addPiece(move.getStartPosition(), null);
+        return captured;
+    }
+
+    /**
+     * Takes back a move made with {@link #makeMove(ChessMove)}, restoring the
+     * moved piece (demoting it back to a pawn if it was promoted) and the piece
+     * it captured
+     *
+     * @param move     the move to take back
+     * @param captured the piece returned when the move was made
+     */
+    public void unmakeMove(ChessMove move, ChessPiece captured) {
+        ChessPiece piece = getPiece(move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), ChessPiece.PieceType.PAWN);
+        }
+        addPiece(move.getStartPosition(), piece);
+        addPiece(move.getEndPosition(), captured);
+    }
+
+    /**
+     * Packed-move version of {@link #makeMove(ChessMove)} for the engine
+     *
+     * @param move a move packed by {@link Move}
+     * @return the piece that was captured, or null if the end square was empty
+     */
+    ChessPiece makeMove(int move) {
+        ensureIndexed();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece piece = getPiece(from);
+        ChessPiece captured = getPiece(to);
+        ChessPiece.PieceType promotion = Move.promotionPiece(move);
+        if (promotion != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), promotion);
+        }
+        place(to >>> 3, to & 7, piece);
+        place(from >>> 3, from & 7, null);
+        return captured;
+    }
+
+    /**
+     * Packed-move version of {@link #unmakeMove(ChessMove, ChessPiece)} for the engine
+     */
+    void unmakeMove(int move, ChessPiece captured) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece piece = getPiece(to);
+        if (Move.promotionPiece(move) != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), ChessPiece.PieceType.PAWN);
+        }
+        place(from >>> 3, from & 7, piece);
+        place(to >>> 3, to & 7, captured);
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
@@ -43,32 +165,124 @@ public class ChessBoard {
     public void resetBoard() {
         // Clear board
         squares = new ChessPiece[8][8];
+        clearMasks();
 
         // Add white pieces
-        addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(1, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1, 8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 3), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(1, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(1, 6), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
         for (int col = 1; col <= 8; col++) {
-            addPiece(new ChessPosition(2, col), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, col), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
         }
 
         // Add black pieces
-        addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8, 7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8, 6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(8, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(8, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8, 2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 7), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 6), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(8, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(8, 3), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
         for (int col = 1; col <= 8; col++) {
-            addPiece(new ChessPosition(7, col), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, col), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        }
+    }
+
+    /**
+     * @return bitboard of the squares holding the given piece
+     */
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        ensureIndexed();
+        return pieceMasks[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    /**
+     * @return bitboard of the squares holding any piece of the given team
+     */
+    long pieces(ChessGame.TeamColor color) {
+        ensureIndexed();
+        return colorMasks[color.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    long occupied() {
+        ensureIndexed();
+        return occupied;
+    }
+
+    /**
+     * Gets the Zobrist key of the pieces on this board. Equal boards always
+     * have equal keys, and the key is kept up to date as pieces are added,
+     * removed and moved.
+     *
+     * @return 64-bit hash of the piece placement
+     */
+    public long getZobristKey() {
+        ensureIndexed();
+        return zobristKey;
+    }
+
+    /**
+     * @return the square of the given team's king, or -1 if it has none. With
+     * several kings this is the lowest-numbered one.
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        ensureIndexed();
+        return kingSquares[color.ordinal()];
+    }
+
+    private void updateKingSquare(ChessGame.TeamColor color) {
+        long kings = pieceMasks[color.ordinal() * 6 + ChessPiece.PieceType.KING.ordinal()];
+        kingSquares[color.ordinal()] = kings == 0 ? -1 : Long.numberOfTrailingZeros(kings);
+    }
+
+    ChessPiece getPiece(int square) {
+        return squares[square >>> 3][square & 7];
+    }
+
+    private static int maskIndex(ChessPiece piece) {
+        return piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal();
+    }
+
+    private void clearMasks() {
+        Arrays.fill(pieceMasks, 0L);
+        Arrays.fill(colorMasks, 0L);
+        occupied = 0L;
+        zobristKey = 0L;
+        Arrays.fill(kingSquares, -1);
+        indexedSquares = squares;
+    }
+
+    private void ensureIndexed() {
+        if (indexedSquares == squares) {
+            return;
+        }
+        if (pieceMasks == null) {
+            pieceMasks = new long[12];
+            colorMasks = new long[2];
+            kingSquares = new int[2];
+        }
+        clearMasks();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = getPiece(square);
+            if (piece != null) {
+                long bit = Bitboards.bit(square);
+                pieceMasks[maskIndex(piece)] |= bit;
+                colorMasks[piece.getTeamColor().ordinal()] |= bit;
+                occupied |= bit;
+                zobristKey ^= Zobrist.key(piece, square);
+            }
         }
+        updateKingSquare(ChessGame.TeamColor.WHITE);
+        updateKingSquare(ChessGame.TeamColor.BLACK);
     }
 
     @Override
@@ -77,11 +291,11 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(squares, that.squares);
+        return getZobristKey() == that.getZobristKey() && Arrays.equals(pieceMasks, that.pieceMasks);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(getZobristKey());
     }
 }
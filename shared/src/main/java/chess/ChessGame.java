@@ -15,11 +15,38 @@ public class ChessGame {
     private TeamColor teamTurn = TeamColor.WHITE;
     private ChessBoard board = new ChessBoard();
     private boolean gameOver = false;
+    // Left out of the reflective JSON schema; Codecs writes it as an optional field of its own
+    private transient int moveCount = 0;
+    private transient GameStatus status;
+    private transient long statusKey;
 
     public ChessGame() {
         board.resetBoard();
     }
 
+    /**
+     * Creates a game in a given position without setting up a starting board first
+     *
+     * @param board    the board to play on
+     * @param teamTurn the team to move
+     */
+    public ChessGame(ChessBoard board, TeamColor teamTurn) {
+        this.board = board;
+        this.teamTurn = teamTurn;
+    }
+
+    /**
+     * Creates an independent copy of another game, with its own board
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        teamTurn = other.teamTurn;
+        board = other.board == null ? null : new ChessBoard(other.board);
+        gameOver = other.gameOver;
+        moveCount = other.moveCount;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -47,7 +74,18 @@ public class ChessGame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(teamTurn, board);
+        return Long.hashCode(getZobristKey());
+    }
+
+    /**
+     * Gets the Zobrist key of this game's position: the board's key with the
+     * side to move folded in, suitable for keying caches and repetition tables
+     *
+     * @return 64-bit hash of the position
+     */
+    public long getZobristKey() {
+        long key = board == null ? 0L : board.getZobristKey();
+        return teamTurn == TeamColor.BLACK ? key ^ Zobrist.BLACK_TO_MOVE : key;
     }
 
     /**
@@ -58,43 +96,24 @@ public class ChessGame {
         BLACK
     }
 
-    private void copyBoard(ChessBoard currentBoard, ChessBoard boardCopy) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPiece piece = currentBoard.getPiece(new ChessPosition(row, col));
-                if (piece != null) {
-                    ChessPiece copyPiece = new ChessPiece(piece.getTeamColor(), piece.getPieceType());
-                    boardCopy.addPiece(new ChessPosition(row, col), copyPiece);
-                }
-            }
-        }
-    }
-
-    private boolean isEnemyPiece(ChessPiece piece, TeamColor teamColor) {
-        return piece != null && piece.getTeamColor() != teamColor;
+    private boolean isInCheckWithBoard(TeamColor teamColor, ChessBoard board) {
+        int kingSquare = board.kingSquare(teamColor);
+        return kingSquare >= 0 && isSquareAttacked(board, kingSquare, opponent(teamColor));
     }
 
-    private boolean threatensKing(ChessPiece piece, ChessBoard board, ChessPosition from, ChessPosition kingPosition) {
-        for (ChessMove move : piece.pieceMoves(board, from)) {
-            if (move.getEndPosition().equals(kingPosition)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean isInCheckmateWithBoard(TeamColor teamColor, ChessBoard board) {
+        return isInCheckWithBoard(teamColor, board) && !hasValidMove(teamColor);
     }
 
-    private boolean isInCheckWithBoard(TeamColor teamColor, ChessBoard board) {
-        ChessPosition kingPosition = findKingPosition(board, teamColor);
-        if (kingPosition == null) {
-            return false;
+    private boolean hasValidMove(TeamColor teamColor) {
+        if (MoveGenerator.canAnalyze(board, teamColor)) {
+            return new MoveGenerator(board, teamColor).hasLegalMove();
         }
-
         for (int row = 1; row <= 8; row++) {
             for (int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
+                ChessPosition position = ChessPosition.of(row, col);
                 ChessPiece piece = board.getPiece(position);
-
-                if (isEnemyPiece(piece, teamColor) && threatensKing(piece, board, position, kingPosition)) {
+                if (piece != null && piece.getTeamColor() == teamColor && !validMoves(position).isEmpty()) {
                     return true;
                 }
             }
@@ -102,29 +121,6 @@ public class ChessGame {
         return false;
     }
 
-    private boolean isInCheckmateWithBoard(TeamColor teamColor, ChessBoard board) {
-        ChessPosition kingPosition = findKingPosition(board, teamColor);
-        if (kingPosition == null) {
-            return false;
-        }
-        if (!isInCheck(teamColor)) {
-            return false;
-        }
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(position);
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> legalMoves = validMoves(position);
-                    if (!legalMoves.isEmpty()) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
-    }
-
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -138,14 +134,20 @@ public class ChessGame {
             return null;
         }
         Collection<ChessMove> legalMoves = new ArrayList<>();
+        if (MoveGenerator.canAnalyze(board, piece.getTeamColor())) {
+            MoveList moves = MoveList.threadBuffer();
+            new MoveGenerator(board, piece.getTeamColor()).generateMoves(Bitboards.square(startPosition), moves);
+            moves.addTo(legalMoves);
+            return legalMoves;
+        }
+
+        // More than one king of this color: fall back to trying each move on the board
         Collection<ChessMove> possibleMoves = piece.pieceMoves(board, startPosition);
         for (ChessMove move : possibleMoves) {
-            ChessBoard tempBoard = new ChessBoard();
-            copyBoard(board, tempBoard);
-            ChessPiece testPiece = tempBoard.getPiece(move.getStartPosition());
-            tempBoard.addPiece(move.getEndPosition(), testPiece);
-            tempBoard.addPiece(move.getStartPosition(), null);
-            if (!isInCheckWithBoard(piece.getTeamColor(), tempBoard)) {
+            ChessPiece captured = board.makeMove(move);
+            boolean leavesKingInCheck = isInCheckWithBoard(piece.getTeamColor(), board);
+            board.unmakeMove(move, captured);
+            if (!leavesKingInCheck) {
                 legalMoves.add(move);
             }
         }
@@ -167,28 +169,70 @@ public class ChessGame {
         if (moves == null || !moves.contains(move)) {
             throw new InvalidMoveException("Invalid move");
         }
-        if (move.getPromotionPiece() != null) {
-            board.addPiece(move.getEndPosition(), new ChessPiece(teamTurn, move.getPromotionPiece()));
-            board.addPiece(move.getStartPosition(), null);
-        }
-        else {
-            board.addPiece(move.getEndPosition(), piece);
-            board.addPiece(move.getStartPosition(), null);
-        }
+        board.makeMove(move);
         teamTurn = (teamTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        moveCount++;
+        status = null;
     }
 
-    private ChessPosition findKingPosition(ChessBoard board, TeamColor teamColor) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(position);
-                if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && piece.getTeamColor() == teamColor) {
-                    return position;
+    /**
+     * Works out check, checkmate, stalemate and the number of legal moves for
+     * the team whose turn it is, generating that team's moves only once. The
+     * result is cached until the position changes.
+     *
+     * @return the status of the team to move
+     */
+    public GameStatus evaluate() {
+        long key = getZobristKey();
+        if (status != null && statusKey == key) {
+            return status;
+        }
+        boolean inCheck;
+        int legalMoveCount;
+        if (MoveGenerator.canAnalyze(board, teamTurn)) {
+            MoveGenerator generator = new MoveGenerator(board, teamTurn);
+            MoveList moves = MoveList.threadBuffer();
+            generator.generateMoves(moves);
+            inCheck = generator.inCheck();
+            legalMoveCount = moves.size();
+        } else {
+            inCheck = isInCheck(teamTurn);
+            legalMoveCount = 0;
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    ChessPosition position = ChessPosition.of(row, col);
+                    ChessPiece piece = board.getPiece(position);
+                    if (piece != null && piece.getTeamColor() == teamTurn) {
+                        legalMoveCount += validMoves(position).size();
+                    }
                 }
             }
         }
-        return null;
+        boolean noMoves = legalMoveCount == 0;
+        status = new GameStatus(teamTurn, inCheck, inCheck && noMoves, !inCheck && noMoves, legalMoveCount);
+        statusKey = key;
+        return status;
+    }
+
+    /**
+     * Determines if any piece of a team attacks a square, looking outward from
+     * the square rather than generating every enemy move
+     *
+     * @param board   the board to look at
+     * @param square  the square that may be attacked
+     * @param byColor the team that may be attacking it
+     * @return True if a piece of byColor attacks square
+     */
+    public static boolean isSquareAttacked(ChessBoard board, ChessPosition square, TeamColor byColor) {
+        return isSquareAttacked(board, Bitboards.square(square), byColor);
+    }
+
+    private static boolean isSquareAttacked(ChessBoard board, int square, TeamColor byColor) {
+        return MoveGenerator.attackersTo(board, square, byColor, board.occupied()) != 0;
+    }
+
+    private static TeamColor opponent(TeamColor teamColor) {
+        return teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
     }
 
     /**
@@ -219,23 +263,7 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(teamColor)) {
-            return false;
-        }
-        else {
-            Collection<ChessMove> allMoves = new ArrayList<>();
-            for (int row = 1; row <= 8; row++) {
-                for (int col = 1; col <= 8; col++) {
-                    ChessPosition position = new ChessPosition(row, col);
-                    ChessPiece piece = board.getPiece(position);
-                    if (piece != null && piece.getTeamColor() == teamColor) {
-                        Collection<ChessMove> moves = validMoves(position);
-                        allMoves.addAll(moves);
-                    }
-                }
-            }
-            return allMoves.isEmpty();
-        }
+        return !isInCheck(teamColor) && !hasValidMove(teamColor);
     }
 
     /**
@@ -256,6 +284,26 @@ public class ChessGame {
         return board;
     }
 
+    /**
+     * Gets how many moves have been made with {@link #makeMove}. It only ever
+     * goes up, so it doubles as a sequence number for the game's updates. It is
+     * not part of equality, which compares positions.
+     *
+     * @return the number of moves made in this game
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Sets the move count, for rebuilding a game that was saved elsewhere
+     *
+     * @param moveCount the number of moves already made in the game
+     */
+    public void setMoveCount(int moveCount) {
+        this.moveCount = moveCount;
+    }
+
     public void endGame() {
         gameOver = true;
     }
@@ -1,5 +1,12 @@
 package chess;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
@@ -10,8 +17,19 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPiece.GsonAdapter.class)
 public class ChessPiece {
 
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
 
@@ -20,6 +38,19 @@ public class ChessPiece {
         this.type = type;
     }
 
+    /**
+     * Gets the shared instance of a piece. Pieces are immutable, so the engine
+     * uses these instead of allocating a new piece each time.
+     *
+     * @return a piece equal to {@code new ChessPiece(pieceColor, type)}
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, PieceType type) {
+        if (pieceColor == null || type == null) {
+            return new ChessPiece(pieceColor, type);
+        }
+        return PIECES[pieceColor.ordinal()][type.ordinal()];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -68,234 +99,50 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        return switch (type) {
-            case KING -> calculateKingMoves(board, myPosition);
-            case QUEEN -> calculateQueenMoves(board, myPosition);
-            case BISHOP -> calculateBishopMoves(board, myPosition);
-            case KNIGHT -> calculateKnightMoves(board, myPosition);
-            case ROOK -> calculateRookMoves(board, myPosition);
-            case PAWN -> calculatePawnMoves(board, myPosition);
-        };
-    }
-
-    private boolean inBounds(int row, int col) {
-        return row > 0 && row <= 8  && col > 0 && col <= 8;
-    }
-
-    public void checkShortMove(ChessBoard board, ChessPosition currentPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        if (inBounds(row, col)) {
-            ChessPiece piece = board.getPiece(new ChessPosition(row, col));
-            if (piece == null) {
-                possibleMoves.add(new ChessMove(currentPosition, new ChessPosition(row, col), null));
-            }
-            else if (piece.getTeamColor() != this.getTeamColor()) {
-                possibleMoves.add(new ChessMove(currentPosition, new ChessPosition(row, col), null));
-            }
-        }
-    }
-
-    public void checkLongMove(ChessBoard board, ChessPosition currPos, int row, int col, int hor, int vert, Collection<ChessMove> possMoves) {
-        while (inBounds(row, col)) {
-            ChessPiece piece = board.getPiece(new ChessPosition(row, col));
-            if (piece == null) {
-                possMoves.add(new ChessMove(currPos, new ChessPosition(row, col), null));
-                row = row + hor;
-                col = col + vert;
-            }
-            else if (piece.getTeamColor() != this.getTeamColor()) {
-                possMoves.add(new ChessMove(currPos, new ChessPosition(row, col), null));
-                break;
-            }
-            else {
-                break;
-            }
-        }
-    }
-
-    private Collection<ChessMove> calculateKingMoves(ChessBoard board, ChessPosition myPosition) {
         ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-
-        checkShortMove(board, myPosition, row + 1, col, possibleMoves);
-        checkShortMove(board, myPosition, row + 1, col + 1, possibleMoves);
-        checkShortMove(board, myPosition, row, col + 1, possibleMoves);
-        checkShortMove(board, myPosition, row - 1, col + 1, possibleMoves);
-        checkShortMove(board, myPosition, row - 1, col, possibleMoves);
-        checkShortMove(board, myPosition, row - 1, col - 1, possibleMoves);
-        checkShortMove(board, myPosition, row, col - 1, possibleMoves);
-        checkShortMove(board, myPosition, row + 1, col - 1, possibleMoves);
-
+        int from = Bitboards.square(myPosition);
+        MoveList moves = MoveList.threadBuffer();
+        MoveGenerator.emitMoves(board, this, from, MoveGenerator.pseudoLegalTargets(board, this, from), moves);
+        moves.addTo(possibleMoves);
         return possibleMoves;
     }
 
-    private Collection<ChessMove> calculateKnightMoves(ChessBoard board, ChessPosition myPosition) {
-        ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-
-        checkShortMove(board, myPosition, row + 2, col + 1, possibleMoves);
-        checkShortMove(board, myPosition, row + 1, col + 2, possibleMoves);
-        checkShortMove(board, myPosition, row - 1, col + 2, possibleMoves);
-        checkShortMove(board, myPosition, row - 2, col + 1, possibleMoves);
-        checkShortMove(board, myPosition, row - 2, col - 1, possibleMoves);
-        checkShortMove(board, myPosition, row - 1, col - 2, possibleMoves);
-        checkShortMove(board, myPosition, row + 1, col - 2, possibleMoves);
-        checkShortMove(board, myPosition, row + 2, col - 1, possibleMoves);
-
-        return possibleMoves;
-    }
-
-    private Collection<ChessMove> calculateBishopMoves(ChessBoard board, ChessPosition myPosition) {
-        ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-        int horizontal = 1;
-        int vertical = 1;
-        int negHorizontal = -1;
-        int negVertical = -1;
-
-        checkLongMove(board, myPosition, row + 1, col + 1, horizontal, vertical, possibleMoves);
-        checkLongMove(board, myPosition, row + 1, col - 1, horizontal, negVertical, possibleMoves);
-        checkLongMove(board, myPosition, row - 1, col + 1, negHorizontal, vertical, possibleMoves);
-        checkLongMove(board, myPosition, row - 1, col - 1, negHorizontal, negVertical, possibleMoves);
-
-        return possibleMoves;
-    }
-
-    private Collection<ChessMove> calculateRookMoves(ChessBoard board, ChessPosition myPosition) {
-        ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-        int horizontal = 1;
-        int vertical = 1;
-        int negHorizontal = -1;
-        int negVertical = -1;
-
-        checkLongMove(board, myPosition, row + 1, col, horizontal, 0, possibleMoves);
-        checkLongMove(board, myPosition, row - 1, col, negHorizontal, 0, possibleMoves);
-        checkLongMove(board, myPosition, row, col + 1, 0, vertical, possibleMoves);
-        checkLongMove(board, myPosition, row, col - 1, 0, negVertical, possibleMoves);
-
-        return possibleMoves;
-    }
-
-    private Collection<ChessMove> calculateQueenMoves(ChessBoard board, ChessPosition myPosition) {
-        ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-        possibleMoves.addAll(calculateBishopMoves(board, myPosition));
-        possibleMoves.addAll(calculateRookMoves(board, myPosition));
-        return possibleMoves;
-    }
-
-    public void moveWhitePawn(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        defaultWhiteMove(board, myPosition, row, col, possibleMoves);
-        attackWhiteMove(board, myPosition, row + 1, col + 1, possibleMoves);
-        attackWhiteMove(board, myPosition, row + 1, col - 1, possibleMoves);
-        firstWhiteMove(board, myPosition, row, col, possibleMoves);
-    }
-
-    public void defaultWhiteMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        if (inBounds(row + 1, col)) {
-            ChessPiece piece = board.getPiece(new ChessPosition(row + 1, col));
-            if (piece == null && row == 7) {
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 1, col), PieceType.QUEEN));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 1, col), PieceType.ROOK));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 1, col), PieceType.KNIGHT));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 1, col), PieceType.BISHOP));
-            }
-            else if (piece == null) {
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 1, col), null));
-            }
-        }
-    }
-
-    public void attackWhiteMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        attackMove(board, myPosition, row, col, 8, possibleMoves);
-    }
-
-    public void firstWhiteMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        if (row == 2) {
-            if (inBounds(row + 2, col)) {
-                ChessPiece firstPiece = board.getPiece(new ChessPosition(row + 1, col));
-                ChessPiece secondPiece = board.getPiece(new ChessPosition(row + 2, col));
-                if (firstPiece == null && secondPiece == null) {
-                    possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row + 2, col), null));
-                }
-            }
-        }
-    }
-
-    public void moveBlackPawn(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        defaultBlackMove(board, myPosition, row, col, possibleMoves);
-        attackBlackMove(board, myPosition, row - 1, col + 1, possibleMoves);
-        attackBlackMove(board, myPosition, row - 1, col - 1, possibleMoves);
-        firstBlackMove(board, myPosition, row, col, possibleMoves);
-    }
-
-    public void defaultBlackMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        if (inBounds(row - 1, col)) {
-            ChessPiece piece = board.getPiece(new ChessPosition(row - 1, col));
-            if (piece == null && row == 2) {
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 1, col), PieceType.QUEEN));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 1, col), PieceType.ROOK));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 1, col), PieceType.KNIGHT));
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 1, col), PieceType.BISHOP));
-            }
-            else if (piece == null) {
-                possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 1, col), null));
+    /**
+     * Reads and writes the same {"pieceColor":..,"type":..} JSON as reflection
+     * would, but hands back the shared instances when reading
+     */
+    static class GsonAdapter extends TypeAdapter<ChessPiece> {
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.beginObject();
+            if (piece.pieceColor != null) {
+                out.name("pieceColor").value(piece.pieceColor.name());
             }
-        }
-    }
-
-    public void attackBlackMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        attackMove(board, myPosition, row, col, 1, possibleMoves);
-    }
-
-    public void firstBlackMove(ChessBoard board, ChessPosition myPosition, int row, int col, Collection<ChessMove> possibleMoves) {
-        if (row == 7) {
-            if (inBounds(row - 2, col)) {
-                ChessPiece firstPiece = board.getPiece(new ChessPosition(row - 1, col));
-                ChessPiece secondPiece = board.getPiece(new ChessPosition(row - 2, col));
-                if (firstPiece == null && secondPiece == null) {
-                    possibleMoves.add(new ChessMove(myPosition, new ChessPosition(row - 2, col), null));
-                }
+            if (piece.type != null) {
+                out.name("type").value(piece.type.name());
             }
+            out.endObject();
         }
-    }
 
-    public void attackMove(ChessBoard board, ChessPosition myPosition, int row, int col, int promotionRow, Collection<ChessMove> possibleMoves) {
-        if (inBounds(row, col)) {
-            ChessPiece piece = board.getPiece(new ChessPosition(row, col));
-            if (piece != null && piece.getTeamColor() != this.getTeamColor()) {
-                ChessPosition target = new ChessPosition(row, col);
-                if (row == promotionRow) {
-                    possibleMoves.add(new ChessMove(myPosition, target, PieceType.QUEEN));
-                    possibleMoves.add(new ChessMove(myPosition, target, PieceType.ROOK));
-                    possibleMoves.add(new ChessMove(myPosition, target, PieceType.KNIGHT));
-                    possibleMoves.add(new ChessMove(myPosition, target, PieceType.BISHOP));
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            ChessGame.TeamColor pieceColor = null;
+            PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                } else if (name.equals("pieceColor")) {
+                    pieceColor = ChessGame.TeamColor.valueOf(in.nextString());
+                } else if (name.equals("type")) {
+                    type = PieceType.valueOf(in.nextString());
                 } else {
-                    possibleMoves.add(new ChessMove(myPosition, target, null));
+                    in.skipValue();
                 }
             }
-        }
-    }
-
-    private Collection<ChessMove> calculatePawnMoves(ChessBoard board, ChessPosition myPosition) {
-        if (this.getTeamColor() == ChessGame.TeamColor.WHITE) {
-            ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-            int row = myPosition.getRow();
-            int col = myPosition.getColumn();
-
-            moveWhitePawn(board, myPosition, row, col, possibleMoves);
-            return possibleMoves;
-        }
-        else {
-            ArrayList<ChessMove> possibleMoves = new ArrayList<>();
-            int row = myPosition.getRow();
-            int col = myPosition.getColumn();
-
-            moveBlackPawn(board, myPosition, row, col, possibleMoves);
-            return possibleMoves;
+            in.endObject();
+            return of(pieceColor, type);
         }
     }
 }
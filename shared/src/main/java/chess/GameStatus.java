@@ -0,0 +1,15 @@
+package chess;
+
+/**
+ * The state of a game from the point of view of the team whose turn it is,
+ * as computed by {@link ChessGame#evaluate()}
+ *
+ * @param teamToMove     the team whose turn it is
+ * @param inCheck        whether that team's king is attacked
+ * @param checkmate      whether that team is in check with no legal moves
+ * @param stalemate      whether that team has no legal moves but is not in check
+ * @param legalMoveCount how many legal moves that team has
+ */
+public record GameStatus(ChessGame.TeamColor teamToMove, boolean inCheck, boolean checkmate, boolean stalemate,
+                         int legalMoveCount) {
+}
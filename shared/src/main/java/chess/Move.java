@@ -0,0 +1,66 @@
+package chess;
+
+/**
+ * Moves packed into the low 16 bits of an int, so move generation can fill
+ * primitive buffers instead of allocating {@link ChessMove} objects.
+ * <pre>
+ * bits  0-5   start square
+ * bits  6-11  end square
+ * bits 12-13  promotion piece (knight, bishop, rook, queen)
+ * bit  14     set if the move is a promotion
+ * bit  15     set if the move captures a piece
+ * </pre>
+ * Squares use the {@link Bitboards} numbering.
+ */
+final class Move {
+
+    static final int PROMOTION_FLAG = 1 << 14;
+    static final int CAPTURE_FLAG = 1 << 15;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.QUEEN
+    };
+
+    private Move() {
+    }
+
+    static int of(int from, int to, int flags) {
+        return from | to << 6 | flags;
+    }
+
+    /**
+     * @param promotion index into knight, bishop, rook, queen
+     */
+    static int promotion(int from, int to, int promotion, int flags) {
+        return from | to << 6 | promotion << 12 | PROMOTION_FLAG | flags;
+    }
+
+    static int from(int move) {
+        return move & 63;
+    }
+
+    static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    /**
+     * @return the piece type a pawn promotes to, or null if the move is not a promotion
+     */
+    static ChessPiece.PieceType promotionPiece(int move) {
+        return (move & PROMOTION_FLAG) == 0 ? null : PROMOTIONS[(move >>> 12) & 3];
+    }
+
+    static ChessMove toChessMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        return new ChessMove(ChessPosition.of(Bitboards.row(from), Bitboards.column(from)),
+                ChessPosition.of(Bitboards.row(to), Bitboards.column(to)), promotionPiece(move));
+    }
+}
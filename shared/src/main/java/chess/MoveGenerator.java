@@ -0,0 +1,211 @@
+package chess;
+
+/**
+ * Generates only legal moves for one team on a board.
+ * <p>
+ * The position is analysed once when the generator is created: the pieces
+ * giving check, the pieces pinned to the king, and every square the enemy
+ * attacks. After that a piece's legal moves are its pseudo-legal targets
+ * masked down to check evasions and to its pin ray, and the king simply avoids
+ * attacked squares, so no move has to be tried on the board.
+ * <p>
+ * This assumes the team has at most one king. Boards with several kings of one
+ * color are left to {@link ChessGame}'s simulation path.
+ */
+final class MoveGenerator {
+
+    private final ChessBoard board;
+    private final ChessGame.TeamColor color;
+    private final int kingSquare;
+    private final long checkers;
+    private final long checkMask;
+    private final long pinned;
+    private final long enemyAttacks;
+
+    MoveGenerator(ChessBoard board, ChessGame.TeamColor color) {
+        this.board = board;
+        this.color = color;
+        kingSquare = board.kingSquare(color);
+        if (kingSquare < 0) {
+            checkers = 0L;
+            checkMask = -1L;
+            pinned = 0L;
+            enemyAttacks = 0L;
+            return;
+        }
+        ChessGame.TeamColor enemy = opponent(color);
+        long occupied = board.occupied();
+
+        checkers = attackersTo(board, kingSquare, enemy, occupied);
+        if (checkers == 0) {
+            checkMask = -1L;
+        } else if (Long.bitCount(checkers) == 1) {
+            checkMask = checkers | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+        } else {
+            checkMask = 0L;
+        }
+
+        long rookLike = board.pieces(enemy, ChessPiece.PieceType.ROOK) | board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long bishopLike = board.pieces(enemy, ChessPiece.PieceType.BISHOP) | board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (Bitboards.rookAttacks(kingSquare, 0L) & rookLike)
+                | (Bitboards.bishopAttacks(kingSquare, 0L) & bishopLike);
+        long pins = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & board.pieces(color)) != 0) {
+                pins |= blockers;
+            }
+        }
+        pinned = pins;
+
+        enemyAttacks = attacksBy(board, enemy, occupied & ~Bitboards.bit(kingSquare));
+    }
+
+    /**
+     * @return true if a board has at most one king of the given team, which this generator needs
+     */
+    static boolean canAnalyze(ChessBoard board, ChessGame.TeamColor color) {
+        return Long.bitCount(board.pieces(color, ChessPiece.PieceType.KING)) <= 1;
+    }
+
+    /**
+     * @return true if the team's king is attacked
+     */
+    boolean inCheck() {
+        return checkers != 0;
+    }
+
+    /**
+     * Sends the legal moves of the team's piece on {@code from} to the sink
+     */
+    void generateMoves(int from, MoveSink sink) {
+        emitMoves(board, board.getPiece(from), from, legalTargets(from), sink);
+    }
+
+    /**
+     * Sends every legal move of the team to the sink
+     */
+    void generateMoves(MoveSink sink) {
+        for (long pieces = board.pieces(color); pieces != 0; pieces &= pieces - 1) {
+            generateMoves(Long.numberOfTrailingZeros(pieces), sink);
+        }
+    }
+
+    /**
+     * @return true if the team has at least one legal move
+     */
+    boolean hasLegalMove() {
+        for (long pieces = board.pieces(color); pieces != 0; pieces &= pieces - 1) {
+            if (legalTargets(Long.numberOfTrailingZeros(pieces)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long legalTargets(int from) {
+        ChessPiece piece = board.getPiece(from);
+        long targets = pseudoLegalTargets(board, piece, from);
+        if (from == kingSquare) {
+            return targets & ~enemyAttacks;
+        }
+        targets &= checkMask;
+        if ((pinned & Bitboards.bit(from)) != 0) {
+            targets &= Bitboards.line(kingSquare, from);
+        }
+        return targets;
+    }
+
+    /**
+     * @return the squares a piece standing on {@code from} could move to if its own king's safety is
+     * ignored
+     */
+    static long pseudoLegalTargets(ChessBoard board, ChessPiece piece, int from) {
+        ChessGame.TeamColor color = piece.getTeamColor();
+        long occupied = board.occupied();
+        long notOwn = ~board.pieces(color);
+        return switch (piece.getPieceType()) {
+            case KING -> Bitboards.kingAttacks(from) & notOwn;
+            case QUEEN -> Bitboards.queenAttacks(from, occupied) & notOwn;
+            case BISHOP -> Bitboards.bishopAttacks(from, occupied) & notOwn;
+            case KNIGHT -> Bitboards.knightAttacks(from) & notOwn;
+            case ROOK -> Bitboards.rookAttacks(from, occupied) & notOwn;
+            case PAWN -> pawnTargets(board, color, from);
+        };
+    }
+
+    private static long pawnTargets(ChessBoard board, ChessGame.TeamColor color, int from) {
+        long empty = ~board.occupied();
+        long pawn = Bitboards.bit(from);
+        long captures = Bitboards.pawnAttacks(color, from) & board.pieces(opponent(color));
+        if (color == ChessGame.TeamColor.WHITE) {
+            long singlePush = (pawn << 8) & empty;
+            long doublePush = ((singlePush & Bitboards.RANK_2 << 8) << 8) & empty;
+            return singlePush | doublePush | captures;
+        }
+        long singlePush = (pawn >>> 8) & empty;
+        long doublePush = ((singlePush & Bitboards.RANK_7 >>> 8) >>> 8) & empty;
+        return singlePush | doublePush | captures;
+    }
+
+    /**
+     * Turns a target mask for the piece on {@code from} into packed moves, expanding pawn moves onto
+     * the last rank into the four promotions
+     */
+    static void emitMoves(ChessBoard board, ChessPiece piece, int from, long targets, MoveSink sink) {
+        long enemies = board.pieces(opponent(piece.getTeamColor()));
+        long promotionSquares = piece.getPieceType() == ChessPiece.PieceType.PAWN
+                ? Bitboards.RANK_1 | Bitboards.RANK_8 : 0L;
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            long target = Bitboards.bit(to);
+            int flags = (enemies & target) != 0 ? Move.CAPTURE_FLAG : 0;
+            if ((promotionSquares & target) != 0) {
+                for (int promotion = 3; promotion >= 0; promotion--) {
+                    sink.accept(Move.promotion(from, to, promotion, flags));
+                }
+            } else {
+                sink.accept(Move.of(from, to, flags));
+            }
+        }
+    }
+
+    /**
+     * Looks outward from {@code square} for pieces of {@code byColor} that attack it: a knight a
+     * knight's jump away, a pawn or king on a neighbouring square, or a slider at the end of an
+     * unobstructed ray.
+     *
+     * @return every piece of {@code byColor} that attacks {@code square} given the occupancy
+     */
+    static long attackersTo(ChessBoard board, int square, ChessGame.TeamColor byColor, long occupied) {
+        long queens = board.pieces(byColor, ChessPiece.PieceType.QUEEN);
+        return (Bitboards.knightAttacks(square) & board.pieces(byColor, ChessPiece.PieceType.KNIGHT))
+                | (Bitboards.kingAttacks(square) & board.pieces(byColor, ChessPiece.PieceType.KING))
+                | (Bitboards.pawnAttacks(opponent(byColor), square) & board.pieces(byColor, ChessPiece.PieceType.PAWN))
+                | (Bitboards.rookAttacks(square, occupied) & (board.pieces(byColor, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(square, occupied) & (board.pieces(byColor, ChessPiece.PieceType.BISHOP) | queens));
+    }
+
+    /**
+     * @return every square attacked by a team given the occupancy
+     */
+    private static long attacksBy(ChessBoard board, ChessGame.TeamColor team, long occupied) {
+        long attacks = 0L;
+        for (long pieces = board.pieces(team); pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            attacks |= switch (board.getPiece(from).getPieceType()) {
+                case KING -> Bitboards.kingAttacks(from);
+                case QUEEN -> Bitboards.queenAttacks(from, occupied);
+                case BISHOP -> Bitboards.bishopAttacks(from, occupied);
+                case KNIGHT -> Bitboards.knightAttacks(from);
+                case ROOK -> Bitboards.rookAttacks(from, occupied);
+                case PAWN -> Bitboards.pawnAttacks(team, from);
+            };
+        }
+        return attacks;
+    }
+
+    static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
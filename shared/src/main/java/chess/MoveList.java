@@ -0,0 +1,55 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A growable int buffer of packed moves that can be cleared and refilled
+ * without allocating
+ */
+final class MoveList implements MoveSink {
+
+    private static final ThreadLocal<MoveList> BUFFERS = ThreadLocal.withInitial(MoveList::new);
+
+    private int[] moves = new int[256];
+    private int size;
+
+    /**
+     * @return this thread's scratch list, cleared. Callers must be done with it
+     * before anything else on the thread asks for it again.
+     */
+    static MoveList threadBuffer() {
+        MoveList list = BUFFERS.get();
+        list.clear();
+        return list;
+    }
+
+    @Override
+    public void accept(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return moves[index];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Converts the buffered moves into {@link ChessMove}s for the public API
+     */
+    void addTo(Collection<ChessMove> target) {
+        for (int i = 0; i < size; i++) {
+            target.add(Move.toChessMove(moves[i]));
+        }
+    }
+}
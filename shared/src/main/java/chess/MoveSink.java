@@ -0,0 +1,9 @@
+package chess;
+
+/**
+ * Receives moves from the generator as packed ints (see {@link Move})
+ */
+@FunctionalInterface
+interface MoveSink {
+    void accept(int move);
+}
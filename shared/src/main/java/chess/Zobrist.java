@@ -0,0 +1,43 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per
+ * (piece, square) pair on the board, plus {@link #BLACK_TO_MOVE} when it is
+ * black's turn, so making or unmaking a move only has to XOR a few keys in and
+ * out.
+ * <p>
+ * The keys come from a fixed seed so the same position hashes to the same
+ * value in every JVM and can be stored.
+ */
+final class Zobrist {
+
+    static final long BLACK_TO_MOVE;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+
+    static {
+        long state = 0x6A09E667F3BCC908L;
+        for (long[] keys : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                state += 0x9E3779B97F4A7C15L;
+                keys[square] = mix(state);
+            }
+        }
+        state += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    static long key(ChessPiece piece, int square) {
+        return PIECE_SQUARE[piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal()][square];
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,293 @@
+package chess.perft;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth ("perft").
+ * <p>
+ * Perft only goes through the public {@link ChessGame} and {@link ChessBoard}
+ * API, so it can check and time any engine behind them. A wrong move
+ * generator almost always shows up as a wrong node count somewhere in the
+ * tree, and nodes per second is a direct measure of move generation speed.
+ * <p>
+ * The reference counts in {@link #TEST_POSITIONS} are for this game's rules,
+ * which have no castling or en passant, so for most positions they differ
+ * from the published numbers once the tree is deep enough for those moves to
+ * appear.
+ */
+public final class Perft {
+
+    /**
+     * A position and its expected node counts, where {@code expected[i]} is the
+     * count at depth {@code i + 1}
+     */
+    public record TestPosition(String name, String fen, long... expected) {
+    }
+
+    /**
+     * The outcome of a timed perft run
+     */
+    public record Result(long nodes, long nanos) {
+        public double nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    public static final List<TestPosition> TEST_POSITIONS = List.of(
+            new TestPosition("start", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+                    20, 400, 8_902, 197_281, 4_865_351),
+            new TestPosition("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w",
+                    46, 1_865, 86_585, 3_499_358, 161_395_653),
+            new TestPosition("endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w",
+                    14, 191, 2_810, 43_087, 671_300),
+            new TestPosition("promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w",
+                    6, 258, 9_217, 404_404, 15_087_520),
+            new TestPosition("middlegame", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w",
+                    43, 1_452, 59_922, 2_018_609, 85_140_609)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * Builds a game from the piece placement and side to move fields of a FEN
+     * string. Castling, en passant and move counter fields are ignored.
+     *
+     * @param fen the position in Forsyth-Edwards Notation
+     * @return a new game in that position
+     * @throws IllegalArgumentException if the placement is malformed
+     */
+    public static ChessGame fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("Expected 8 ranks in " + fen);
+        }
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                    continue;
+                }
+                if (col > 8) {
+                    throw new IllegalArgumentException("Rank " + row + " is too long in " + fen);
+                }
+                board.addPiece(ChessPosition.of(row, col++), pieceFor(c, fen));
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("Rank " + row + " does not have 8 squares in " + fen);
+            }
+        }
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        boolean blackToMove = fields.length > 1 && fields[1].equals("b");
+        game.setTeamTurn(blackToMove ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        return game;
+    }
+
+    private static ChessPiece pieceFor(char c, String fen) {
+        ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("Unknown piece '" + c + "' in " + fen);
+        };
+        return ChessPiece.of(color, type);
+    }
+
+    /**
+     * Counts leaf nodes on the calling thread. The game is changed while the
+     * tree is walked and put back before returning.
+     *
+     * @param game  the position to start from, with its side to move
+     * @param depth how many plies to search
+     * @return the number of positions reached after exactly depth plies
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        List<ChessMove> moves = legalMoves(game);
+        if (depth == 1) {
+            return moves.size();
+        }
+        ChessBoard board = game.getBoard();
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        long nodes = 0;
+        for (ChessMove move : moves) {
+            ChessPiece captured = board.makeMove(move);
+            game.setTeamTurn(opponent(turn));
+            nodes += perft(game, depth - 1);
+            board.unmakeMove(move, captured);
+            game.setTeamTurn(turn);
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts leaf nodes on the common fork-join pool
+     *
+     * @see #parallelPerft(ChessGame, int, ForkJoinPool)
+     */
+    public static Result parallelPerft(ChessGame game, int depth) {
+        return parallelPerft(game, depth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts leaf nodes by giving each root move its own copy of the game and
+     * searching the subtrees as separate fork-join tasks. The given game is
+     * not changed.
+     *
+     * @param game  the position to start from, with its side to move
+     * @param depth how many plies to search
+     * @param pool  the pool to run the subtrees on
+     * @return the node count and how long the search took
+     */
+    public static Result parallelPerft(ChessGame game, int depth, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long nodes;
+        if (depth <= 1) {
+            nodes = perft(copyOf(game), depth);
+        } else {
+            nodes = pool.invoke(new RootTask(game, depth));
+        }
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private final ChessGame game;
+        private final int depth;
+
+        RootTask(ChessGame game, int depth) {
+            this.game = game;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            List<SubtreeTask> subtrees = new ArrayList<>();
+            for (ChessMove move : legalMoves(game)) {
+                subtrees.add(new SubtreeTask(game, move, depth - 1));
+            }
+            invokeAll(subtrees);
+            long nodes = 0;
+            for (SubtreeTask subtree : subtrees) {
+                nodes += subtree.join();
+            }
+            return nodes;
+        }
+    }
+
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        private final ChessGame root;
+        private final ChessMove move;
+        private final int depth;
+
+        SubtreeTask(ChessGame root, ChessMove move, int depth) {
+            this.root = root;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            ChessGame game = copyOf(root);
+            game.getBoard().makeMove(move);
+            game.setTeamTurn(opponent(root.getTeamTurn()));
+            return perft(game, depth);
+        }
+    }
+
+    private static List<ChessMove> legalMoves(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        List<ChessMove> moves = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                ChessPiece piece = board.getPiece(position);
+                if (piece != null && piece.getTeamColor() == turn) {
+                    moves.addAll(game.validMoves(position));
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static ChessGame copyOf(ChessGame game) {
+        ChessBoard board = new ChessBoard();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                ChessPiece piece = game.getBoard().getPiece(position);
+                if (piece != null) {
+                    board.addPiece(position, piece);
+                }
+            }
+        }
+        ChessGame copy = new ChessGame();
+        copy.setBoard(board);
+        copy.setTeamTurn(game.getTeamTurn());
+        return copy;
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    /**
+     * Usage: {@code Perft [depth [fen]]}. With only a depth, runs every test
+     * position to that depth (or as deep as it has reference counts) and
+     * checks the counts; with a FEN, just counts and times that position.
+     */
+    public static void main(String[] args) {
+        int depth;
+        try {
+            depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        } catch (NumberFormatException e) {
+            depth = 0;
+        }
+        if (depth < 1) {
+            System.err.println("Usage: Perft [depth [fen]], where depth is at least 1");
+            System.exit(2);
+        }
+        if (args.length > 1) {
+            String fen = String.join(" ", List.of(args).subList(1, args.length));
+            report(fen, depth, parallelPerft(fromFen(fen), depth), -1);
+            return;
+        }
+        boolean allPassed = true;
+        for (TestPosition position : TEST_POSITIONS) {
+            int d = Math.min(depth, position.expected().length);
+            long expected = position.expected()[d - 1];
+            Result result = parallelPerft(fromFen(position.fen()), d);
+            report(position.name(), d, result, expected);
+            allPassed &= result.nodes() == expected;
+        }
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static void report(String name, int depth, Result result, long expected) {
+        String status = expected < 0 ? "" : result.nodes() == expected ? "  ok" : "  FAILED, expected " + expected;
+        System.out.printf("%-12s depth %d: %,d nodes in %.1f ms (%,.0f nodes/s)%s%n",
+                name, depth, result.nodes(), result.nanos() / 1e6, result.nodesPerSecond(), status);
+    }
+}
@@ -0,0 +1,140 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a board as a 64-character string, one character per square
+ * from a1 to h8. Also reads the {@code {"squares":[[...]]}} object that Gson's
+ * reflection used to write, so games saved before still load.
+ */
+final class ChessBoardAdapter extends TypeAdapter<ChessBoard> {
+    private static final char EMPTY = '.';
+
+    @Override
+    public void write(JsonWriter out, ChessBoard board) throws IOException {
+        if (board == null) {
+            out.nullValue();
+            return;
+        }
+        char[] squares = new char[64];
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(position(square));
+            squares[square] = piece == null ? EMPTY : symbol(piece);
+        }
+        out.value(new String(squares));
+    }
+
+    @Override
+    public ChessBoard read(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case STRING -> readSquares(in.nextString());
+            case BEGIN_OBJECT -> readLegacy(in);
+            default -> throw new JsonSyntaxException("Expected a board but was " + in.peek() + " at " + in.getPath());
+        };
+    }
+
+    private static ChessBoard readSquares(String squares) {
+        if (squares.length() != 64) {
+            throw new JsonSyntaxException("A board needs 64 squares but had " + squares.length());
+        }
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            char symbol = squares.charAt(square);
+            if (symbol != EMPTY) {
+                board.addPiece(position(square), piece(symbol));
+            }
+        }
+        return board;
+    }
+
+    private static ChessBoard readLegacy(JsonReader in) throws IOException {
+        ChessBoard board = new ChessBoard();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!in.nextName().equals("squares") || in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            for (int row = 1; in.hasNext(); row++) {
+                in.beginArray();
+                for (int col = 1; in.hasNext(); col++) {
+                    ChessPiece piece = readLegacyPiece(in);
+                    if (piece != null) {
+                        board.addPiece(ChessPosition.of(row, col), piece);
+                    }
+                }
+                in.endArray();
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return board;
+    }
+
+    private static ChessPiece readLegacyPiece(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessGame.TeamColor color = null;
+        ChessPiece.PieceType type = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "pieceColor" -> color = JsonReaders.nextEnum(in, ChessGame.TeamColor.class);
+                case "type" -> type = JsonReaders.nextEnum(in, ChessPiece.PieceType.class);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (color == null || type == null) {
+            throw new JsonSyntaxException("Piece is missing its color or type at " + in.getPath());
+        }
+        return ChessPiece.of(color, type);
+    }
+
+    private static ChessPosition position(int square) {
+        return ChessPosition.of(square / 8 + 1, square % 8 + 1);
+    }
+
+    private static char symbol(ChessPiece piece) {
+        char symbol = switch (piece.getPieceType()) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case ROOK -> 'R';
+            case PAWN -> 'P';
+        };
+        return piece.getTeamColor() == ChessGame.TeamColor.WHITE ? symbol : Character.toLowerCase(symbol);
+    }
+
+    private static ChessPiece piece(char symbol) {
+        ChessGame.TeamColor color = Character.isUpperCase(symbol) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toUpperCase(symbol)) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'P' -> ChessPiece.PieceType.PAWN;
+            default -> throw new JsonSyntaxException("Unknown piece '" + symbol + "' on a board");
+        };
+        return ChessPiece.of(color, type);
+    }
+}
@@ -0,0 +1,77 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a game's turn, board, whether it is over and its move count.
+ * <p>
+ * {@code moveCount} is an optional field outside the reflective schema of
+ * {@link ChessGame}, where it is transient: JSON without it, such as games
+ * saved before it existed or written by a plain {@code Gson}, reads as a game
+ * with no moves made, and readers that don't know it skip it.
+ */
+final class ChessGameAdapter extends TypeAdapter<ChessGame> {
+    private final ChessBoardAdapter boardAdapter;
+
+    ChessGameAdapter(ChessBoardAdapter boardAdapter) {
+        this.boardAdapter = boardAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, ChessGame game) throws IOException {
+        if (game == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (game.getTeamTurn() != null) {
+            out.name("teamTurn").value(game.getTeamTurn().name());
+        }
+        out.name("board");
+        boardAdapter.write(out, game.getBoard());
+        out.name("gameOver").value(game.isGameOver());
+        out.name("moveCount").value(game.getMoveCount());
+        out.endObject();
+    }
+
+    @Override
+    public ChessGame read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessGame.TeamColor teamTurn = ChessGame.TeamColor.WHITE;
+        ChessBoard board = null;
+        boolean gameOver = false;
+        int moveCount = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "teamTurn" -> teamTurn = JsonReaders.nextEnum(in, ChessGame.TeamColor.class);
+                case "board" -> board = boardAdapter.read(in);
+                case "gameOver" -> gameOver = in.nextBoolean();
+                case "moveCount" -> moveCount = in.nextInt();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (board == null) {
+            // As reflection left it, from the constructor that sets up the starting position
+            board = new ChessBoard();
+            board.resetBoard();
+        }
+        ChessGame game = new ChessGame(board, teamTurn);
+        game.setMoveCount(moveCount);
+        if (gameOver) {
+            game.endGame();
+        }
+        return game;
+    }
+}
@@ -0,0 +1,62 @@
+package serialization;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a move as its start and end positions and, for a
+ * promotion, the piece type
+ */
+final class ChessMoveAdapter extends TypeAdapter<ChessMove> {
+    private final ChessPositionAdapter positionAdapter;
+
+    ChessMoveAdapter(ChessPositionAdapter positionAdapter) {
+        this.positionAdapter = positionAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, ChessMove move) throws IOException {
+        if (move == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("startPosition");
+        positionAdapter.write(out, move.getStartPosition());
+        out.name("endPosition");
+        positionAdapter.write(out, move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            out.name("promotionPiece").value(move.getPromotionPiece().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ChessMove read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChessPosition start = null;
+        ChessPosition end = null;
+        ChessPiece.PieceType promotion = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startPosition" -> start = positionAdapter.read(in);
+                case "endPosition" -> end = positionAdapter.read(in);
+                case "promotionPiece" -> promotion = JsonReaders.nextEnum(in, ChessPiece.PieceType.class);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new ChessMove(start, end, promotion);
+    }
+}
@@ -0,0 +1,51 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.GameData;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+/**
+ * The one {@link Gson} instance the client and server use for everything they
+ * send, receive or store as JSON.
+ * <p>
+ * Gson instances are thread-safe and expensive to set up, so this one is made
+ * once and shared. The chess types, {@link GameData}, and the websocket
+ * commands and messages have hand-written streaming adapters, which read and
+ * write them without going through reflection. Everything else, such as the
+ * HTTP request and response records, still uses Gson's reflective binding.
+ * <p>
+ * The adapters write the same JSON Gson's reflection did, except for boards.
+ * A board is written as a 64-character string, one character per square from
+ * a1, b1 ... h1 up to h8. White pieces are upper case and black pieces are
+ * lower case ({@code KQBNRP}), and empty squares are {@code .}. Boards in the
+ * old nested-array format can still be read.
+ */
+public final class Codecs {
+    public static final Gson GSON = create();
+
+    private Codecs() {
+    }
+
+    private static Gson create() {
+        ChessPositionAdapter positionAdapter = new ChessPositionAdapter();
+        ChessMoveAdapter moveAdapter = new ChessMoveAdapter(positionAdapter);
+        ChessBoardAdapter boardAdapter = new ChessBoardAdapter();
+        ChessGameAdapter gameAdapter = new ChessGameAdapter(boardAdapter);
+        GameDataAdapter gameDataAdapter = new GameDataAdapter(gameAdapter);
+        return new GsonBuilder()
+                .registerTypeAdapter(ChessPosition.class, positionAdapter)
+                .registerTypeAdapter(ChessMove.class, moveAdapter)
+                .registerTypeAdapter(ChessBoard.class, boardAdapter)
+                .registerTypeAdapter(ChessGame.class, gameAdapter)
+                .registerTypeAdapter(GameData.class, gameDataAdapter)
+                .registerTypeHierarchyAdapter(UserGameCommand.class, new UserGameCommandAdapter(moveAdapter))
+                .registerTypeHierarchyAdapter(ServerMessage.class, new ServerMessageAdapter(gameDataAdapter))
+                .create();
+    }
+}
@@ -0,0 +1,63 @@
+package serialization;
+
+import chess.ChessGame;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.GameData;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a game record with its players, name and game
+ */
+final class GameDataAdapter extends TypeAdapter<GameData> {
+    private final ChessGameAdapter gameAdapter;
+
+    GameDataAdapter(ChessGameAdapter gameAdapter) {
+        this.gameAdapter = gameAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, GameData gameData) throws IOException {
+        if (gameData == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("gameID").value(gameData.gameID());
+        out.name("whiteUsername").value(gameData.whiteUsername());
+        out.name("blackUsername").value(gameData.blackUsername());
+        out.name("gameName").value(gameData.gameName());
+        out.name("game");
+        gameAdapter.write(out, gameData.game());
+        out.endObject();
+    }
+
+    @Override
+    public GameData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int gameID = 0;
+        String whiteUsername = null;
+        String blackUsername = null;
+        String gameName = null;
+        ChessGame game = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "gameID" -> gameID = in.nextInt();
+                case "whiteUsername" -> whiteUsername = JsonReaders.nextString(in);
+                case "blackUsername" -> blackUsername = JsonReaders.nextString(in);
+                case "gameName" -> gameName = JsonReaders.nextString(in);
+                case "game" -> game = gameAdapter.read(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
+    }
+}
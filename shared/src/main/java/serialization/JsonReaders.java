@@ -0,0 +1,53 @@
+package serialization;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Null-tolerant reads shared by the adapters
+ */
+final class JsonReaders {
+
+    private JsonReaders() {
+    }
+
+    /**
+     * Reads an enum constant by name the way Gson does, giving null for a JSON
+     * null or an unknown name
+     */
+    static <E extends Enum<E>> E nextEnum(JsonReader in, Class<E> type) throws IOException {
+        String name = nextString(in);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the next string, or null for a JSON null
+     */
+    static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * @return the next integer, or null for a JSON null
+     */
+    static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+}
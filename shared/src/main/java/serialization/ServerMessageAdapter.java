@@ -0,0 +1,129 @@
+package serialization;
+
+import chess.ChessMove;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.GameData;
+import websocket.messages.Error;
+import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes every kind of server message. Reading picks the class from
+ * the message type, so a client can read any frame as a {@link ServerMessage}
+ * and get the subclass back in one pass.
+ */
+final class ServerMessageAdapter extends TypeAdapter<ServerMessage> {
+    private final GameDataAdapter gameDataAdapter;
+
+    ServerMessageAdapter(GameDataAdapter gameDataAdapter) {
+        this.gameDataAdapter = gameDataAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, ServerMessage message) throws IOException {
+        if (message == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        switch (message) {
+            case LoadGame loadGame -> {
+                out.name("game");
+                gameDataAdapter.write(out, loadGame.getGame());
+                if (loadGame.getReplayEpoch() != null) {
+                    out.name("replayEpoch").value(loadGame.getReplayEpoch());
+                }
+            }
+            case Error error -> out.name("errorMessage").value(error.getErrorMessage());
+            case Notification notification -> out.name("message").value(notification.getMessage());
+            case MoveMade moveMade -> {
+                out.name("sequence").value(moveMade.getSequence());
+                out.name("username").value(moveMade.getUsername());
+                out.name("move").value(moveMade.getNotation());
+                out.name("check").value(moveMade.isCheck());
+                out.name("checkmate").value(moveMade.isCheckmate());
+                out.name("stalemate").value(moveMade.isStalemate());
+            }
+            default -> {
+            }
+        }
+        if (message.getServerMessageType() != null) {
+            out.name("serverMessageType").value(message.getServerMessageType().name());
+        }
+        if (message.getReplaySequence() != null) {
+            out.name("replaySequence").value(message.getReplaySequence());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ServerMessage read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ServerMessage.ServerMessageType type = null;
+        GameData game = null;
+        String errorMessage = null;
+        String text = null;
+        int sequence = 0;
+        String username = null;
+        String move = null;
+        boolean check = false;
+        boolean checkmate = false;
+        boolean stalemate = false;
+        Integer replayEpoch = null;
+        Integer replaySequence = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "serverMessageType" -> type = JsonReaders.nextEnum(in, ServerMessage.ServerMessageType.class);
+                case "game" -> game = gameDataAdapter.read(in);
+                case "errorMessage" -> errorMessage = JsonReaders.nextString(in);
+                case "message" -> text = JsonReaders.nextString(in);
+                case "sequence" -> sequence = in.nextInt();
+                case "username" -> username = JsonReaders.nextString(in);
+                case "move" -> move = JsonReaders.nextString(in);
+                case "check" -> check = in.nextBoolean();
+                case "checkmate" -> checkmate = in.nextBoolean();
+                case "stalemate" -> stalemate = in.nextBoolean();
+                case "replayEpoch" -> replayEpoch = JsonReaders.nextInteger(in);
+                case "replaySequence" -> replaySequence = JsonReaders.nextInteger(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (type == null) {
+            return new ServerMessage(null);
+        }
+        if (type == ServerMessage.ServerMessageType.MOVE_MADE && move == null) {
+            throw new JsonSyntaxException("MOVE_MADE is missing its move");
+        }
+        ChessMove parsedMove;
+        try {
+            parsedMove = move == null ? null : MoveMade.fromNotation(move);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException("MOVE_MADE has a malformed move", e);
+        }
+        ServerMessage message = switch (type) {
+            case LOAD_GAME -> {
+                LoadGame loadGame = new LoadGame(game);
+                loadGame.setReplayEpoch(replayEpoch);
+                yield loadGame;
+            }
+            case ERROR -> new Error(errorMessage);
+            case NOTIFICATION -> new Notification(text);
+            case MOVE_MADE -> new MoveMade(sequence, username, parsedMove, check, checkmate, stalemate);
+        };
+        message.setReplaySequence(replaySequence);
+        return message;
+    }
+}
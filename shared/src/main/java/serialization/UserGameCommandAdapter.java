@@ -0,0 +1,86 @@
+package serialization;
+
+import chess.ChessMove;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.commands.UserGameCommand;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes every kind of command. Reading picks the class from the
+ * command type, so a MAKE_MOVE comes back as a {@link MakeMove} and a CONNECT
+ * as a {@link Connect} even when asked for a plain {@link UserGameCommand}.
+ */
+final class UserGameCommandAdapter extends TypeAdapter<UserGameCommand> {
+    private final ChessMoveAdapter moveAdapter;
+
+    UserGameCommandAdapter(ChessMoveAdapter moveAdapter) {
+        this.moveAdapter = moveAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, UserGameCommand command) throws IOException {
+        if (command == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (command instanceof MakeMove makeMove) {
+            out.name("move");
+            moveAdapter.write(out, makeMove.getMove());
+        } else if (command instanceof Connect connect) {
+            out.name("moveDeltas").value(connect.wantsMoveDeltas());
+            if (connect.isResume()) {
+                out.name("resumeEpoch").value(connect.getResumeEpoch());
+                out.name("resumeAfter").value(connect.getResumeAfter());
+            }
+        }
+        if (command.getCommandType() != null) {
+            out.name("commandType").value(command.getCommandType().name());
+        }
+        out.name("authToken").value(command.getAuthToken());
+        out.name("gameID").value(command.getGameID());
+        out.endObject();
+    }
+
+    @Override
+    public UserGameCommand read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        UserGameCommand.CommandType commandType = null;
+        String authToken = null;
+        Integer gameID = null;
+        ChessMove move = null;
+        boolean moveDeltas = false;
+        Integer resumeEpoch = null;
+        Integer resumeAfter = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "commandType" -> commandType = JsonReaders.nextEnum(in, UserGameCommand.CommandType.class);
+                case "authToken" -> authToken = JsonReaders.nextString(in);
+                case "gameID" -> gameID = JsonReaders.nextInteger(in);
+                case "move" -> move = moveAdapter.read(in);
+                case "moveDeltas" -> moveDeltas = in.nextBoolean();
+                case "resumeEpoch" -> resumeEpoch = JsonReaders.nextInteger(in);
+                case "resumeAfter" -> resumeAfter = JsonReaders.nextInteger(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (commandType == UserGameCommand.CommandType.CONNECT) {
+            return new Connect(authToken, gameID, moveDeltas, resumeEpoch, resumeAfter);
+        }
+        if (commandType == UserGameCommand.CommandType.MAKE_MOVE) {
+            return new MakeMove(authToken, gameID, move);
+        }
+        return new UserGameCommand(commandType, authToken, gameID);
+    }
+}
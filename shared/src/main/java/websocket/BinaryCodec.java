@@ -0,0 +1,310 @@
+package websocket;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import model.GameData;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.commands.UserGameCommand;
+import websocket.messages.Error;
+import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The binary websocket protocol, an alternative to JSON for clients that want
+ * smaller frames and cheaper parsing. A client opts in just by sending binary
+ * frames; the server answers each connection in the format its CONNECT came in.
+ * <p>
+ * Every frame starts with one type byte, the ordinal of the command or message
+ * type, so new types must only ever be added to the end of those enums. After
+ * that:
+ * <ul>
+ *     <li>commands: game ID as a varint, auth token as a string, then for
+ *     CONNECT a flags byte (bit 0 asks for move deltas, bit 1 resumes) followed
+ *     when resuming by the replay epoch and sequence, or for MAKE_MOVE a packed
+ *     move</li>
+ *     <li>LOAD_GAME: game ID, white and black usernames and game name, a flags
+ *     byte (bit 0 black to move, bit 1 game over), the move count, the board
+ *     as 32 bytes of one nibble per square, and the replay epoch</li>
+ *     <li>ERROR and NOTIFICATION: the text as a string</li>
+ *     <li>MOVE_MADE: sequence, username, packed move, and a flags byte (bit 0
+ *     check, bit 1 checkmate, bit 2 stalemate)</li>
+ * </ul>
+ * Every message then ends with its replay sequence. A replay epoch or
+ * sequence that may be null is written as a varint of the value plus one,
+ * with 0 meaning null.
+ * <p>
+ * Integers are unsigned LEB128 varints. Strings are a varint of the UTF-8
+ * length plus one followed by the bytes, with 0 meaning null. A move is two
+ * bytes holding {@code from | to << 6 | promotion << 12}, where squares count
+ * from a1 = 0 and promotion is 0 for none or the piece type's ordinal plus one.
+ * A square's nibble is 0 when empty, otherwise the piece type's ordinal plus
+ * one, with bit 3 set for black.
+ */
+public final class BinaryCodec {
+    private static final ChessPiece.PieceType[] PIECE_TYPES = ChessPiece.PieceType.values();
+    private static final UserGameCommand.CommandType[] COMMAND_TYPES = UserGameCommand.CommandType.values();
+    private static final ServerMessage.ServerMessageType[] MESSAGE_TYPES = ServerMessage.ServerMessageType.values();
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encode(UserGameCommand command) {
+        if (command.getGameID() == null) {
+            throw new IllegalArgumentException("Binary commands need a game ID");
+        }
+        Writer out = new Writer(64);
+        out.writeByte(command.getCommandType().ordinal());
+        out.writeVarint(command.getGameID());
+        out.writeString(command.getAuthToken());
+        if (command instanceof Connect connect) {
+            out.writeByte((connect.wantsMoveDeltas() ? 1 : 0) | (connect.isResume() ? 2 : 0));
+            if (connect.isResume()) {
+                out.writeVarint(connect.getResumeEpoch());
+                out.writeVarint(connect.getResumeAfter());
+            }
+        } else if (command instanceof MakeMove makeMove) {
+            out.writeMove(makeMove.getMove());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the command, as a {@link Connect} or {@link MakeMove} for those types
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer frame) {
+        try {
+            UserGameCommand.CommandType type = COMMAND_TYPES[frame.get()];
+            int gameID = readVarint(frame);
+            String authToken = readString(frame);
+            return switch (type) {
+                case CONNECT -> {
+                    int flags = frame.get();
+                    boolean resume = (flags & 2) != 0;
+                    yield new Connect(authToken, gameID, (flags & 1) != 0, resume ? readVarint(frame) : null,
+                            resume ? readVarint(frame) : null);
+                }
+                case MAKE_MOVE -> new MakeMove(authToken, gameID, readMove(frame));
+                default -> new UserGameCommand(type, authToken, gameID);
+            };
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed command frame", e);
+        }
+    }
+
+    public static byte[] encode(ServerMessage message) {
+        Writer out = new Writer(64);
+        out.writeByte(message.getServerMessageType().ordinal());
+        switch (message) {
+            case LoadGame loadGame -> {
+                writeGameData(out, loadGame.getGame());
+                out.writeOptionalVarint(loadGame.getReplayEpoch());
+            }
+            case Error error -> out.writeString(error.getErrorMessage());
+            case Notification notification -> out.writeString(notification.getMessage());
+            case MoveMade moveMade -> {
+                out.writeVarint(moveMade.getSequence());
+                out.writeString(moveMade.getUsername());
+                out.writeMove(moveMade.getMove());
+                out.writeByte((moveMade.isCheck() ? 1 : 0) | (moveMade.isCheckmate() ? 2 : 0)
+                        | (moveMade.isStalemate() ? 4 : 0));
+            }
+            default -> throw new IllegalArgumentException("Cannot encode " + message.getClass().getSimpleName());
+        }
+        out.writeOptionalVarint(message.getReplaySequence());
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the message as its {@link ServerMessage} subclass
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static ServerMessage decodeMessage(ByteBuffer frame) {
+        try {
+            ServerMessage message = switch (MESSAGE_TYPES[frame.get()]) {
+                case LOAD_GAME -> {
+                    LoadGame loadGame = new LoadGame(readGameData(frame));
+                    loadGame.setReplayEpoch(readOptionalVarint(frame));
+                    yield loadGame;
+                }
+                case ERROR -> new Error(readString(frame));
+                case NOTIFICATION -> new Notification(readString(frame));
+                case MOVE_MADE -> {
+                    int sequence = readVarint(frame);
+                    String username = readString(frame);
+                    ChessMove move = readMove(frame);
+                    int flags = frame.get();
+                    yield new MoveMade(sequence, username, move, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0);
+                }
+            };
+            message.setReplaySequence(readOptionalVarint(frame));
+            return message;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed message frame", e);
+        }
+    }
+
+    private static void writeGameData(Writer out, GameData gameData) {
+        ChessGame game = gameData.game();
+        out.writeVarint(gameData.gameID());
+        out.writeString(gameData.whiteUsername());
+        out.writeString(gameData.blackUsername());
+        out.writeString(gameData.gameName());
+        out.writeByte((game.getTeamTurn() == ChessGame.TeamColor.BLACK ? 1 : 0) | (game.isGameOver() ? 2 : 0));
+        out.writeVarint(game.getMoveCount());
+        ChessBoard board = game.getBoard();
+        for (int square = 0; square < 64; square += 2) {
+            out.writeByte(nibble(board, square) | nibble(board, square + 1) << 4);
+        }
+    }
+
+    private static GameData readGameData(ByteBuffer in) {
+        int gameID = readVarint(in);
+        String whiteUsername = readString(in);
+        String blackUsername = readString(in);
+        String gameName = readString(in);
+        int flags = in.get();
+        int moveCount = readVarint(in);
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int pair = in.get();
+            place(board, square, pair & 0xF);
+            place(board, square + 1, pair >>> 4 & 0xF);
+        }
+        ChessGame game = new ChessGame(board, (flags & 1) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setMoveCount(moveCount);
+        if ((flags & 2) != 0) {
+            game.endGame();
+        }
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
+    }
+
+    private static int nibble(ChessBoard board, int square) {
+        ChessPiece piece = board.getPiece(position(square));
+        if (piece == null) {
+            return 0;
+        }
+        return piece.getPieceType().ordinal() + 1 | (piece.getTeamColor() == ChessGame.TeamColor.BLACK ? 8 : 0);
+    }
+
+    private static void place(ChessBoard board, int square, int nibble) {
+        if (nibble == 0) {
+            return;
+        }
+        ChessGame.TeamColor color = (nibble & 8) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        board.addPiece(position(square), ChessPiece.of(color, PIECE_TYPES[(nibble & 7) - 1]));
+    }
+
+    private static ChessPosition position(int square) {
+        return ChessPosition.of(square / 8 + 1, square % 8 + 1);
+    }
+
+    private static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    private static ChessMove readMove(ByteBuffer in) {
+        int packed = in.getShort() & 0xFFFF;
+        int promotion = packed >>> 12 & 7;
+        return new ChessMove(position(packed & 63), position(packed >>> 6 & 63),
+                promotion == 0 ? null : PIECE_TYPES[promotion - 1]);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    private static Integer readOptionalVarint(ByteBuffer in) {
+        int value = readVarint(in);
+        return value == 0 ? null : value - 1;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("String runs past the end of the frame");
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static final class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeOptionalVarint(Integer value) {
+            writeVarint(value == null ? 0 : value + 1);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        void writeMove(ChessMove move) {
+            ChessPiece.PieceType promotion = move.getPromotionPiece();
+            int packed = square(move.getStartPosition()) | square(move.getEndPosition()) << 6
+                    | (promotion == null ? 0 : promotion.ordinal() + 1) << 12;
+            writeByte(packed >>> 8);
+            writeByte(packed);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
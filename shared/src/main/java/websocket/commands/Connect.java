@@ -0,0 +1,52 @@
+package websocket.commands;
+
+/**
+ * A CONNECT command that can also ask for {@code MOVE_MADE} deltas instead of
+ * a full {@code LOAD_GAME} after every move. A plain {@link UserGameCommand}
+ * with type CONNECT is treated as not asking for them.
+ * <p>
+ * A client coming back after its connection dropped can resume instead of
+ * starting over, by giving the replay epoch of the last {@code LOAD_GAME} it
+ * got and the highest replay sequence of any message since. The server then
+ * sends only the messages it missed, or the whole game if it no longer has
+ * them, and does not tell the others in the game that the client joined.
+ */
+public class Connect extends UserGameCommand {
+    private final boolean moveDeltas;
+    private final Integer resumeEpoch;
+    private final Integer resumeAfter;
+
+    public Connect(String authToken, Integer gameID, boolean moveDeltas) {
+        this(authToken, gameID, moveDeltas, null, null);
+    }
+
+    /**
+     * @param resumeEpoch the replay epoch to resume in, or null to start over
+     * @param resumeAfter the last replay sequence the client saw in that epoch
+     */
+    public Connect(String authToken, Integer gameID, boolean moveDeltas, Integer resumeEpoch, Integer resumeAfter) {
+        super(CommandType.CONNECT, authToken, gameID);
+        this.moveDeltas = moveDeltas;
+        this.resumeEpoch = resumeEpoch;
+        this.resumeAfter = resumeAfter;
+    }
+
+    public boolean wantsMoveDeltas() {
+        return moveDeltas;
+    }
+
+    /**
+     * @return whether this is a client coming back, rather than connecting for the first time
+     */
+    public boolean isResume() {
+        return resumeEpoch != null && resumeAfter != null;
+    }
+
+    public Integer getResumeEpoch() {
+        return resumeEpoch;
+    }
+
+    public Integer getResumeAfter() {
+        return resumeAfter;
+    }
+}
@@ -4,6 +4,7 @@ import model.GameData;
 
 public class LoadGame extends ServerMessage {
     private final GameData game;
+    private Integer replayEpoch;
 
     public LoadGame(GameData game) {
         super(ServerMessageType.LOAD_GAME);
@@ -13,4 +14,17 @@ public class LoadGame extends ServerMessage {
     public GameData getGame() {
         return game;
     }
+
+    /**
+     * @return which run of replay sequence numbers the game's later messages are numbered in, or null if the
+     * server does not keep them
+     * @see websocket.commands.Connect
+     */
+    public Integer getReplayEpoch() {
+        return replayEpoch;
+    }
+
+    public void setReplayEpoch(Integer replayEpoch) {
+        this.replayEpoch = replayEpoch;
+    }
 }
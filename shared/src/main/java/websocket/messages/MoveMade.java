@@ -0,0 +1,141 @@
+package websocket.messages;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.GameStatus;
+
+/**
+ * A move that was just made, sent instead of a full {@link LoadGame} to
+ * clients that asked for deltas. The client applies the move to its own copy
+ * of the game; if {@code sequence} is not one more than the last sequence it
+ * saw, it has missed something and should ask for the whole game again.
+ * <p>
+ * The move is written in coordinate notation such as {@code e2e4} or
+ * {@code e7e8q} to keep the message small.
+ */
+public class MoveMade extends ServerMessage {
+    private final int sequence;
+    private final String username;
+    private final String move;
+    private final boolean check;
+    private final boolean checkmate;
+    private final boolean stalemate;
+
+    /**
+     * @param sequence the game's move count after this move
+     * @param username the player who made the move
+     * @param move     the move
+     * @param status   the game's status after the move
+     */
+    public MoveMade(int sequence, String username, ChessMove move, GameStatus status) {
+        this(sequence, username, move, status.inCheck(), status.checkmate(), status.stalemate());
+    }
+
+    public MoveMade(int sequence, String username, ChessMove move, boolean check, boolean checkmate,
+                    boolean stalemate) {
+        super(ServerMessageType.MOVE_MADE);
+        this.sequence = sequence;
+        this.username = username;
+        this.move = toNotation(move);
+        this.check = check;
+        this.checkmate = checkmate;
+        this.stalemate = stalemate;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public ChessMove getMove() {
+        return fromNotation(move);
+    }
+
+    /**
+     * @return the move in coordinate notation, as it is sent
+     */
+    public String getNotation() {
+        return move;
+    }
+
+    /**
+     * @return whether the player to move is now in check
+     */
+    public boolean isCheck() {
+        return check;
+    }
+
+    /**
+     * @return whether the player to move is now checkmated
+     */
+    public boolean isCheckmate() {
+        return checkmate;
+    }
+
+    /**
+     * @return whether the player to move now has no moves but is not in check
+     */
+    public boolean isStalemate() {
+        return stalemate;
+    }
+
+    /**
+     * @return the move in coordinate notation, such as {@code e2e4} or {@code e7e8q}
+     */
+    public static String toNotation(ChessMove move) {
+        StringBuilder notation = new StringBuilder(5);
+        appendPosition(notation, move.getStartPosition());
+        appendPosition(notation, move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            notation.append(switch (move.getPromotionPiece()) {
+                case QUEEN -> 'q';
+                case ROOK -> 'r';
+                case BISHOP -> 'b';
+                case KNIGHT -> 'n';
+                default -> throw new IllegalArgumentException("Cannot promote to " + move.getPromotionPiece());
+            });
+        }
+        return notation.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the notation is malformed
+     */
+    public static ChessMove fromNotation(String notation) {
+        if (notation == null || (notation.length() != 4 && notation.length() != 5)) {
+            throw new IllegalArgumentException("Not a move, expected 4 or 5 characters such as e2e4: " + notation);
+        }
+        ChessPosition start = parsePosition(notation, 0);
+        ChessPosition end = parsePosition(notation, 2);
+        ChessPiece.PieceType promotion = notation.length() > 4 ? promotionPiece(notation.charAt(4)) : null;
+        return new ChessMove(start, end, promotion);
+    }
+
+    private static ChessPosition parsePosition(String notation, int index) {
+        char file = notation.charAt(index);
+        char rank = notation.charAt(index + 1);
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            throw new IllegalArgumentException(String.format("Not a square on the board: '%c%c' in %s", file, rank,
+                    notation));
+        }
+        return ChessPosition.of(rank - '0', file - 'a' + 1);
+    }
+
+    private static void appendPosition(StringBuilder notation, ChessPosition position) {
+        notation.append((char) ('a' + position.getColumn() - 1)).append(position.getRow());
+    }
+
+    private static ChessPiece.PieceType promotionPiece(char c) {
+        return switch (c) {
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            default -> throw new IllegalArgumentException("Unknown promotion piece '" + c + "'");
+        };
+    }
+}
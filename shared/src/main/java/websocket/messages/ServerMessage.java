@@ -10,11 +10,13 @@ import java.util.Objects;
  */
 public class ServerMessage {
     ServerMessageType serverMessageType;
+    private Integer replaySequence;
 
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        MOVE_MADE
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -25,6 +27,19 @@ public class ServerMessage {
         return this.serverMessageType;
     }
 
+    /**
+     * @return where this message falls among the messages sent to its game, for resuming after a dropped
+     * connection, or null if it was sent to just one connection and will not be sent again
+     * @see websocket.commands.Connect
+     */
+    public Integer getReplaySequence() {
+        return replaySequence;
+    }
+
+    public void setReplaySequence(Integer replaySequence) {
+        this.replaySequence = replaySequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,55 @@
+package chess;
+
+import chess.perft.Perft;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStatusEvaluationTests {
+
+    @Test
+    public void startPosition() {
+        GameStatus status = new ChessGame().evaluate();
+        assertEquals(new GameStatus(ChessGame.TeamColor.WHITE, false, false, false, 20), status);
+    }
+
+    @Test
+    public void checkmate() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 6), ChessPosition.of(3, 6), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(5, 5), null));
+        game.makeMove(new ChessMove(ChessPosition.of(2, 7), ChessPosition.of(4, 7), null));
+        game.makeMove(new ChessMove(ChessPosition.of(8, 4), ChessPosition.of(4, 8), null));
+
+        GameStatus status = game.evaluate();
+        assertEquals(new GameStatus(ChessGame.TeamColor.WHITE, true, true, false, 0), status);
+        assertEquals(game.isInCheckmate(ChessGame.TeamColor.WHITE), status.checkmate());
+    }
+
+    @Test
+    public void checkWithEscapes() {
+        GameStatus status = Perft.fromFen("4k3/8/8/8/8/8/8/r3K3 w").evaluate();
+        assertTrue(status.inCheck());
+        assertFalse(status.checkmate());
+        assertEquals(3, status.legalMoveCount());
+    }
+
+    @Test
+    public void stalemate() {
+        GameStatus status = Perft.fromFen("k7/2Q5/1K6/8/8/8/8/8 b").evaluate();
+        assertEquals(new GameStatus(ChessGame.TeamColor.BLACK, false, false, true, 0), status);
+    }
+
+    @Test
+    public void cachedUntilNextMove() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        GameStatus status = game.evaluate();
+        assertSame(status, game.evaluate());
+
+        game.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        assertEquals(ChessGame.TeamColor.BLACK, game.evaluate().teamToMove());
+
+        game.getBoard().addPiece(ChessPosition.of(7, 4), null);
+        assertEquals(31, game.evaluate().legalMoveCount());
+    }
+}
@@ -0,0 +1,51 @@
+package chess.perft;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTests {
+
+    @Test
+    public void testPositionsMatchReferenceCounts() {
+        for (Perft.TestPosition position : Perft.TEST_POSITIONS) {
+            ChessGame game = Perft.fromFen(position.fen());
+            for (int depth = 1; depth <= 3; depth++) {
+                assertEquals(position.expected()[depth - 1], Perft.perft(game, depth),
+                        position.name() + " at depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    public void parallelPerftMatchesSerial() {
+        for (Perft.TestPosition position : Perft.TEST_POSITIONS) {
+            ChessGame game = Perft.fromFen(position.fen());
+            assertEquals(position.expected()[2], Perft.parallelPerft(game, 3).nodes(), position.name());
+        }
+        assertEquals(197_281, Perft.parallelPerft(new ChessGame(), 4).nodes());
+    }
+
+    @Test
+    public void perftLeavesGameUnchanged() {
+        ChessGame game = Perft.fromFen(Perft.TEST_POSITIONS.get(3).fen());
+        ChessGame before = Perft.fromFen(Perft.TEST_POSITIONS.get(3).fen());
+        Perft.perft(game, 3);
+        assertEquals(before, game);
+        assertEquals(before.getZobristKey(), game.getZobristKey());
+    }
+
+    @Test
+    public void fromFenStartPosition() {
+        assertEquals(new ChessGame(), Perft.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertEquals(ChessGame.TeamColor.BLACK, Perft.fromFen("4k3/8/8/8/8/8/8/4K3 b - - 0 1").getTeamTurn());
+    }
+
+    @Test
+    public void fromFenRejectsMalformedPlacement() {
+        assertThrows(IllegalArgumentException.class, () -> Perft.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w"));
+        assertThrows(IllegalArgumentException.class, () -> Perft.fromFen("rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w"));
+        assertThrows(IllegalArgumentException.class, () -> Perft.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w"));
+    }
+}
@@ -0,0 +1,167 @@
+package serialization;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.perft.Perft;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import responses.ListGamesResponse;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.commands.UserGameCommand;
+import websocket.messages.Error;
+import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecsTests {
+    private static final Gson REFLECTIVE = new Gson();
+
+    @Test
+    public void boardIsWrittenAsOneString() {
+        String json = Codecs.GSON.toJson(new ChessGame());
+
+        assertEquals("{\"teamTurn\":\"WHITE\",\"board\":"
+                + "\"RNBQKBNRPPPPPPPP................................pppppppprnbqkbnr\","
+                + "\"gameOver\":false,\"moveCount\":0}", json);
+    }
+
+    @Test
+    public void gameRoundTrips() throws Exception {
+        ChessGame game = Perft.fromFen("4k3/1P6/8/8/8/8/8/4K3 w");
+        game.makeMove(new ChessMove(ChessPosition.of(7, 2), ChessPosition.of(8, 2), ChessPiece.PieceType.KNIGHT));
+        game.endGame();
+
+        ChessGame read = Codecs.GSON.fromJson(Codecs.GSON.toJson(game), ChessGame.class);
+
+        assertEquals(game, read);
+        assertEquals(game.getZobristKey(), read.getZobristKey());
+        assertEquals(ChessGame.TeamColor.BLACK, read.getTeamTurn());
+        assertTrue(read.isGameOver());
+        assertEquals(1, read.getMoveCount());
+        assertEquals(game.validMoves(ChessPosition.of(8, 5)), read.validMoves(ChessPosition.of(8, 5)));
+    }
+
+    @Test
+    public void readsGamesSavedByReflection() {
+        ChessGame game = Perft.fromFen(Perft.TEST_POSITIONS.get(1).fen());
+        String legacy = REFLECTIVE.toJson(game);
+        assertTrue(legacy.contains("\"squares\":[["), legacy);
+        assertFalse(legacy.contains("moveCount"), legacy);
+
+        ChessGame read = Codecs.GSON.fromJson(legacy, ChessGame.class);
+
+        assertEquals(game, read);
+        assertEquals(0, read.getMoveCount());
+    }
+
+    @Test
+    public void messagesKeepTheirJsonShape() {
+        ChessMove move = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        ChessMove promotion = new ChessMove(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN);
+        List<Object> values = List.of(
+                new UserGameCommand(UserGameCommand.CommandType.LEAVE, "token", 3),
+                new MakeMove("token", 3, move),
+                new MakeMove("token", 3, promotion),
+                new Connect("token", 3, true),
+                new Connect("token", 3, false, 77, 12),
+                replayed(new Notification("black has left the game"), 13),
+                new Error("Error: unauthorized"),
+                new Notification("white joined as white"),
+                new MoveMade(4, "white", promotion, false, true, false),
+                new ListGamesResponse(List.of(new GameData(1, "white", null, "game", null))));
+
+        for (Object value : values) {
+            assertEquals(REFLECTIVE.toJson(value), Codecs.GSON.toJson(value), value.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void loadGameMatchesReflectionApartFromTheBoardAndMoveCount() {
+        GameData gameData = new GameData(7, "white", "black", "game", new ChessGame());
+        LoadGame loadGame = new LoadGame(gameData);
+        loadGame.setReplayEpoch(77);
+        loadGame.setReplaySequence(12);
+        var expected = JsonParser.parseString(REFLECTIVE.toJson(loadGame)).getAsJsonObject();
+        var actual = JsonParser.parseString(Codecs.GSON.toJson(loadGame)).getAsJsonObject();
+
+        expected.getAsJsonObject("game").getAsJsonObject("game").remove("board");
+        actual.getAsJsonObject("game").getAsJsonObject("game").remove("board");
+        assertEquals(0, actual.getAsJsonObject("game").getAsJsonObject("game").remove("moveCount").getAsInt());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void commandsAreReadAsTheirOwnClass() {
+        String makeMoveJSON = "{\"commandType\":\"MAKE_MOVE\",\"authToken\":\"token\",\"gameID\":3,"
+                + "\"move\":{\"startPosition\":{\"row\":7,\"col\":1},\"endPosition\":{\"row\":8,\"col\":1},"
+                + "\"promotionPiece\":\"ROOK\"}}";
+        UserGameCommand command = Codecs.GSON.fromJson(makeMoveJSON, UserGameCommand.class);
+        MakeMove makeMove = assertInstanceOf(MakeMove.class, command);
+        assertEquals(new ChessMove(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.ROOK),
+                makeMove.getMove());
+        assertEquals(3, makeMove.getGameID());
+
+        UserGameCommand connect = Codecs.GSON.fromJson(
+                "{\"commandType\":\"CONNECT\",\"authToken\":\"token\",\"gameID\":3}", UserGameCommand.class);
+        assertFalse(assertInstanceOf(Connect.class, connect).wantsMoveDeltas());
+
+        UserGameCommand resign = Codecs.GSON.fromJson("{\"commandType\":\"RESIGN\",\"extra\":[1,2]}", UserGameCommand.class);
+        assertEquals(UserGameCommand.CommandType.RESIGN, resign.getCommandType());
+        assertNull(resign.getGameID());
+    }
+
+    @Test
+    public void messagesAreReadAsTheirOwnClass() {
+        GameData gameData = new GameData(7, "white", "black", "game", new ChessGame());
+        ServerMessage loadGame = Codecs.GSON.fromJson(Codecs.GSON.toJson(new LoadGame(gameData)), ServerMessage.class);
+        assertEquals(gameData, assertInstanceOf(LoadGame.class, loadGame).getGame());
+        assertNull(loadGame.getReplaySequence());
+
+        ServerMessage replayed = Codecs.GSON.fromJson(Codecs.GSON.toJson(replayed(new LoadGame(gameData), 5)),
+                ServerMessage.class);
+        assertEquals(5, replayed.getReplaySequence());
+
+        ServerMessage error = Codecs.GSON.fromJson("{\"errorMessage\":\"Error: nope\",\"serverMessageType\":\"ERROR\"}",
+                ServerMessage.class);
+        assertEquals("Error: nope", assertInstanceOf(Error.class, error).getErrorMessage());
+
+        ChessMove move = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        ServerMessage moveMade = Codecs.GSON.fromJson(
+                Codecs.GSON.toJson(new MoveMade(1, "white", move, true, false, false)), ServerMessage.class);
+        assertEquals(move, assertInstanceOf(MoveMade.class, moveMade).getMove());
+        assertTrue(((MoveMade) moveMade).isCheck());
+    }
+
+    @Test
+    public void gameWithoutABoardStartsFromTheStartingPosition() {
+        ChessGame read = Codecs.GSON.fromJson("{\"teamTurn\":\"WHITE\"}", ChessGame.class);
+
+        assertEquals(new ChessGame(), read);
+        assertEquals(REFLECTIVE.fromJson("{\"teamTurn\":\"WHITE\"}", ChessGame.class), read);
+        assertEquals(2, read.validMoves(ChessPosition.of(1, 2)).size());
+    }
+
+    @Test
+    public void malformedBoardsAreRejected() {
+        assertThrows(JsonSyntaxException.class,
+                () -> Codecs.GSON.fromJson("{\"board\":\"RNBQKBNR\"}", ChessGame.class));
+        assertThrows(JsonSyntaxException.class,
+                () -> Codecs.GSON.fromJson("{\"board\":\"" + "x".repeat(64) + "\"}", ChessGame.class));
+    }
+
+    private static ServerMessage replayed(ServerMessage message, int sequence) {
+        message.setReplaySequence(sequence);
+        return message;
+    }
+}
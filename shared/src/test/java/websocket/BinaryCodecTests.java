@@ -0,0 +1,116 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.perft.Perft;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import serialization.Codecs;
+import websocket.commands.Connect;
+import websocket.commands.MakeMove;
+import websocket.commands.UserGameCommand;
+import websocket.messages.Error;
+import websocket.messages.LoadGame;
+import websocket.messages.MoveMade;
+import websocket.messages.Notification;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTests {
+
+    @Test
+    public void commandsRoundTrip() {
+        ChessMove promotion = new ChessMove(ChessPosition.of(7, 8), ChessPosition.of(8, 8), ChessPiece.PieceType.KNIGHT);
+        MakeMove makeMove = (MakeMove) roundTrip(new MakeMove("token", 300, promotion));
+        assertEquals(UserGameCommand.CommandType.MAKE_MOVE, makeMove.getCommandType());
+        assertEquals("token", makeMove.getAuthToken());
+        assertEquals(300, makeMove.getGameID());
+        assertEquals(promotion, makeMove.getMove());
+
+        Connect connect = (Connect) roundTrip(new Connect("token", 1, true));
+        assertTrue(connect.wantsMoveDeltas());
+        assertFalse(connect.isResume());
+
+        Connect resume = (Connect) roundTrip(new Connect("token", 1, false, 123456789, 300));
+        assertFalse(resume.wantsMoveDeltas());
+        assertEquals(123456789, resume.getResumeEpoch());
+        assertEquals(300, resume.getResumeAfter());
+
+        UserGameCommand resign = new UserGameCommand(UserGameCommand.CommandType.RESIGN, "token", 7);
+        assertEquals(resign, roundTrip(resign));
+    }
+
+    @Test
+    public void loadGameRoundTrips() throws Exception {
+        ChessGame game = Perft.fromFen(Perft.TEST_POSITIONS.get(1).fen());
+        game.makeMove(new ChessMove(ChessPosition.of(3, 6), ChessPosition.of(3, 8), null));
+        game.endGame();
+        GameData gameData = new GameData(12, "white", null, "kiwipete", game);
+
+        byte[] frame = BinaryCodec.encode(new LoadGame(gameData));
+        GameData decoded = ((LoadGame) BinaryCodec.decodeMessage(ByteBuffer.wrap(frame))).getGame();
+
+        assertEquals(gameData, decoded);
+        assertEquals(game.getBoard(), decoded.game().getBoard());
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.game().getTeamTurn());
+        assertTrue(decoded.game().isGameOver());
+        assertEquals(1, decoded.game().getMoveCount());
+        assertTrue(frame.length < Codecs.GSON.toJson(new LoadGame(gameData)).length() / 2,
+                "binary LOAD_GAME is " + frame.length + " bytes");
+    }
+
+    @Test
+    public void textMessagesAndMovesRoundTrip() {
+        Notification notification = (Notification) BinaryCodec.decodeMessage(
+                ByteBuffer.wrap(BinaryCodec.encode(new Notification("black joined as observer ♟"))));
+        assertEquals("black joined as observer ♟", notification.getMessage());
+
+        Error error = (Error) BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(new Error("Error: nope"))));
+        assertEquals("Error: nope", error.getErrorMessage());
+
+        ChessMove move = new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 8), null);
+        MoveMade moveMade = (MoveMade) BinaryCodec.decodeMessage(
+                ByteBuffer.wrap(BinaryCodec.encode(new MoveMade(200, "white", move, false, true, false))));
+        assertEquals(200, moveMade.getSequence());
+        assertEquals("white", moveMade.getUsername());
+        assertEquals(move, moveMade.getMove());
+        assertTrue(moveMade.isCheckmate());
+        assertFalse(moveMade.isCheck() || moveMade.isStalemate());
+    }
+
+    @Test
+    public void replayNumbersRoundTrip() {
+        LoadGame loadGame = new LoadGame(new GameData(1, "white", "black", "game", new ChessGame()));
+        loadGame.setReplayEpoch(Integer.MAX_VALUE - 1);
+        loadGame.setReplaySequence(0);
+        LoadGame decodedLoadGame = (LoadGame) BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(loadGame)));
+        assertEquals(Integer.MAX_VALUE - 1, decodedLoadGame.getReplayEpoch());
+        assertEquals(0, decodedLoadGame.getReplaySequence());
+
+        Notification notification = new Notification("white joined as white");
+        notification.setReplaySequence(41);
+        assertEquals(41, BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(notification))).getReplaySequence());
+
+        Error error = (Error) BinaryCodec.decodeMessage(ByteBuffer.wrap(BinaryCodec.encode(new Error("Error: nope"))));
+        assertNull(error.getReplaySequence());
+    }
+
+    @Test
+    public void malformedFramesAreRejected() {
+        byte[] frame = BinaryCodec.encode(new MakeMove("token", 1,
+                new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeCommand(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 1))));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeCommand(ByteBuffer.wrap(new byte[]{99})));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeMessage(ByteBuffer.wrap(new byte[0])));
+    }
+
+    private static UserGameCommand roundTrip(UserGameCommand command) {
+        return BinaryCodec.decodeCommand(ByteBuffer.wrap(BinaryCodec.encode(command)));
+    }
+}
@@ -0,0 +1,67 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.perft.Perft;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import serialization.Codecs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveMadeTests {
+
+    @Test
+    public void moveSurvivesJson() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessMove move = new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        game.makeMove(move);
+
+        String json = Codecs.GSON.toJson(new MoveMade(game.getMoveCount(), "white", move, game.evaluate()));
+        MoveMade parsed = Codecs.GSON.fromJson(json, MoveMade.class);
+
+        assertEquals(ServerMessage.ServerMessageType.MOVE_MADE, parsed.getServerMessageType());
+        assertEquals(1, parsed.getSequence());
+        assertEquals("white", parsed.getUsername());
+        assertEquals(move, parsed.getMove());
+        assertFalse(parsed.isCheck() || parsed.isCheckmate() || parsed.isStalemate());
+        assertTrue(json.contains("\"e2e4\""), json);
+    }
+
+    @Test
+    public void promotionAndStatusSurviveJson() throws Exception {
+        ChessGame game = Perft.fromFen("k7/4P3/8/8/8/8/8/4K3 w");
+        ChessMove move = new ChessMove(ChessPosition.of(7, 5), ChessPosition.of(8, 5), ChessPiece.PieceType.ROOK);
+        game.makeMove(move);
+
+        MoveMade parsed = Codecs.GSON.fromJson(Codecs.GSON.toJson(new MoveMade(7, "white", move, game.evaluate())),
+                MoveMade.class);
+
+        assertEquals(move, parsed.getMove());
+        assertTrue(parsed.isCheck());
+        assertFalse(parsed.isCheckmate());
+    }
+
+    @Test
+    public void malformedNotationIsRejected() {
+        for (String notation : new String[]{"", "e2e", "e2e4qq", "i2e4", "e0e4", "e2e9", "E2e4", "e7e8k"}) {
+            assertThrows(IllegalArgumentException.class, () -> MoveMade.fromNotation(notation), notation);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MoveMade.fromNotation(null));
+        assertThrows(JsonSyntaxException.class, () -> Codecs.GSON.fromJson(
+                "{\"serverMessageType\":\"MOVE_MADE\",\"sequence\":1,\"move\":\"e2z9\"}", ServerMessage.class));
+    }
+
+    @Test
+    public void moveCountFollowsMovesAndCopies() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(ChessPosition.of(2, 1), ChessPosition.of(3, 1), null));
+        game.makeMove(new ChessMove(ChessPosition.of(7, 1), ChessPosition.of(6, 1), null));
+
+        assertEquals(2, game.getMoveCount());
+        assertEquals(2, new ChessGame(game).getMoveCount());
+        assertEquals(2, Codecs.GSON.fromJson(Codecs.GSON.toJson(game), ChessGame.class).getMoveCount());
+    }
+}